@@ -0,0 +1,136 @@
+package org.luizricardo.warppipe;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Optional;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+
+/**
+ * Compresses a response with the {@code gzip} or {@code deflate} content coding.
+ *
+ * <p>
+ *     Unlike container compression, it never holds content back: each {@link #flush()} compresses what was written
+ *     so far with {@link Deflater#SYNC_FLUSH} and flushes the original stream, so content flushed by the decoder,
+ *     like the head of the page, still reaches the browser early. {@link #finish()} must be called at the end
+ *     to write the trailer and release the native memory of the {@link Deflater}, without closing the original stream.
+ * </p>
+ */
+final class CompressingOutputStream extends DeflaterOutputStream {
+
+    static final String GZIP = "gzip";
+    static final String DEFLATE = "deflate";
+
+    private static final byte[] GZIP_HEADER = { 0x1f, (byte) 0x8b, Deflater.DEFLATED, 0, 0, 0, 0, 0, 0, (byte) 0xff };
+    private static final int BUFFER_SIZE = 8192;
+
+    private final boolean gzip;
+    private final CRC32 crc;
+    private boolean finished;
+
+    /**
+     * @param encoding Either {@link #GZIP} or {@link #DEFLATE}.
+     */
+    CompressingOutputStream(final OutputStream out, final String encoding) throws IOException {
+        //gzip has its own header and trailer around raw deflate data, while deflate is actually the zlib format
+        super(out, new Deflater(Deflater.DEFAULT_COMPRESSION, GZIP.equals(encoding)), BUFFER_SIZE, true);
+        this.gzip = GZIP.equals(encoding);
+        this.crc = gzip ? new CRC32() : null;
+        if (gzip) {
+            out.write(GZIP_HEADER);
+        }
+    }
+
+    /**
+     * Chooses the content coding preferred by the client, considering quality values of the
+     * {@code Accept-Encoding} header. Gzip wins ties.
+     * @return Empty if neither is accepted.
+     */
+    static Optional<String> negotiate(final String acceptEncoding) {
+        if (acceptEncoding == null || acceptEncoding.isEmpty()) {
+            return Optional.empty();
+        }
+        float gzipQuality = -1, deflateQuality = -1, anyQuality = -1;
+        for (final String element : acceptEncoding.split(",")) {
+            final int semicolon = element.indexOf(';');
+            final String coding = (semicolon < 0 ? element : element.substring(0, semicolon)).trim().toLowerCase();
+            final float quality = semicolon < 0 ? 1 : quality(element.substring(semicolon + 1));
+            if (coding.equals(GZIP) || coding.equals("x-gzip")) {
+                gzipQuality = Math.max(gzipQuality, quality);
+            } else if (coding.equals(DEFLATE)) {
+                deflateQuality = Math.max(deflateQuality, quality);
+            } else if (coding.equals("*")) {
+                anyQuality = quality;
+            }
+        }
+        //codings not listed get the quality of the wildcard
+        gzipQuality = gzipQuality < 0 ? anyQuality : gzipQuality;
+        deflateQuality = deflateQuality < 0 ? anyQuality : deflateQuality;
+        if (gzipQuality > 0 && gzipQuality >= deflateQuality) {
+            return Optional.of(GZIP);
+        }
+        return deflateQuality > 0 ? Optional.of(DEFLATE) : Optional.empty();
+    }
+
+    private static float quality(final String parameters) {
+        for (final String parameter : parameters.split(";")) {
+            final String trimmed = parameter.trim();
+            if (trimmed.startsWith("q=") || trimmed.startsWith("Q=")) {
+                try {
+                    return Float.parseFloat(trimmed.substring(2).trim());
+                } catch (NumberFormatException e) {
+                    return 0;
+                }
+            }
+        }
+        return 1;
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        if (gzip) {
+            crc.update(b, off, len);
+        }
+        super.write(b, off, len);
+    }
+
+    /**
+     * Writes the remaining compressed data and the trailer, and releases the deflater.
+     * The original stream is flushed but not closed.
+     */
+    @Override
+    public void finish() throws IOException {
+        if (finished) {
+            return;
+        }
+        finished = true;
+        try {
+            super.finish();
+            if (gzip) {
+                writeInt((int) crc.getValue());
+                writeInt((int) def.getBytesRead());
+            }
+            out.flush();
+        } finally {
+            def.end();
+        }
+    }
+
+    /**
+     * Writes an integer in little-endian order, as required by gzip.
+     */
+    private void writeInt(final int value) throws IOException {
+        out.write(value & 0xff);
+        out.write((value >> 8) & 0xff);
+        out.write((value >> 16) & 0xff);
+        out.write((value >> 24) & 0xff);
+    }
+
+    @Override
+    public void close() throws IOException {
+        finish();
+        out.close();
+    }
+
+}
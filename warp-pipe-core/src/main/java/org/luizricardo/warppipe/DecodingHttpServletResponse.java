@@ -3,60 +3,253 @@ package org.luizricardo.warppipe;
 import org.luizricardo.warppipe.decoder.StreamDecoder;
 import org.luizricardo.warppipe.decoder.StreamDecoderBuilder;
 import org.luizricardo.warppipe.decoder.StreamDecoderOutputStream;
+import org.luizricardo.warppipe.decoder.StreamDecoderPool;
+import org.luizricardo.warppipe.decoder.StreamDecoderTemplate;
 import org.luizricardo.warppipe.decoder.StreamDecoderWriter;
 
 import javax.servlet.ServletOutputStream;
-import javax.servlet.ServletResponse;
 import javax.servlet.WriteListener;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import javax.servlet.http.HttpServletRequest;
 import javax.servlet.http.HttpServletResponse;
 import javax.servlet.http.HttpServletResponseWrapper;
 import java.io.IOException;
 import java.io.OutputStream;
+import java.io.OutputStreamWriter;
 import java.io.PrintWriter;
 import java.io.Writer;
 import java.nio.charset.Charset;
+import java.util.Optional;
 import java.util.function.Consumer;
 
 /**
  * Decorates a {@link HttpServletResponse} adding decoding capabilities to either {@link ServletOutputStream}
  * or {@link PrintWriter} which are also decorated and decoded and are checked against
  * {@link org.luizricardo.warppipe.matcher.StreamMatcher}s.
+ *
+ * <p>
+ *     Only HTML responses with a successful status are decoded. The decision is delayed until the writer or stream is
+ *     requested or, if the content type isn't known yet, until the first write. Other responses, like JSON, images,
+ *     redirects and errors, get the original writer or stream of the container, so they don't pay for decoding.
+ *     Decoding can also be disabled for a request by setting the {@link #SKIP_DECODING_ATTRIBUTE} attribute.
+ * </p>
  */
 public class DecodingHttpServletResponse extends HttpServletResponseWrapper {
 
+    /**
+     * Request attribute which disables decoding of the response when set to any value.
+     */
+    public static final String SKIP_DECODING_ATTRIBUTE = DecodingHttpServletResponse.class.getName() + ".skip";
+
+    private final Optional<ServletRequest> request;
     private final Charset charset;
-    private final Consumer<StreamDecoderBuilder> binderFunction;
+    private final StreamDecoderPool decoderPool;
+    private final Object attachment;
+    private final boolean compression;
     private PrintWriter printWriter;
+    private StreamDecoderWriter decodingWriter;
     private ServletOutputStream servletOutputStream;
+    private StreamDecoderOutputStream decodingOutputStream;
+    private CompressingOutputStream compressingStream;
+    private Writer compressingWriter;
+    private OrderedOutput output;
+    private OrderedOutput.Slot held;
 
     /**
      * @param response Original servlet response
      * @param charset Charset to decode characters when using {@link ServletOutputStream}
      * @param binderFunction Consumer function which allows client bind matchers and listeners to decode the stream.
      */
+    @SuppressWarnings("rawtypes")
     public DecodingHttpServletResponse(final ServletResponse response, final Charset charset, final Consumer<StreamDecoderBuilder> binderFunction) {
+        this(null, response, charset, new StreamDecoderPool(template(binderFunction), 0), null, false);
+    }
+
+    /**
+     * Same as the other constructor, without compression.
+     */
+    public DecodingHttpServletResponse(final ServletRequest request, final ServletResponse response, final Charset charset,
+                                       final StreamDecoderPool decoderPool, final Object attachment) {
+        this(request, response, charset, decoderPool, attachment, false);
+    }
+
+    /**
+     * @param request Current request, which may have the {@link #SKIP_DECODING_ATTRIBUTE}. May be null.
+     * @param response Original servlet response
+     * @param charset Charset to decode characters when using {@link ServletOutputStream}
+     * @param decoderPool Pool where decoders are taken from and given back to by {@link #finish()}.
+     * @param attachment Object handed to listeners through
+     *                   {@link org.luizricardo.warppipe.listener.MatchingContext#attachment()}. May be null.
+     * @param compression Whether decoded responses are compressed when the client accepts gzip or deflate.
+     */
+    public DecodingHttpServletResponse(final ServletRequest request, final ServletResponse response, final Charset charset,
+                                       final StreamDecoderPool decoderPool, final Object attachment,
+                                       final boolean compression) {
         super((HttpServletResponse) response);
+        this.request = Optional.ofNullable(request);
         this.charset = charset;
-        this.binderFunction = binderFunction;
+        this.decoderPool = decoderPool;
+        this.attachment = attachment;
+        this.compression = compression;
     }
 
-    private Writer decorate(final Writer delegate) {
-        final StreamDecoderBuilder<StreamDecoderWriter> builder = StreamDecoder.forWriter(delegate);
+    private static StreamDecoderTemplate template(final Consumer<? super StreamDecoderBuilder<StreamDecoderTemplate>> binderFunction) {
+        final StreamDecoderBuilder<StreamDecoderTemplate> builder = StreamDecoder.template();
         binderFunction.accept(builder);
         return builder.build();
     }
 
-    private OutputStream decorate(final OutputStream delegate) {
-        final StreamDecoderBuilder<StreamDecoderOutputStream> builder = StreamDecoder.forOutputStream(delegate, charset);
-        binderFunction.accept(builder);
-        return builder.build();
+    /**
+     * Whether the response may contain something to be matched, considering what's known so far.
+     * Responses without content type are decoded.
+     */
+    private boolean decodable() {
+        return !request.map(r -> r.getAttribute(SKIP_DECODING_ATTRIBUTE) != null).orElse(false)
+                && getStatus() >= 200 && getStatus() < 300
+                && (getContentType() == null || isHtml(getContentType()));
+    }
+
+    static boolean isHtml(final String contentType) {
+        final int semicolon = contentType.indexOf(';');
+        final String mediaType = (semicolon < 0 ? contentType : contentType.substring(0, semicolon)).trim();
+        return mediaType.equalsIgnoreCase("text/html") || mediaType.equalsIgnoreCase("application/xhtml+xml");
+    }
+
+    /**
+     * Content coding to compress the response with, if compression is enabled, the client accepts it,
+     * and headers can still be changed.
+     */
+    private Optional<String> contentCoding() {
+        if (!compression || isCommitted() || containsHeader("Content-Encoding")) {
+            return Optional.empty();
+        }
+        return request.filter(r -> r instanceof HttpServletRequest)
+                .flatMap(r -> CompressingOutputStream.negotiate(((HttpServletRequest) r).getHeader("Accept-Encoding")));
+    }
+
+    /**
+     * Starts compressing the original stream, if possible.
+     */
+    private OutputStream compress(final OutputStream original) throws IOException {
+        final Optional<String> coding = contentCoding();
+        if (!coding.isPresent()) {
+            return original;
+        }
+        setHeader("Content-Encoding", coding.get());
+        addHeader("Vary", "Accept-Encoding");
+        compressingStream = new CompressingOutputStream(original, coding.get());
+        return compressingStream;
+    }
+
+    /**
+     * Acquires the decoding writer, writing to the original writer or, when compressing, to the original stream.
+     */
+    private StreamDecoderWriter decodingWriter() throws IOException {
+        final Writer original;
+        if (contentCoding().isPresent()) {
+            compressingWriter = new OutputStreamWriter(compress(super.getOutputStream()), getCharacterEncoding());
+            original = compressingWriter;
+        } else {
+            original = super.getWriter();
+        }
+        output = OrderedOutput.forWriter(original);
+        decodingWriter = decoderPool.acquire(output.writer(), attachment);
+        return decodingWriter;
+    }
+
+    private StreamDecoderOutputStream decodingOutputStream(final OutputStream original) throws IOException {
+        output = OrderedOutput.forOutputStream(compress(original), charset);
+        decodingOutputStream = decoderPool.acquire(output.outputStream(), charset, attachment);
+        return decodingOutputStream;
     }
 
+    /**
+     * Output of the decoder, where positions can be reserved for content written later.
+     * @throws IllegalStateException If no decoder was acquired.
+     */
+    public OrderedOutput output() {
+        if (output == null) {
+            throw new IllegalStateException("Nothing is being decoded!");
+        }
+        return output;
+    }
+
+    /**
+     * Starts holding back the decoded content, so something else may be written before it with the returned writer.
+     * It allows content generated after the page to be written before the end of the page, like in
+     * {@code </body></html>}, once the request thread is released. Closing is also held back.
+     * @return Writer to the response, which writes before the held content. It should be flushed and not closed.
+     * @throws IllegalStateException If no decoder was acquired or if content is already being held.
+     */
+    public Writer hold() {
+        if (held != null) {
+            throw new IllegalStateException("Content is already being held!");
+        }
+        held = output().open();
+        return held.writer();
+    }
+
+    /**
+     * Writes the content held since {@link #hold()} to the response and stops holding it.
+     * If the response was closed meanwhile, it's closed now.
+     */
+    public void release() throws IOException {
+        if (held != null) {
+            final OrderedOutput.Slot slot = held;
+            held = null;
+            slot.close();
+        }
+    }
 
     @Override
     public PrintWriter getWriter() throws IOException {
         if (printWriter == null) {
-            printWriter = new PrintWriter(decorate(super.getWriter()));
+            if (!decodable()) {
+                printWriter = super.getWriter();
+            } else {
+                //status and content type may still change, so whether to decode is only decided on the first write
+                printWriter = new PrintWriter(new Writer() {
+                    private Writer target;
+
+                    private Writer target() throws IOException {
+                        if (target == null) {
+                            target = decodable() ? decodingWriter() : DecodingHttpServletResponse.super.getWriter();
+                        }
+                        return target;
+                    }
+
+                    @Override
+                    public void write(final int c) throws IOException {
+                        target().write(c);
+                    }
+
+                    @Override
+                    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+                        target().write(cbuf, off, len);
+                    }
+
+                    @Override
+                    public void write(final String str, final int off, final int len) throws IOException {
+                        target().write(str, off, len);
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        //nothing was written yet, so there's no need to decide the target
+                        if (target != null) {
+                            target.flush();
+                        } else {
+                            flushBuffer();
+                        }
+                    }
+
+                    @Override
+                    public void close() throws IOException {
+                        target().close();
+                    }
+                });
+            }
         }
         return printWriter;
     }
@@ -64,26 +257,125 @@ public class DecodingHttpServletResponse extends HttpServletResponseWrapper {
     @Override
     public ServletOutputStream getOutputStream() throws IOException {
         if (servletOutputStream == null) {
-            final ServletOutputStream wrappedServletOutputStream = super.getOutputStream();
-            final OutputStream decoder = decorate(wrappedServletOutputStream);
-            servletOutputStream = new ServletOutputStream() {
+            final ServletOutputStream container = super.getOutputStream();
+            if (!decodable()) {
+                servletOutputStream = container;
+                return servletOutputStream;
+            }
+            //decoders write synchronously, so output is queued once the application chooses non-blocking I/O
+            final ServletOutputStream original = new ServletOutputStream() {
+                private volatile ServletOutputStream target = container;
+
                 @Override
                 public boolean isReady() {
-                    return wrappedServletOutputStream.isReady();
+                    return target.isReady();
+                }
+
+                @Override
+                public void setWriteListener(final WriteListener writeListener) {
+                    final NonBlockingServletOutputStream nonBlocking = new NonBlockingServletOutputStream(container);
+                    nonBlocking.setWriteListener(writeListener);
+                    target = nonBlocking;
                 }
 
                 @Override
-                public void setWriteListener(WriteListener writeListener) {
-                    wrappedServletOutputStream.setWriteListener(writeListener);
+                public void write(final int b) throws IOException {
+                    target.write(b);
                 }
 
                 @Override
-                public void write(int b) throws IOException {
-                    decoder.write(b);
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    target.write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    target.flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    target.close();
                 }
             };
+            //status and content type may still change, so whether to decode is only decided on the first write
+            servletOutputStream = new DecodingServletOutputStream(original, new OutputStream() {
+                private OutputStream target;
+
+                private OutputStream target() throws IOException {
+                    if (target == null) {
+                        target = decodable() ? decodingOutputStream(original) : original;
+                    }
+                    return target;
+                }
+
+                @Override
+                public void write(final int b) throws IOException {
+                    target().write(b);
+                }
+
+                @Override
+                public void write(final byte[] b, final int off, final int len) throws IOException {
+                    target().write(b, off, len);
+                }
+
+                @Override
+                public void flush() throws IOException {
+                    (target != null ? target : original).flush();
+                }
+
+                @Override
+                public void close() throws IOException {
+                    (target != null ? target : original).close();
+                }
+            }, charset);
         }
         return servletOutputStream;
     }
 
+    /**
+     * The length of compressed content is unknown, so it's ignored while the response may be compressed.
+     */
+    @Override
+    public void setContentLength(final int len) {
+        setContentLengthLong(len);
+    }
+
+    @Override
+    public void setContentLengthLong(final long len) {
+        final boolean undecided = decodingWriter == null && decodingOutputStream == null;
+        if (compressingStream == null && !(undecided && contentCoding().isPresent())) {
+            super.setContentLengthLong(len);
+        }
+    }
+
+    /**
+     * Writes content still buffered by the decoders to the original response and gives them back to the pool.
+     * It should be called when the response was completely written, since the writer and stream must not be used anymore.
+     * It waits for slots of the {@link #output()} being filled by other threads.
+     */
+    public void finish() throws IOException {
+        if (decodingWriter != null) {
+            decodingWriter.finish();
+            decoderPool.release(decodingWriter);
+            decodingWriter = null;
+        }
+        if (decodingOutputStream != null) {
+            decodingOutputStream.finish();
+            decoderPool.release(decodingOutputStream);
+            decodingOutputStream = null;
+        }
+        if (output != null) {
+            //slots filled by other threads are written before the end of the response
+            output.await();
+        }
+        if (compressingWriter != null) {
+            compressingWriter.flush();
+            compressingWriter = null;
+        }
+        if (compressingStream != null) {
+            compressingStream.finish();
+        }
+    }
+
 }
@@ -0,0 +1,70 @@
+package org.luizricardo.warppipe;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+
+/**
+ * Decorates a {@link ServletOutputStream}, forwarding every write, in bulk whenever possible, to a decoding
+ * {@link OutputStream} like {@link org.luizricardo.warppipe.decoder.StreamDecoderOutputStream}.
+ * Non-blocking I/O methods are delegated to the original stream.
+ */
+public class DecodingServletOutputStream extends ServletOutputStream {
+
+    private final ServletOutputStream servletOutputStream;
+    private final OutputStream decoder;
+    private final Charset charset;
+
+    /**
+     * @param servletOutputStream Original stream from the container
+     * @param decoder Decoding stream which will get all writes
+     * @param charset Charset used to encode text written via {@link #print(String)}
+     */
+    public DecodingServletOutputStream(final ServletOutputStream servletOutputStream, final OutputStream decoder, final Charset charset) {
+        this.servletOutputStream = servletOutputStream;
+        this.decoder = decoder;
+        this.charset = charset;
+    }
+
+    @Override
+    public boolean isReady() {
+        return servletOutputStream.isReady();
+    }
+
+    @Override
+    public void setWriteListener(final WriteListener writeListener) {
+        servletOutputStream.setWriteListener(writeListener);
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        decoder.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        decoder.write(b, off, len);
+    }
+
+    /**
+     * Encodes the whole text at once, instead of writing it char by char.
+     */
+    @Override
+    public void print(final String s) throws IOException {
+        final byte[] bytes = String.valueOf(s).getBytes(charset);
+        decoder.write(bytes, 0, bytes.length);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        decoder.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        decoder.close();
+    }
+
+}
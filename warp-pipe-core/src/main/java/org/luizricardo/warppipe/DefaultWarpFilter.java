@@ -2,6 +2,9 @@ package org.luizricardo.warppipe;
 
 import org.luizricardo.warppipe.api.Step;
 import org.luizricardo.warppipe.api.StepManager;
+import org.luizricardo.warppipe.pipeline.ExecutorBuilder;
+import org.luizricardo.warppipe.pipeline.PriorityScheduler;
+import org.luizricardo.warppipe.pipeline.VirtualThreadPipeline;
 import org.luizricardo.warppipe.pipeline.step.DefaultStepManager;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -18,26 +21,190 @@ import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
 
 public class DefaultWarpFilter implements Filter {
 
     private static Logger logger = LoggerFactory.getLogger(DefaultWarpFilter.class);
 
+    /**
+     * Default number of threads executing steps after the request thread is released.
+     */
+    private static final int DEFAULT_ASYNC_THREADS = 16;
+
+    /**
+     * Default number of seconds to wait for running steps when the filter is destroyed.
+     */
+    private static final int DEFAULT_SHUTDOWN_TIMEOUT = 30;
+
     private static WarpFilterConfiguration config;
+    private static ExecutorService asyncExecutor;
+    private static ExecutorService pipelineExecutor;
+    private static PriorityScheduler scheduler;
+    private static int shutdownTimeout = DEFAULT_SHUTDOWN_TIMEOUT;
     private static volatile WarpFilter warpFilter;
 
     @Override
     public void init(final FilterConfig filterConfig) throws ServletException {
-        config = new WarpFilterConfiguration(
-                charset(filterConfig.getInitParameter("encoding")),
-                booleanParam(filterConfig.getInitParameter("flush-after-head"), true),
-                booleanParam(filterConfig.getInitParameter("auto-execute-before-closing-body"), true),
-                booleanParam(filterConfig.getInitParameter("auto-detect-placeholders"), true));
-        warpFilter = new WarpFilter(config, new DefaultStepManager(resolveSteps(filterConfig.getInitParameter("steps"))));
+        final WarpFilterConfiguration global = settings(filterConfig, "",
+                WarpFilterConfiguration.builder(charset(filterConfig.getInitParameter("encoding"))).build()).build();
+        final WarpFilterConfiguration.Builder builder = global.route();
+        boolean async = global.asyncExecution();
+        boolean concurrent = usesPipelineExecutor(global);
+        //routes are listed by name, each one with its own parameters prefixed by "route.<name>."
+        final String routeNames = filterConfig.getInitParameter("routes");
+        if (routeNames != null && !routeNames.trim().isEmpty()) {
+            for (final String name : routeNames.trim().split("[,;\\s]+")) {
+                final String prefix = "route." + name + ".";
+                final String patterns = filterConfig.getInitParameter(prefix + "patterns");
+                if (patterns == null || patterns.trim().isEmpty()) {
+                    throw new ServletException("No patterns for route " + name + " in parameter " + prefix + "patterns");
+                }
+                try {
+                    final WarpFilterConfiguration route = settings(filterConfig, prefix, global).build();
+                    async |= route.asyncExecution();
+                    concurrent |= usesPipelineExecutor(route);
+                    builder.route(route, patterns.trim().split("[,;\\s]+"));
+                } catch (IllegalArgumentException e) {
+                    throw new ServletException("Invalid configuration of route " + name, e);
+                }
+            }
+        }
+        config = builder.build();
+        shutdownExecutors();
+        try {
+            shutdownTimeout = intParam(filterConfig.getInitParameter("executor-shutdown-timeout"), DEFAULT_SHUTDOWN_TIMEOUT);
+            if (async) {
+                final int threads = intParam(filterConfig.getInitParameter("async-threads"), DEFAULT_ASYNC_THREADS);
+                asyncExecutor = executor(filterConfig, "async-executor.", ExecutorBuilder.create()
+                        .coreSize(threads).maxSize(threads).queueSize(-1).threadName("warp-pipe-async"));
+            }
+            if (concurrent) {
+                pipelineExecutor = executor(filterConfig, "pipeline-executor.", ExecutorBuilder.create()
+                        .threadName("warp-pipe-pipeline"));
+                //steps of all requests are given to the executor by priority, each request taking turns
+                if (booleanParam(filterConfig.getInitParameter("priority-scheduling"), false)) {
+                    scheduler = new PriorityScheduler(pipelineExecutor,
+                            intParam(filterConfig.getInitParameter("scheduler-quantum"), 1));
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid filter parameter: " + e.getMessage(), e);
+        }
+        warpFilter = new WarpFilter(config, new DefaultStepManager(resolveSteps(filterConfig.getInitParameter("steps"))),
+                asyncExecutor, pipelineExecutor, scheduler);
+    }
+
+    /**
+     * Whether steps of the configuration run on the pipeline executor, which is the case of concurrent
+     * and eager pipelines, of virtual threads when not available, and of steps executed in place.
+     */
+    private static boolean usesPipelineExecutor(final WarpFilterConfiguration config) {
+        switch (config.pipelineType()) {
+            case QUEUED:
+                return config.inPlace();
+            case VIRTUAL_THREADS:
+                return !VirtualThreadPipeline.available() || config.inPlace();
+            default:
+                return true;
+        }
+    }
+
+    /**
+     * Builds a thread pool with the parameters with the given prefix: {@code core-size}, {@code max-size},
+     * {@code queue-size}, {@code keep-alive} (in seconds), {@code rejection-policy} ({@code abort} or
+     * {@code caller-runs}) and {@code thread-name}.
+     */
+    private ExecutorService executor(final FilterConfig filterConfig, final String prefix, final ExecutorBuilder builder) {
+        final String coreSize = filterConfig.getInitParameter(prefix + "core-size");
+        final String maxSize = filterConfig.getInitParameter(prefix + "max-size");
+        final String queueSize = filterConfig.getInitParameter(prefix + "queue-size");
+        final String keepAlive = filterConfig.getInitParameter(prefix + "keep-alive");
+        final String rejectionPolicy = filterConfig.getInitParameter(prefix + "rejection-policy");
+        final String threadName = filterConfig.getInitParameter(prefix + "thread-name");
+        if (coreSize != null && !coreSize.isEmpty()) {
+            final int size = intParam(coreSize, 0);
+            builder.coreSize(size);
+            if (maxSize == null || maxSize.isEmpty()) {
+                builder.maxSize(size);
+            }
+        }
+        if (maxSize != null && !maxSize.isEmpty()) {
+            builder.maxSize(intParam(maxSize, 0));
+        }
+        if (queueSize != null && !queueSize.isEmpty()) {
+            builder.queueSize(intParam(queueSize, 0));
+        }
+        if (keepAlive != null && !keepAlive.isEmpty()) {
+            builder.keepAliveSeconds(intParam(keepAlive, 0));
+        }
+        if (rejectionPolicy != null && !rejectionPolicy.isEmpty()) {
+            builder.rejectionPolicy(ExecutorBuilder.RejectionPolicy.valueOf(rejectionPolicy.trim().toUpperCase().replace('-', '_')));
+        }
+        if (threadName != null && !threadName.isEmpty()) {
+            builder.threadName(threadName);
+        }
+        return builder.build();
+    }
+
+    /**
+     * Waits for the tasks of executors created by {@link #init(FilterConfig)} to finish.
+     */
+    private static void shutdownExecutors() {
+        if (asyncExecutor != null) {
+            ExecutorBuilder.shutdown(asyncExecutor, shutdownTimeout, TimeUnit.SECONDS);
+            asyncExecutor = null;
+        }
+        if (pipelineExecutor != null) {
+            ExecutorBuilder.shutdown(pipelineExecutor, shutdownTimeout, TimeUnit.SECONDS);
+            pipelineExecutor = null;
+        }
+        scheduler = null;
+    }
+
+    /**
+     * Reads the parameters with the given prefix, using the values of the base configuration when absent.
+     */
+    private WarpFilterConfiguration.Builder settings(final FilterConfig filterConfig, final String prefix,
+                                                     final WarpFilterConfiguration base) throws ServletException {
+        try {
+            final String steps = filterConfig.getInitParameter(prefix + "steps");
+            final String pipeline = filterConfig.getInitParameter(prefix + "pipeline");
+            WarpFilterConfiguration.PipelineType pipelineType = pipeline != null && !pipeline.isEmpty() ?
+                    WarpFilterConfiguration.PipelineType.valueOf(pipeline.trim().toUpperCase().replace('-', '_')) :
+                    base.pipelineType();
+            //blocking steps don't need a sized pool when virtual threads are available
+            if (pipelineType == WarpFilterConfiguration.PipelineType.CONCURRENT && VirtualThreadPipeline.available()
+                    && booleanParam(filterConfig.getInitParameter(prefix + "virtual-threads"), true)) {
+                pipelineType = WarpFilterConfiguration.PipelineType.VIRTUAL_THREADS;
+                logger.info("Virtual threads are available, so {}pipeline CONCURRENT uses them and {}pipeline-threads is ignored. "
+                        + "Set {}virtual-threads to false to keep the sized pool.", prefix, prefix, prefix);
+            }
+            return base.route()
+                    .flushAfterHead(booleanParam(filterConfig.getInitParameter(prefix + "flush-after-head"), base.flushAfterHead()))
+                    .autoExecuteBeforeClosingBody(booleanParam(filterConfig.getInitParameter(prefix + "auto-execute-before-closing-body"),
+                            base.autoExecuteBeforeClosingBody()))
+                    .autoDetectPlaceholders(booleanParam(filterConfig.getInitParameter(prefix + "auto-detect-placeholders"),
+                            base.autoDetectPlaceholders()))
+                    .bufferLimit(intParam(filterConfig.getInitParameter(prefix + "buffer-limit"), base.bufferLimit()))
+                    .pipeline(pipelineType, intParam(filterConfig.getInitParameter(prefix + "pipeline-threads"), base.pipelineThreads()))
+                    .bypass(booleanParam(filterConfig.getInitParameter(prefix + "bypass"), base.bypass()))
+                    .compression(booleanParam(filterConfig.getInitParameter(prefix + "compression"), base.compression()))
+                    .asyncExecution(booleanParam(filterConfig.getInitParameter(prefix + "async-execution"), base.asyncExecution()))
+                    .asyncTimeout(intParam(filterConfig.getInitParameter(prefix + "async-timeout"), base.asyncTimeout()))
+                    .inPlace(booleanParam(filterConfig.getInitParameter(prefix + "in-place"), base.inPlace()))
+                    .inPlaceBufferLimit(intParam(filterConfig.getInitParameter(prefix + "in-place-buffer-limit"),
+                            base.inPlaceBufferLimit()))
+                    .stepManager(steps != null && !steps.isEmpty() && !prefix.isEmpty() ?
+                            new DefaultStepManager(resolveSteps(steps)) : base.stepManager().orElse(null));
+        } catch (IllegalArgumentException e) {
+            throw new ServletException("Invalid filter parameter: " + e.getMessage(), e);
+        }
     }
 
     public static void setStepManager(StepManager stepManager) {
-        warpFilter = new WarpFilter(config, stepManager);
+        warpFilter = new WarpFilter(config, stepManager, asyncExecutor, pipelineExecutor, scheduler);
     }
 
     private Map<String, Step> resolveSteps(String stepConfiguration) {
@@ -68,6 +235,10 @@ public class DefaultWarpFilter implements Filter {
         return StandardCharsets.UTF_8;
     }
 
+    private int intParam(final String param, final int defaultValue) {
+        return param != null && !param.isEmpty() ? Integer.parseInt(param.trim()) : defaultValue;
+    }
+
     private boolean booleanParam(final String param, final boolean defaultValue) {
         return param != null && !param.isEmpty() ? Boolean.valueOf(param) : defaultValue;
     }
@@ -82,6 +253,7 @@ public class DefaultWarpFilter implements Filter {
 
     @Override
     public void destroy() {
+        shutdownExecutors();
         config = null;
         logger = null;
         warpFilter = null;
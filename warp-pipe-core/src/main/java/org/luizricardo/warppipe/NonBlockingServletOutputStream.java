@@ -0,0 +1,238 @@
+package org.luizricardo.warppipe;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.Deque;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Sits between decoders and the original {@link ServletOutputStream}, adding support to Servlet 3.1 non-blocking I/O.
+ *
+ * <p>
+ *     It writes straight to the original stream until a {@link WriteListener} is set. From then on, writes never
+ *     block: bytes go to a queue of byte buffers, which is drained whenever the container signals the original stream
+ *     is ready. Listeners may write more than what is given to the decoder, so the queue accepts writes while
+ *     {@link #isReady()} returns false, which happens while anything is queued, so the application stops writing, or
+ *     completing the request, until its listener is called again. The queue is bounded, so writing more than it holds
+ *     fails instead of growing without limit. Flushing and closing are delayed until the queue is drained.
+ * </p>
+ * <p>
+ *     Buffers are shared by all responses through a bounded pool, so slow clients hold a few buffers, not threads.
+ * </p>
+ */
+final class NonBlockingServletOutputStream extends ServletOutputStream {
+
+    static final int BUFFER_SIZE = 8192;
+    static final int MAX_QUEUED_BUFFERS = 128;
+    private static final int MAX_POOLED_BUFFERS = 256;
+    private static final BlockingQueue<ByteBuffer> POOL = new ArrayBlockingQueue<>(MAX_POOLED_BUFFERS);
+
+    private final ServletOutputStream out;
+    private final int maxQueuedBuffers;
+    private final Deque<ByteBuffer> queue = new ArrayDeque<>();
+    private WriteListener listener;
+    private boolean listenerWaiting;
+    private boolean flushPending;
+    private boolean closePending;
+    private boolean closed;
+
+    NonBlockingServletOutputStream(final ServletOutputStream out) {
+        this(out, MAX_QUEUED_BUFFERS);
+    }
+
+    NonBlockingServletOutputStream(final ServletOutputStream out, final int maxQueuedBuffers) {
+        this.out = out;
+        this.maxQueuedBuffers = maxQueuedBuffers;
+    }
+
+    /**
+     * Whether a {@link WriteListener} was set.
+     */
+    synchronized boolean nonBlocking() {
+        return listener != null;
+    }
+
+    /**
+     * Number of buffers waiting to be written to the original stream.
+     */
+    synchronized int queuedBuffers() {
+        return queue.size();
+    }
+
+    @Override
+    public synchronized boolean isReady() {
+        if (listener == null) {
+            return out.isReady();
+        }
+        drain();
+        //after draining, anything still queued means the original stream is not ready, so the container will call back
+        final boolean ready = queue.isEmpty() && out.isReady() && !closed;
+        listenerWaiting = !ready;
+        return ready;
+    }
+
+    @Override
+    public synchronized void setWriteListener(final WriteListener writeListener) {
+        if (writeListener == null) {
+            throw new NullPointerException("Write listener cannot be null!");
+        }
+        if (listener != null) {
+            throw new IllegalStateException("Write listener already set!");
+        }
+        this.listener = writeListener;
+        //the container calls back when the original stream is ready, then the application listener is called
+        this.listenerWaiting = true;
+        out.setWriteListener(new WriteListener() {
+            @Override
+            public void onWritePossible() throws IOException {
+                NonBlockingServletOutputStream.this.onWritePossible();
+            }
+
+            @Override
+            public void onError(final Throwable t) {
+                NonBlockingServletOutputStream.this.onError(t);
+            }
+        });
+    }
+
+    @Override
+    public void write(final int b) throws IOException {
+        synchronized (this) {
+            if (listener != null) {
+                ensureOpen();
+                tail().put((byte) b);
+                drain();
+                return;
+            }
+        }
+        out.write(b);
+    }
+
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        synchronized (this) {
+            if (listener != null) {
+                ensureOpen();
+                int position = off;
+                final int end = off + len;
+                while (position < end) {
+                    final ByteBuffer tail = tail();
+                    final int count = Math.min(tail.remaining(), end - position);
+                    tail.put(b, position, count);
+                    position += count;
+                }
+                drain();
+                return;
+            }
+        }
+        out.write(b, off, len);
+    }
+
+    @Override
+    public void flush() throws IOException {
+        synchronized (this) {
+            if (listener != null) {
+                flushPending = true;
+                drain();
+                return;
+            }
+        }
+        out.flush();
+    }
+
+    @Override
+    public void close() throws IOException {
+        synchronized (this) {
+            if (listener != null) {
+                closed = true;
+                closePending = true;
+                drain();
+                return;
+            }
+        }
+        out.close();
+    }
+
+    private void ensureOpen() throws IOException {
+        if (closed) {
+            throw new IOException("Stream closed!");
+        }
+    }
+
+    /**
+     * Buffer at the end of the queue, with space for at least one byte.
+     * @throws IOException If the queue is full.
+     */
+    private ByteBuffer tail() throws IOException {
+        final ByteBuffer last = queue.peekLast();
+        if (last != null && last.hasRemaining()) {
+            return last;
+        }
+        if (queue.size() >= maxQueuedBuffers) {
+            throw new IOException("Output queue is full, the application should wait for isReady()");
+        }
+        ByteBuffer buffer = POOL.poll();
+        if (buffer == null) {
+            buffer = ByteBuffer.allocate(BUFFER_SIZE);
+        }
+        queue.addLast(buffer);
+        return buffer;
+    }
+
+    /**
+     * Writes queued buffers while the original stream is ready, then flushes or closes it if requested.
+     */
+    private void drain() {
+        try {
+            while (!queue.isEmpty() && out.isReady()) {
+                final ByteBuffer buffer = queue.pollFirst();
+                out.write(buffer.array(), buffer.arrayOffset(), buffer.position());
+                release(buffer);
+            }
+            if (queue.isEmpty() && (flushPending || closePending) && out.isReady()) {
+                if (closePending) {
+                    closePending = false;
+                    flushPending = false;
+                    out.close();
+                } else {
+                    flushPending = false;
+                    out.flush();
+                }
+            }
+        } catch (IOException e) {
+            onError(e);
+        }
+    }
+
+    private synchronized void onWritePossible() throws IOException {
+        drain();
+        if (listenerWaiting && queue.isEmpty() && !closed) {
+            listenerWaiting = false;
+            listener.onWritePossible();
+        }
+    }
+
+    private void onError(final Throwable t) {
+        final WriteListener current;
+        synchronized (this) {
+            closed = true;
+            closePending = false;
+            flushPending = false;
+            while (!queue.isEmpty()) {
+                release(queue.pollFirst());
+            }
+            current = listener;
+        }
+        current.onError(t);
+    }
+
+    private static void release(final ByteBuffer buffer) {
+        buffer.clear();
+        POOL.offer(buffer);
+    }
+
+}
@@ -0,0 +1,425 @@
+package org.luizricardo.warppipe;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.Deque;
+
+/**
+ * Output of a decoder where positions may be reserved for content written later, possibly by other threads.
+ *
+ * <p>
+ *     A {@link Slot} reserves the current position of the output. Content written to the output after it is held back
+ *     until the slot is closed. Content written to a slot goes straight to the original output once all slots before
+ *     it are closed, otherwise it's held back too. So many slots may be filled at the same time and the original output
+ *     still gets everything in order, each slot being written as soon as the ones before it are complete.
+ * </p>
+ * <p>
+ *     Slots are opened by the thread writing the output, usually from a listener. A slot may limit the content held
+ *     back after it, then the thread writing the output waits for the slot to be closed instead of holding more.
+ * </p>
+ */
+public final class OrderedOutput {
+
+    private final OutputStream stream;
+    private final Writer writer;
+    private final Charset charset;
+    private final Deque<Slot> slots = new ArrayDeque<>();
+    /**
+     * Whether there are open slots, checked before locking so output without slots is not slowed down.
+     */
+    private volatile boolean ordering;
+    /**
+     * Bytes or characters held back after all open slots.
+     */
+    private long held;
+    private boolean closeHeld;
+
+    private OrderedOutput(final OutputStream stream, final Writer writer, final Charset charset) {
+        this.stream = stream;
+        this.writer = writer;
+        this.charset = charset;
+    }
+
+    /**
+     * @param charset Charset to encode content written to slots.
+     */
+    static OrderedOutput forOutputStream(final OutputStream stream, final Charset charset) {
+        return new OrderedOutput(stream, null, charset);
+    }
+
+    static OrderedOutput forWriter(final Writer writer) {
+        return new OrderedOutput(null, writer, null);
+    }
+
+    /**
+     * Stream where the decoder writes, which must be the one given to {@link #forOutputStream(OutputStream, Charset)}.
+     */
+    OutputStream outputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                if (!ordering) {
+                    stream.write(b);
+                    return;
+                }
+                synchronized (OrderedOutput.this) {
+                    if (slots.isEmpty()) {
+                        stream.write(b);
+                    } else {
+                        slots.peekLast().heldBytes.write(b);
+                        holding(1);
+                    }
+                }
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                if (!ordering) {
+                    stream.write(b, off, len);
+                    return;
+                }
+                synchronized (OrderedOutput.this) {
+                    if (slots.isEmpty()) {
+                        stream.write(b, off, len);
+                    } else {
+                        slots.peekLast().heldBytes.write(b, off, len);
+                        holding(len);
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                OrderedOutput.this.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                OrderedOutput.this.close();
+            }
+        };
+    }
+
+    /**
+     * Writer where the decoder writes, which must be the one given to {@link #forWriter(Writer)}.
+     */
+    Writer writer() {
+        return new Writer() {
+            @Override
+            public void write(final char[] cbuf, final int off, final int len) throws IOException {
+                if (!ordering) {
+                    writer.write(cbuf, off, len);
+                    return;
+                }
+                synchronized (OrderedOutput.this) {
+                    if (slots.isEmpty()) {
+                        writer.write(cbuf, off, len);
+                    } else {
+                        slots.peekLast().heldChars.append(cbuf, off, len);
+                        holding(len);
+                    }
+                }
+            }
+
+            @Override
+            public void write(final String str, final int off, final int len) throws IOException {
+                if (!ordering) {
+                    writer.write(str, off, len);
+                    return;
+                }
+                synchronized (OrderedOutput.this) {
+                    if (slots.isEmpty()) {
+                        writer.write(str, off, len);
+                    } else {
+                        slots.peekLast().heldChars.append(str, off, off + len);
+                        holding(len);
+                    }
+                }
+            }
+
+            @Override
+            public void flush() throws IOException {
+                OrderedOutput.this.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                OrderedOutput.this.close();
+            }
+        };
+    }
+
+    /**
+     * Counts content held back and waits while the first slot limits it.
+     */
+    private void holding(final int length) throws IOException {
+        held += length;
+        try {
+            Slot first;
+            while ((first = slots.peekFirst()) != null && first.heldLimit >= 0 && held > first.heldLimit) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for a slot to be closed");
+        }
+    }
+
+    /**
+     * Content before the first slot is already in the original output, so it's always flushed.
+     */
+    private void flush() throws IOException {
+        if (!ordering) {
+            flushOriginal();
+            return;
+        }
+        synchronized (this) {
+            flushOriginal();
+        }
+    }
+
+    private void close() throws IOException {
+        if (!ordering) {
+            closeOriginal();
+            return;
+        }
+        synchronized (this) {
+            if (slots.isEmpty()) {
+                closeOriginal();
+            } else {
+                closeHeld = true;
+            }
+        }
+    }
+
+    private void flushOriginal() throws IOException {
+        if (stream != null) {
+            stream.flush();
+        } else {
+            writer.flush();
+        }
+    }
+
+    private void closeOriginal() throws IOException {
+        if (stream != null) {
+            stream.close();
+        } else {
+            writer.close();
+        }
+    }
+
+    /**
+     * Reserves the current position of the output. Content written after it is held back until it's closed.
+     */
+    public Slot open() {
+        return open(-1);
+    }
+
+    /**
+     * Reserves the current position of the output, limiting the content held back after it.
+     * @param heldLimit Maximum number of bytes or characters held back while this is the first open slot,
+     *                  before writing to the output waits for it to be closed. Negative means no limit,
+     *                  which is required when the slot is only closed after the output is completely written.
+     */
+    public synchronized Slot open(final int heldLimit) {
+        final Slot slot = new Slot(heldLimit);
+        slots.addLast(slot);
+        ordering = true;
+        return slot;
+    }
+
+    /**
+     * Waits until all slots with a limit are closed, so there's nothing left to be written by other threads,
+     * except for slots without limit and the content after them.
+     */
+    synchronized void await() throws IOException {
+        try {
+            Slot first;
+            while ((first = slots.peekFirst()) != null && first.heldLimit >= 0) {
+                wait();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for slots to be closed");
+        }
+    }
+
+    /**
+     * Writes the content of the first slots and what was held back after the closed ones.
+     */
+    private void drain() throws IOException {
+        try {
+            Slot first;
+            while ((first = slots.peekFirst()) != null) {
+                first.writePending();
+                if (!first.closed) {
+                    break;
+                }
+                slots.pollFirst();
+                first.writeHeld();
+            }
+            if (slots.isEmpty()) {
+                ordering = false;
+                if (closeHeld) {
+                    closeHeld = false;
+                    closeOriginal();
+                    return;
+                }
+            }
+            flushOriginal();
+        } catch (IOException e) {
+            //the output is broken, so nothing else is held back
+            slots.clear();
+            held = 0;
+            ordering = false;
+            throw e;
+        } finally {
+            notifyAll();
+        }
+    }
+
+    /**
+     * Position of the output reserved for content written later.
+     */
+    public final class Slot {
+        private final int heldLimit;
+        private final Writer slotWriter;
+        private final ByteArrayOutputStream heldBytes;
+        private final StringBuilder heldChars;
+        /**
+         * Content of the slot itself written while there were open slots before it.
+         */
+        private final ByteArrayOutputStream pendingBytes;
+        private final StringBuilder pendingChars;
+        private boolean closed;
+
+        private Slot(final int heldLimit) {
+            this.heldLimit = heldLimit;
+            if (stream != null) {
+                heldBytes = new ByteArrayOutputStream();
+                pendingBytes = new ByteArrayOutputStream();
+                heldChars = null;
+                pendingChars = null;
+                slotWriter = new OutputStreamWriter(new OutputStream() {
+                    @Override
+                    public void write(final int b) throws IOException {
+                        write(new byte[] { (byte) b }, 0, 1);
+                    }
+
+                    @Override
+                    public void write(final byte[] b, final int off, final int len) throws IOException {
+                        synchronized (OrderedOutput.this) {
+                            if (first()) {
+                                stream.write(b, off, len);
+                            } else {
+                                pendingBytes.write(b, off, len);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        Slot.this.flush();
+                    }
+                }, charset);
+            } else {
+                heldBytes = null;
+                pendingBytes = null;
+                heldChars = new StringBuilder();
+                pendingChars = new StringBuilder();
+                slotWriter = new Writer() {
+                    @Override
+                    public void write(final char[] cbuf, final int off, final int len) throws IOException {
+                        synchronized (OrderedOutput.this) {
+                            if (first()) {
+                                writer.write(cbuf, off, len);
+                            } else {
+                                pendingChars.append(cbuf, off, len);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void write(final String str, final int off, final int len) throws IOException {
+                        synchronized (OrderedOutput.this) {
+                            if (first()) {
+                                writer.write(str, off, len);
+                            } else {
+                                pendingChars.append(str, off, off + len);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public void flush() throws IOException {
+                        Slot.this.flush();
+                    }
+
+                    @Override
+                    public void close() {
+                        //the slot is closed by Slot.close()
+                    }
+                };
+            }
+        }
+
+        private boolean first() {
+            return slots.peekFirst() == this;
+        }
+
+        private void flush() throws IOException {
+            synchronized (OrderedOutput.this) {
+                if (first()) {
+                    flushOriginal();
+                }
+            }
+        }
+
+        /**
+         * Writer to the slot, which may be used by any thread until the slot is closed. It's not thread-safe.
+         */
+        public Writer writer() {
+            return slotWriter;
+        }
+
+        /**
+         * Completes the content of the slot, writing everything held back up to the next open slot.
+         */
+        public void close() throws IOException {
+            slotWriter.flush();
+            synchronized (OrderedOutput.this) {
+                if (!closed) {
+                    closed = true;
+                    drain();
+                }
+            }
+        }
+
+        private void writePending() throws IOException {
+            if (pendingBytes != null && pendingBytes.size() > 0) {
+                pendingBytes.writeTo(stream);
+                pendingBytes.reset();
+            } else if (pendingChars != null && pendingChars.length() > 0) {
+                writer.append(pendingChars);
+                pendingChars.setLength(0);
+            }
+        }
+
+        private void writeHeld() throws IOException {
+            if (heldBytes != null) {
+                held -= heldBytes.size();
+                heldBytes.writeTo(stream);
+            } else {
+                held -= heldChars.length();
+                writer.append(heldChars);
+            }
+        }
+    }
+
+}
@@ -0,0 +1,151 @@
+package org.luizricardo.warppipe;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.function.Function;
+
+/**
+ * Maps request paths to values using servlet-like URL patterns, which are precompiled so routing a path costs
+ * a few lookups, no matter how many patterns there are.
+ *
+ * <p>
+ *     Supported patterns are exact paths like {@code /index.html}, path prefixes like {@code /admin/*} (which also
+ *     match {@code /admin}), extensions like {@code *.jsp} and the default patterns {@code /} and {@code /*}, which
+ *     match everything. Prefixes are kept in a trie of path segments and extensions in a map. When more than one
+ *     pattern matches, the first one added wins. Instances are immutable.
+ * </p>
+ */
+public final class PathPatternRouter<T> {
+
+    /**
+     * Node of the trie of path segments.
+     */
+    private static final class Node {
+        private final Map<String, Node> children = new HashMap<>();
+
+        /**
+         * Order of the prefix pattern ending at this node, or -1.
+         */
+        private int order = -1;
+
+        /**
+         * Copy of the subtree, so routers don't share nodes with the builder.
+         */
+        private Node copy() {
+            final Node copy = new Node();
+            copy.order = order;
+            children.forEach((segment, child) -> copy.children.put(segment, child.copy()));
+            return copy;
+        }
+    }
+
+    private final List<T> values;
+    private final Map<String, Integer> exact;
+    private final Map<String, Integer> extensions;
+    private final Node root;
+
+    private PathPatternRouter(final List<T> values, final Map<String, Integer> exact,
+                              final Map<String, Integer> extensions, final Node root) {
+        this.values = values;
+        this.exact = exact;
+        this.extensions = extensions;
+        this.root = root;
+    }
+
+    public static <T> Builder<T> builder() {
+        return new Builder<>();
+    }
+
+    /**
+     * Builder which keeps the order patterns are added.
+     */
+    public static final class Builder<T> {
+        private final List<T> values = new ArrayList<>();
+        private final Map<String, Integer> exact = new HashMap<>();
+        private final Map<String, Integer> extensions = new HashMap<>();
+        private final Node root = new Node();
+
+        private Builder() { }
+
+        /**
+         * Adds a pattern, which will have lower precedence than the ones previously added.
+         * @throws IllegalArgumentException If the pattern is not valid.
+         */
+        public Builder<T> add(final String pattern, final T value) {
+            final int order = values.size();
+            if (pattern.startsWith("*.") && pattern.length() > 2 && pattern.indexOf('/') < 0) {
+                extensions.putIfAbsent(pattern.substring(2), order);
+            } else if (pattern.equals("/") || pattern.equals("/*")) {
+                if (root.order < 0) root.order = order;
+            } else if (pattern.startsWith("/") && pattern.endsWith("/*")) {
+                Node node = root;
+                for (final String segment : pattern.substring(1, pattern.length() - 2).split("/")) {
+                    node = node.children.computeIfAbsent(segment, s -> new Node());
+                }
+                if (node.order < 0) node.order = order;
+            } else if (pattern.startsWith("/") && !pattern.contains("*")) {
+                exact.putIfAbsent(pattern, order);
+            } else {
+                throw new IllegalArgumentException("Invalid URL pattern: " + pattern);
+            }
+            values.add(value);
+            return this;
+        }
+
+        public PathPatternRouter<T> build() {
+            return new PathPatternRouter<>(new ArrayList<>(values), new HashMap<>(exact), new HashMap<>(extensions), root.copy());
+        }
+    }
+
+    /**
+     * Whether there are no patterns, so nothing is ever matched.
+     */
+    public boolean isEmpty() {
+        return values.isEmpty();
+    }
+
+    /**
+     * Router with the same patterns, whose values are converted by the given function.
+     * The function is called once for each distinct value, even if it's used by many patterns.
+     */
+    public <R> PathPatternRouter<R> map(final Function<? super T, ? extends R> function) {
+        final Map<T, R> converted = new IdentityHashMap<>();
+        final List<R> mapped = new ArrayList<>(values.size());
+        for (final T value : values) {
+            mapped.add(converted.computeIfAbsent(value, function));
+        }
+        return new PathPatternRouter<>(mapped, exact, extensions, root);
+    }
+
+    /**
+     * Finds the value of the first pattern matching the path, relative to the context, like {@code /admin/users}.
+     */
+    public Optional<T> route(final String path) {
+        int best = exact.getOrDefault(path, Integer.MAX_VALUE);
+        //walk down the trie while segments match, checking prefixes ending at each node
+        Node node = root;
+        best = node.order >= 0 ? Math.min(best, node.order) : best;
+        int start = path.startsWith("/") ? 1 : 0;
+        while (start < path.length() && !node.children.isEmpty()) {
+            int end = path.indexOf('/', start);
+            if (end < 0) end = path.length();
+            node = node.children.get(path.substring(start, end));
+            if (node == null) break;
+            best = node.order >= 0 ? Math.min(best, node.order) : best;
+            start = end + 1;
+        }
+        //extension of the last segment
+        if (!extensions.isEmpty()) {
+            final int dot = path.lastIndexOf('.');
+            if (dot > path.lastIndexOf('/')) {
+                best = Math.min(best, extensions.getOrDefault(path.substring(dot + 1), Integer.MAX_VALUE));
+            }
+        }
+        return best == Integer.MAX_VALUE ? Optional.empty() : Optional.of(values.get(best));
+    }
+
+}
@@ -1,56 +1,345 @@
 package org.luizricardo.warppipe;
 
-import net.htmlparser.jericho.StartTag;
+import org.luizricardo.warppipe.api.Pipeline;
+import org.luizricardo.warppipe.api.PipelineResult;
 import org.luizricardo.warppipe.api.StepContext;
 import org.luizricardo.warppipe.api.StepManager;
+import org.luizricardo.warppipe.decoder.StreamDecoder;
+import org.luizricardo.warppipe.decoder.StreamDecoderBuilder;
+import org.luizricardo.warppipe.decoder.StreamDecoderPool;
+import org.luizricardo.warppipe.decoder.StreamDecoderTemplate;
 import org.luizricardo.warppipe.listener.MatchingContext;
 import org.luizricardo.warppipe.listener.StreamListener;
 import org.luizricardo.warppipe.matcher.HtmlCloseTagStreamMatcher;
+import org.luizricardo.warppipe.matcher.HtmlTag;
 import org.luizricardo.warppipe.matcher.HtmlTagStreamMatcher;
+import org.luizricardo.warppipe.pipeline.ConcurrentPipeline;
+import org.luizricardo.warppipe.pipeline.EagerPipeline;
+import org.luizricardo.warppipe.pipeline.PipelineException;
+import org.luizricardo.warppipe.pipeline.Priority;
+import org.luizricardo.warppipe.pipeline.PriorityScheduler;
 import org.luizricardo.warppipe.pipeline.QueuedPipeline;
+import org.luizricardo.warppipe.pipeline.VirtualThreadPipeline;
 import org.luizricardo.warppipe.api.StepData;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
 import javax.servlet.FilterChain;
 import javax.servlet.ServletException;
 import javax.servlet.ServletResponse;
 import javax.servlet.http.HttpServletRequest;
-import javax.servlet.http.HttpServletResponse;
 import java.io.BufferedWriter;
 import java.io.IOException;
 import java.io.Writer;
-import java.util.HashMap;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.atomic.AtomicBoolean;
 
 public class WarpFilter {
 
     final static Logger logger = LoggerFactory.getLogger(WarpFilter.class);
 
-    private final WarpFilterConfiguration config;
+    /**
+     * Maximum number of idle decoders of each kind kept for reuse by next requests.
+     */
+    private static final int DECODER_POOL_SIZE = 64;
+
     private final HtmlCloseTagStreamMatcher closeHeadFlush;
     private final HtmlTagStreamMatcher placeholderMapping;
     private final HtmlCloseTagStreamMatcher closeBodyProcess;
     private final StepManager stepManager;
+    private final Optional<Executor> asyncExecutor;
+    private final Optional<ExecutorService> pipelineExecutor;
+    private final Optional<PriorityScheduler> scheduler;
+    private final Route defaultRoute;
+    private final PathPatternRouter<Route> routes;
+
+    /**
+     * Settings of the requests matching a route, with decoders bound accordingly.
+     */
+    private final class Route {
+        private final WarpFilterConfiguration config;
+        private final StepManager stepManager;
+        private final StreamDecoderPool decoderPool;
+
+        private Route(final WarpFilterConfiguration config) {
+            this.config = config;
+            this.stepManager = config.stepManager().orElse(WarpFilter.this.stepManager);
+            this.decoderPool = config.bypass() ? null : new StreamDecoderPool(buildTemplate(config), DECODER_POOL_SIZE);
+            if (usesPipelineExecutor() && !pipelineExecutor.isPresent()) {
+                throw new IllegalArgumentException("Pipeline " + config.pipelineType() + " requires a pipeline executor");
+            }
+        }
+
+        /**
+         * Whether the pipeline of this route executes steps with the executor of the filter.
+         */
+        private boolean usesPipelineExecutor() {
+            switch (config.pipelineType()) {
+                case CONCURRENT:
+                    return true;
+                case EAGER:
+                    return !scheduler.isPresent();
+                case VIRTUAL_THREADS:
+                    return !VirtualThreadPipeline.available();
+                default:
+                    return false;
+            }
+        }
+
+        private Pipeline.Builder<? extends Pipeline> pipelineBuilder(final StepManager steps, final RequestState state) {
+            if (config.pipelineType() == WarpFilterConfiguration.PipelineType.EAGER) {
+                return scheduler.isPresent() ?
+                        EagerPipeline.create(steps, state.lane(), state.request, state.started::add) :
+                        EagerPipeline.create(steps, pipelineExecutor.get(), state.request, state.started::add);
+            }
+            if (config.pipelineType() == WarpFilterConfiguration.PipelineType.VIRTUAL_THREADS
+                    && VirtualThreadPipeline.available()) {
+                return VirtualThreadPipeline.create(steps);
+            }
+            if (config.pipelineType() == WarpFilterConfiguration.PipelineType.QUEUED) {
+                //deferred steps are started by the async executor, not by threads completing asynchronous steps
+                return asyncExecutor.isPresent() ? QueuedPipeline.create(steps, asyncExecutor.get()) : QueuedPipeline.create(steps);
+            }
+            return ConcurrentPipeline.create(steps, pipelineExecutor.get(), config.pipelineThreads());
+        }
+    }
+
+    /**
+     * State of each request, attached to its decoder so listeners can be shared by all requests.
+     */
+    private final class RequestState {
+        private final HttpServletRequest request;
+        private final Route route;
+        private PriorityScheduler.Lane lane;
+        private Pipeline.Builder<? extends Pipeline> pipelineBuilder;
+        private DecodingHttpServletResponse response;
+
+        /**
+         * Pipeline to be executed after the request thread is released, and the writer to its output.
+         */
+        private Pipeline deferred;
+        private Writer deferredWriter;
+
+        /**
+         * Steps started before their pipeline is executed, by {@link EagerPipeline}.
+         */
+        private final List<Future<?>> started = new ArrayList<>();
+
+        private RequestState(final HttpServletRequest request, final Route route) {
+            this.request = request;
+            this.route = route;
+        }
+
+        /**
+         * Cancels steps which were started but never ran, since their pipeline won't be executed.
+         */
+        private void cancelStarted() {
+            for (final Future<?> task : started) {
+                task.cancel(false);
+            }
+            started.clear();
+        }
+
+        /**
+         * Lane of the request in the scheduler, which must be present.
+         */
+        private PriorityScheduler.Lane lane() {
+            if (lane == null) {
+                lane = scheduler.get().lane();
+            }
+            return lane;
+        }
+
+        private Pipeline.Builder<? extends Pipeline> pipelineBuilder() {
+            if (pipelineBuilder == null) {
+                //deferred steps are flushed one by one, so each pagelet is sent as soon as it's complete
+                final StepManager steps = new StepManager() {
+                    @Override
+                    public void execute(final StepData stepData, final StepContext stepContext) throws PipelineException {
+                        route.stepManager.execute(stepData, stepContext);
+                        if (deferred != null) {
+                            try {
+                                stepContext.writer().flush();
+                            } catch (IOException e) {
+                                throw new PipelineException("Error flushing step output", e, stepData);
+                            }
+                        }
+                    }
+
+                    @Override
+                    public CompletionStage<Void> executeAsync(final StepData stepData, final StepContext stepContext) {
+                        final CompletionStage<Void> execution = route.stepManager.executeAsync(stepData, stepContext);
+                        if (deferred == null) {
+                            return execution;
+                        }
+                        return execution.thenRun(() -> {
+                            try {
+                                stepContext.writer().flush();
+                            } catch (IOException e) {
+                                throw new CompletionException(new PipelineException("Error flushing step output", e, stepData));
+                            }
+                        });
+                    }
+
+                    @Override
+                    public Optional<Integer> defaultPriority(final StepData stepData, final StepContext stepContext) throws PipelineException {
+                        return route.stepManager.defaultPriority(stepData, stepContext);
+                    }
+                };
+                pipelineBuilder = route.pipelineBuilder(steps, this);
+            }
+            return pipelineBuilder;
+        }
+    }
 
     public WarpFilter(final WarpFilterConfiguration config, final StepManager stepManager) {
-        this.config = config;
+        this(config, stepManager, null);
+    }
+
+    /**
+     * Same as the other constructor, without an executor shared by concurrent pipelines, so only
+     * {@link WarpFilterConfiguration.PipelineType#QUEUED} pipelines are supported.
+     */
+    public WarpFilter(final WarpFilterConfiguration config, final StepManager stepManager, final Executor asyncExecutor) {
+        this(config, stepManager, asyncExecutor, null);
+    }
+
+    /**
+     * @param asyncExecutor Executes steps of routes with {@link WarpFilterConfiguration#asyncExecution()}.
+     *                      When null, steps are always executed by the request thread.
+     * @param pipelineExecutor Executor shared by concurrent pipelines, which is not shut down by the filter.
+     *                         It's required by concurrent and eager pipelines, unless eager steps are scheduled.
+     * @throws IllegalArgumentException If a route requires the pipeline executor and it's null.
+     */
+    public WarpFilter(final WarpFilterConfiguration config, final StepManager stepManager, final Executor asyncExecutor,
+                      final ExecutorService pipelineExecutor) {
+        this(config, stepManager, asyncExecutor, pipelineExecutor, null);
+    }
+
+    /**
+     * @param asyncExecutor Executes steps of routes with {@link WarpFilterConfiguration#asyncExecution()}.
+     *                      When null, steps are always executed by the request thread.
+     * @param pipelineExecutor Executor shared by concurrent pipelines, which is not shut down by the filter.
+     *                         It's required by concurrent and eager pipelines, unless eager steps are scheduled.
+     * @throws IllegalArgumentException If a route requires the pipeline executor and it's null.
+     * @param scheduler Schedules steps started eagerly or in place by priority across all requests, usually
+     *                  on the pipeline executor. When null, they are given to the pipeline executor in order.
+     */
+    public WarpFilter(final WarpFilterConfiguration config, final StepManager stepManager, final Executor asyncExecutor,
+                      final ExecutorService pipelineExecutor, final PriorityScheduler scheduler) {
         this.stepManager = stepManager;
+        this.asyncExecutor = Optional.ofNullable(asyncExecutor);
+        this.pipelineExecutor = Optional.ofNullable(pipelineExecutor);
+        this.scheduler = Optional.ofNullable(scheduler);
         this.closeHeadFlush = HtmlCloseTagStreamMatcher.forTag("head");
         this.placeholderMapping = HtmlTagStreamMatcher.forTag("placeholder");
         this.closeBodyProcess = HtmlCloseTagStreamMatcher.forTag("body");
+        this.defaultRoute = new Route(config);
+        this.routes = config.routes().map(Route::new);
     }
 
-    private StepData buildStepData(final MatchingContext matchingContext) {
-        final StartTag tag = placeholderMapping.findStartTag(matchingContext.content());
-        if (tag != null) {
-            return StepData.create(
-                    tag.getAttributeValue("id"),
-                    priority(tag.getAttributeValue("pipeline-priority")),
-                    tag.getAttributes().populateMap(new HashMap<>(), true));
-        } else {
-            throw new RuntimeException("Tag matched but not found later!");
+    private StreamDecoderTemplate buildTemplate(final WarpFilterConfiguration config) {
+        final StreamDecoderBuilder<StreamDecoderTemplate> builder = StreamDecoder.template();
+        builder.bufferLimit(config.bufferLimit());
+        //head and body are closed once, and placeholders after the body is closed would never be executed,
+        //so once they match nothing is checked for the rest of the page
+        if (config.flushAfterHead()) {
+            builder.bindOnce(closeHeadFlush, StreamListener.flushListener());
         }
+        if (config.autoExecuteBeforeClosingBody()) {
+            builder.bindOnce(closeBodyProcess, matchingContext -> {
+                final RequestState state = requestState(matchingContext);
+                if (config.asyncExecution() && asyncExecutor.isPresent() && state.request.isAsyncSupported()
+                        && !state.request.isAsyncStarted()) {
+                    //the page is sent and the rest of it is held back until steps are executed by filter()
+                    matchingContext.output().flush();
+                    state.deferredWriter = state.response.hold();
+                    state.deferred = state.pipelineBuilder().build();
+                } else {
+                    state.pipelineBuilder().build().execute(buildStepContext(state.request, matchingContext));
+                }
+            });
+        }
+        if (config.autoDetectPlaceholders()) {
+            final StreamListener includeStep = config.inPlace() ? this::startStep : matchingContext ->
+                    requestState(matchingContext).pipelineBuilder().include(buildStepData(matchingContext));
+            if (config.autoExecuteBeforeClosingBody()) {
+                builder.bindUntil(placeholderMapping, includeStep, closeBodyProcess);
+            } else {
+                builder.bind(placeholderMapping, includeStep);
+            }
+        }
+        return builder.build();
+    }
+
+    /**
+     * Writes the placeholder and starts its step, whose output is written right after it while the rest of the page
+     * is held back. Without an executor, or when it's busy, the step is executed by the request thread.
+     */
+    private void startStep(final MatchingContext matchingContext) throws IOException {
+        final RequestState state = requestState(matchingContext);
+        final StepData stepData = buildStepData(matchingContext);
+        final StringBuilder placeholder = matchingContext.content();
+        matchingContext.output().write(placeholder, 0, placeholder.length());
+        matchingContext.clear();
+        final OrderedOutput.Slot slot = state.response.output().open(state.route.config.inPlaceBufferLimit());
+        final Writer writer = new BufferedWriter(slot.writer());
+        final StepContext stepContext = StepContext.create(writer, state.request);
+        final Runnable task = () -> {
+            try {
+                try {
+                    state.route.stepManager.execute(stepData, stepContext);
+                } catch (PipelineException e) {
+                    logger.error("Failed to execute step.", e);
+                } finally {
+                    try {
+                        writer.flush();
+                    } finally {
+                        slot.close();
+                    }
+                }
+            } catch (IOException e) {
+                logger.error("Error writing the output of a step.", e);
+            }
+        };
+        try {
+            if (scheduler.isPresent()) {
+                state.lane().execute(task, Priority.resolve(stepData, stepContext, state.route.stepManager));
+            } else if (pipelineExecutor.isPresent()) {
+                pipelineExecutor.get().execute(task);
+            } else {
+                task.run();
+            }
+        } catch (RejectedExecutionException e) {
+            logger.warn("Executor rejected step, executing it in the request thread.", e);
+            task.run();
+        }
+    }
+
+    private RequestState requestState(final MatchingContext matchingContext) {
+        return matchingContext.attachment(RequestState.class)
+                .orElseThrow(() -> new IllegalStateException("Request state not attached to the decoder!"));
+    }
+
+    private StepData buildStepData(final MatchingContext matchingContext) {
+        final HtmlTag tag = matchingContext.result(HtmlTag.class)
+                .orElseThrow(() -> new RuntimeException("Tag matched but not found later!"));
+        return StepData.wrap(
+                tag.attribute("id").orElse(null),
+                priority(tag.attribute("pipeline-priority").orElse(null)),
+                tag.attributes());
     }
 
     private Optional<Integer> priority(String attr) {
@@ -70,7 +359,7 @@ public class WarpFilter {
                         new Writer() {
                             @Override
                             public void write(char[] cbuf, int off, int len) throws IOException {
-                                context.output().write(new String(cbuf, off, len));
+                                context.output().write(cbuf, off, len);
                             }
 
                             @Override
@@ -90,22 +379,207 @@ public class WarpFilter {
 
     public void filter(final HttpServletRequest request, final ServletResponse response,
                          final FilterChain chain) throws IOException, ServletException {
-        final QueuedPipeline.Builder pipelineBuilder = QueuedPipeline.create(stepManager);
-        final HttpServletResponse responseWrapper = new DecodingHttpServletResponse(response, config.charset(),
-                builder -> {
-                    if (config.flushAfterHead()) {
-                        builder.bind(closeHeadFlush, StreamListener.flushListener());
-                    }
-                    if (config.autoExecuteBeforeClosingBody()) {
-                        builder.bind(closeBodyProcess, matchingContext ->
-                                pipelineBuilder.build().execute(buildStepContext(request, matchingContext)));
-                    }
-                    if (config.autoDetectPlaceholders()) {
-                        builder.bind(placeholderMapping, matchingContext ->
-                                pipelineBuilder.include(buildStepData(matchingContext)));
-                    }
-                });
-        chain.doFilter(request, responseWrapper);
+        final Route route = route(request);
+        if (route.config.bypass() || request.getAttribute(DecodingHttpServletResponse.SKIP_DECODING_ATTRIBUTE) != null) {
+            chain.doFilter(request, response);
+            return;
+        }
+        final RequestState state = new RequestState(request, route);
+        final DecodingHttpServletResponse responseWrapper = new DecodingHttpServletResponse(request, response,
+                route.config.charset(), route.decoderPool, state, route.config.compression());
+        state.response = responseWrapper;
+        try {
+            chain.doFilter(request, responseWrapper);
+        } finally {
+            //a page without the end of the body never executes the steps started for it
+            if (state.deferred == null && !request.isAsyncStarted()) {
+                state.cancelStarted();
+            }
+        }
+        if (state.deferred != null) {
+            //the page is rendered, so steps are executed without holding the container thread
+            final AsyncContext asyncContext = request.startAsync(request, responseWrapper);
+            asyncContext.setTimeout(route.config.asyncTimeout());
+            final DeferredCompletion completion = new DeferredCompletion(state, asyncContext);
+            asyncContext.addListener(completion);
+            final Runnable task = () -> executeDeferred(state, completion);
+            try {
+                asyncExecutor.get().execute(task);
+            } catch (RejectedExecutionException e) {
+                logger.warn("Executor rejected steps, executing them in the request thread.", e);
+                task.run();
+            }
+        } else if (request.isAsyncStarted()) {
+            //the application keeps writing the response, so it's finished once its async processing ends
+            request.getAsyncContext().addListener(new FinishingListener(responseWrapper));
+        } else {
+            responseWrapper.finish();
+        }
+    }
+
+    /**
+     * Finishes the response when async processing started by the application ends, however it ends.
+     */
+    private static final class FinishingListener implements AsyncListener {
+        private final DecodingHttpServletResponse response;
+        private final AtomicBoolean finished = new AtomicBoolean();
+
+        private FinishingListener(final DecodingHttpServletResponse response) {
+            this.response = response;
+        }
+
+        private void finish() throws IOException {
+            if (finished.compareAndSet(false, true)) {
+                response.finish();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) throws IOException {
+            finish();
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) throws IOException {
+            finish();
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) throws IOException {
+            finish();
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            //nothing
+        }
+    }
+
+    /**
+     * Starts the steps held back by the end of the body. Once they complete, in whatever thread completes them,
+     * the rest of the page is written and the async processing is completed.
+     */
+    private void executeDeferred(final RequestState state, final DeferredCompletion completion) {
+        final Writer writer = new BufferedWriter(new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) throws IOException {
+                state.deferredWriter.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                state.deferredWriter.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                //nothing
+            }
+        });
+        CompletionStage<PipelineResult> execution;
+        try {
+            execution = state.deferred.executeAsync(StepContext.create(writer, state.request));
+        } catch (RuntimeException e) {
+            final CompletableFuture<PipelineResult> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            execution = failure;
+        }
+        execution.whenComplete((result, error) -> {
+            if (error != null) {
+                logger.error("Error executing steps.", error);
+            }
+            completion.complete(writer);
+        });
+    }
+
+    /**
+     * Ends a request whose steps are executed asynchronously, either when they complete or when the container
+     * times out or fails the request, whichever happens first.
+     */
+    private final class DeferredCompletion implements AsyncListener {
+        private final RequestState state;
+        private final AsyncContext asyncContext;
+        private final AtomicBoolean ended = new AtomicBoolean();
+
+        private DeferredCompletion(final RequestState state, final AsyncContext asyncContext) {
+            this.state = state;
+            this.asyncContext = asyncContext;
+        }
+
+        /**
+         * Writes the end of the page after the steps, then completes the async processing.
+         * Does nothing when the request has already ended.
+         */
+        private void complete(final Writer writer) {
+            if (!ended.compareAndSet(false, true)) {
+                return;
+            }
+            try {
+                try {
+                    writer.flush();
+                } finally {
+                    finishResponse();
+                }
+            } catch (IOException e) {
+                logger.error("Error writing the end of the page.", e);
+            } finally {
+                asyncContext.complete();
+            }
+        }
+
+        /**
+         * Writes the end of the page without the steps still running, whose output is discarded.
+         */
+        private void finishResponse() throws IOException {
+            try {
+                state.response.release();
+            } finally {
+                state.response.finish();
+            }
+        }
+
+        @Override
+        public void onTimeout(final AsyncEvent event) throws IOException {
+            if (ended.compareAndSet(false, true)) {
+                logger.warn("Steps timed out, writing the end of the page without them.");
+                try {
+                    finishResponse();
+                } finally {
+                    asyncContext.complete();
+                }
+            }
+        }
+
+        @Override
+        public void onError(final AsyncEvent event) throws IOException {
+            //the container ends the request, so it's not completed here
+            if (ended.compareAndSet(false, true)) {
+                logger.error("Error in async processing of steps.", event.getThrowable());
+                finishResponse();
+            }
+        }
+
+        @Override
+        public void onComplete(final AsyncEvent event) {
+            ended.set(true);
+        }
+
+        @Override
+        public void onStartAsync(final AsyncEvent event) {
+            //nothing
+        }
+    }
+
+    /**
+     * Route of the request according to its path within the application, or the default one.
+     */
+    private Route route(final HttpServletRequest request) {
+        if (routes.isEmpty()) {
+            return defaultRoute;
+        }
+        final String pathInfo = request.getPathInfo();
+        final String path = pathInfo == null ? request.getServletPath() : request.getServletPath() + pathInfo;
+        return routes.route(path).orElse(defaultRoute);
     }
 
 }
@@ -1,23 +1,266 @@
 package org.luizricardo.warppipe;
 
 
+import org.luizricardo.warppipe.api.StepManager;
+
 import java.nio.charset.Charset;
+import java.util.Optional;
 
+/**
+ * Settings of {@link WarpFilter}.
+ *
+ * <p>
+ *     Besides the settings used for every request, it may have routes, i.e., URL patterns with their own settings,
+ *     which are matched against the path of each request (see {@link PathPatternRouter}). A route may select which
+ *     tags are matched, its own steps, pipeline and buffer limit, or bypass the filter completely so pages without
+ *     placeholders don't pay for decoding. Routes are derived from these settings with {@link #route()}.
+ * </p>
+ */
 public class WarpFilterConfiguration {
 
+    /**
+     * Pipeline which executes the steps of a page.
+     */
+    public enum PipelineType {
+        /**
+         * Steps are executed one by one, by priority.
+         */
+        QUEUED,
+        /**
+         * Steps are executed concurrently by the executor of the filter, at most {@link #pipelineThreads()}
+         * at the same time for each page.
+         */
+        CONCURRENT,
+        /**
+         * Steps are started by the executor of the filter as soon as their placeholders are found, while the page
+         * is still rendered. At the end of the body their output is written by priority. Without the executor,
+         * steps are queued.
+         */
+        EAGER,
+        /**
+         * Each step is executed on its own virtual thread, on Java 21 or later, without a limit of threads, so
+         * {@link #pipelineThreads()} is ignored. On older versions steps are executed as in {@link #CONCURRENT}.
+         */
+        VIRTUAL_THREADS
+    }
+
+    public static final int DEFAULT_BUFFER_LIMIT = 64;
+    public static final int DEFAULT_PIPELINE_THREADS = 4;
+    public static final int DEFAULT_IN_PLACE_BUFFER_LIMIT = 64 * 1024;
+    public static final int DEFAULT_ASYNC_TIMEOUT = 0;
+
     private final Charset charset;
     private final boolean flushAfterHead;
     private final boolean autoExecuteBeforeClosingBody;
     private final boolean autoDetectPlaceholders;
+    private final int bufferLimit;
+    private final PipelineType pipelineType;
+    private final int pipelineThreads;
+    private final boolean bypass;
+    private final boolean compression;
+    private final boolean asyncExecution;
+    private final int asyncTimeout;
+    private final boolean inPlace;
+    private final int inPlaceBufferLimit;
+    private final Optional<StepManager> stepManager;
+    private final PathPatternRouter<WarpFilterConfiguration> routes;
 
     public WarpFilterConfiguration(final Charset charset,
                                    final boolean flushAfterHead,
                                    final boolean autoExecuteBeforeClosingBody,
                                    final boolean autoDetectPlaceholders) {
-        this.charset = charset;
-        this.flushAfterHead = flushAfterHead;
-        this.autoExecuteBeforeClosingBody = autoExecuteBeforeClosingBody;
-        this.autoDetectPlaceholders = autoDetectPlaceholders;
+        this(builder(charset)
+                .flushAfterHead(flushAfterHead)
+                .autoExecuteBeforeClosingBody(autoExecuteBeforeClosingBody)
+                .autoDetectPlaceholders(autoDetectPlaceholders));
+    }
+
+    private WarpFilterConfiguration(final Builder builder) {
+        this.charset = builder.charset;
+        this.flushAfterHead = builder.flushAfterHead;
+        this.autoExecuteBeforeClosingBody = builder.autoExecuteBeforeClosingBody;
+        this.autoDetectPlaceholders = builder.autoDetectPlaceholders;
+        this.bufferLimit = builder.bufferLimit;
+        this.pipelineType = builder.pipelineType;
+        this.pipelineThreads = builder.pipelineThreads;
+        this.bypass = builder.bypass;
+        this.compression = builder.compression;
+        this.asyncExecution = builder.asyncExecution;
+        this.asyncTimeout = builder.asyncTimeout;
+        this.inPlace = builder.inPlace;
+        this.inPlaceBufferLimit = builder.inPlaceBufferLimit;
+        this.stepManager = builder.stepManager;
+        this.routes = builder.routes.build();
+    }
+
+    public static Builder builder(final Charset charset) {
+        return new Builder(charset);
+    }
+
+    /**
+     * Builder of a route, starting with the same settings as this configuration, except for its routes.
+     */
+    public Builder route() {
+        return builder(charset)
+                .flushAfterHead(flushAfterHead)
+                .autoExecuteBeforeClosingBody(autoExecuteBeforeClosingBody)
+                .autoDetectPlaceholders(autoDetectPlaceholders)
+                .bufferLimit(bufferLimit)
+                .pipeline(pipelineType, pipelineThreads)
+                .bypass(bypass)
+                .compression(compression)
+                .asyncExecution(asyncExecution)
+                .asyncTimeout(asyncTimeout)
+                .inPlace(inPlace)
+                .inPlaceBufferLimit(inPlaceBufferLimit)
+                .stepManager(stepManager.orElse(null));
+    }
+
+    public static class Builder {
+        private final Charset charset;
+        private boolean flushAfterHead = true;
+        private boolean autoExecuteBeforeClosingBody = true;
+        private boolean autoDetectPlaceholders = true;
+        private int bufferLimit = DEFAULT_BUFFER_LIMIT;
+        private PipelineType pipelineType = PipelineType.QUEUED;
+        private int pipelineThreads = DEFAULT_PIPELINE_THREADS;
+        private boolean bypass;
+        private boolean compression;
+        private boolean asyncExecution;
+        private int asyncTimeout = DEFAULT_ASYNC_TIMEOUT;
+        private boolean inPlace;
+        private int inPlaceBufferLimit = DEFAULT_IN_PLACE_BUFFER_LIMIT;
+        private Optional<StepManager> stepManager = Optional.empty();
+        private final PathPatternRouter.Builder<WarpFilterConfiguration> routes = PathPatternRouter.builder();
+
+        private Builder(final Charset charset) {
+            this.charset = charset;
+        }
+
+        public Builder flushAfterHead(final boolean flushAfterHead) {
+            this.flushAfterHead = flushAfterHead;
+            return this;
+        }
+
+        public Builder autoExecuteBeforeClosingBody(final boolean autoExecuteBeforeClosingBody) {
+            this.autoExecuteBeforeClosingBody = autoExecuteBeforeClosingBody;
+            return this;
+        }
+
+        public Builder autoDetectPlaceholders(final boolean autoDetectPlaceholders) {
+            this.autoDetectPlaceholders = autoDetectPlaceholders;
+            return this;
+        }
+
+        /**
+         * Maximum number of characters buffered by decoders while a tag is being matched.
+         */
+        public Builder bufferLimit(final int bufferLimit) {
+            if (bufferLimit < 1) {
+                throw new IllegalArgumentException("Buffer limit must be positive: " + bufferLimit);
+            }
+            this.bufferLimit = bufferLimit;
+            return this;
+        }
+
+        /**
+         * @param pipelineThreads Maximum number of steps of a page executed at the same time by concurrent pipelines.
+         *                        Ignored by {@link PipelineType#VIRTUAL_THREADS} when virtual threads are available.
+         */
+        public Builder pipeline(final PipelineType pipelineType, final int pipelineThreads) {
+            if (pipelineThreads < 1) {
+                throw new IllegalArgumentException("Number of pipeline threads must be positive: " + pipelineThreads);
+            }
+            this.pipelineType = pipelineType;
+            this.pipelineThreads = pipelineThreads;
+            return this;
+        }
+
+        /**
+         * When true, responses are not decoded at all.
+         */
+        public Builder bypass(final boolean bypass) {
+            this.bypass = bypass;
+            return this;
+        }
+
+        /**
+         * When true, decoded responses are compressed with gzip or deflate, if accepted by the client,
+         * without delaying content flushed early.
+         */
+        public Builder compression(final boolean compression) {
+            this.compression = compression;
+            return this;
+        }
+
+        /**
+         * When true, steps executed at the end of the body are executed by the executor of the filter after the
+         * page is rendered, using {@link javax.servlet.AsyncContext}, so the request thread is released. The end of the
+         * page is held back until they finish. Requests which don't support async processing execute them as usual.
+         */
+        public Builder asyncExecution(final boolean asyncExecution) {
+            this.asyncExecution = asyncExecution;
+            return this;
+        }
+
+        /**
+         * Milliseconds steps executed asynchronously have to complete. Once expired, the end of the page is written
+         * without waiting for them. Zero means no timeout, instead of the default timeout of the container.
+         */
+        public Builder asyncTimeout(final int asyncTimeout) {
+            if (asyncTimeout < 0) {
+                throw new IllegalArgumentException("Async timeout cannot be negative: " + asyncTimeout);
+            }
+            this.asyncTimeout = asyncTimeout;
+            return this;
+        }
+
+        /**
+         * When true, each step is started as soon as its placeholder is found, by the executor of the filter, and
+         * its output is written right after the placeholder instead of before the end of the body. The page is sent
+         * up to the placeholder while the rest of it is held back until the step is complete, so steps of
+         * placeholders further down the page are executed at the same time.
+         */
+        public Builder inPlace(final boolean inPlace) {
+            this.inPlace = inPlace;
+            return this;
+        }
+
+        /**
+         * Maximum number of bytes or characters of the page held back while waiting for a step executed in place,
+         * before the request thread stops rendering the page to wait for it.
+         */
+        public Builder inPlaceBufferLimit(final int inPlaceBufferLimit) {
+            if (inPlaceBufferLimit < 0) {
+                throw new IllegalArgumentException("In place buffer limit cannot be negative: " + inPlaceBufferLimit);
+            }
+            this.inPlaceBufferLimit = inPlaceBufferLimit;
+            return this;
+        }
+
+        /**
+         * Steps available to pages, instead of the ones given to the filter. May be null.
+         */
+        public Builder stepManager(final StepManager stepManager) {
+            this.stepManager = Optional.ofNullable(stepManager);
+            return this;
+        }
+
+        /**
+         * Adds a route for the given URL patterns. Routes added first win when more than one pattern matches.
+         * Routes of the route configuration itself are ignored.
+         * @throws IllegalArgumentException If a pattern is not valid.
+         */
+        public Builder route(final WarpFilterConfiguration route, final String... patterns) {
+            for (final String pattern : patterns) {
+                routes.add(pattern, route);
+            }
+            return this;
+        }
+
+        public WarpFilterConfiguration build() {
+            return new WarpFilterConfiguration(this);
+        }
     }
 
     public Charset charset() {
@@ -35,4 +278,51 @@ public class WarpFilterConfiguration {
     public boolean autoDetectPlaceholders() {
         return autoDetectPlaceholders;
     }
+
+    public int bufferLimit() {
+        return bufferLimit;
+    }
+
+    public PipelineType pipelineType() {
+        return pipelineType;
+    }
+
+    public int pipelineThreads() {
+        return pipelineThreads;
+    }
+
+    public boolean bypass() {
+        return bypass;
+    }
+
+    public boolean compression() {
+        return compression;
+    }
+
+    public boolean asyncExecution() {
+        return asyncExecution;
+    }
+
+    public int asyncTimeout() {
+        return asyncTimeout;
+    }
+
+    public boolean inPlace() {
+        return inPlace;
+    }
+
+    public int inPlaceBufferLimit() {
+        return inPlaceBufferLimit;
+    }
+
+    public Optional<StepManager> stepManager() {
+        return stepManager;
+    }
+
+    /**
+     * Routes by URL pattern. Paths not matched by any route use this configuration.
+     */
+    public PathPatternRouter<WarpFilterConfiguration> routes() {
+        return routes;
+    }
 }
@@ -0,0 +1,41 @@
+package org.luizricardo.warppipe.api;
+
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Describes a step which doesn't block while it waits, e.g., for asynchronous HTTP or database clients.
+ *
+ * <p>
+ *     Instead of writing to {@link StepContext#writer()}, it completes with the content of its fragment, which is
+ *     written by the {@link StepManager} once complete. Pipelines compose these steps through
+ *     {@link StepManager#executeAsync(StepData, StepContext)}, so no thread waits for them. Pipelines which only
+ *     execute blocking steps call {@link #execute(StepData, StepContext)}, which waits for the fragment.
+ * </p>
+ */
+public interface AsyncStep extends Step {
+
+    /**
+     * Starts handling the item, without blocking.
+     * @return Stage completed with the content of the fragment.
+     */
+    CompletionStage<? extends CharSequence> executeAsync(StepData data, StepContext context);
+
+    /**
+     * Waits for {@link #executeAsync(StepData, StepContext)} and writes the fragment.
+     */
+    @Override
+    default void execute(final StepData data, final StepContext context) throws IOException {
+        try {
+            context.writer().append(executeAsync(data, context).toCompletableFuture().get());
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted waiting for step");
+        } catch (ExecutionException e) {
+            throw new IOException("Asynchronous step failed", e.getCause());
+        }
+    }
+
+}
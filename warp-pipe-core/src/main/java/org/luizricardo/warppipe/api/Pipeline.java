@@ -1,5 +1,8 @@
 package org.luizricardo.warppipe.api;
 
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
 /**
  * Defines a chain of items to be processed in order fo fulfill the request.
  */
@@ -11,6 +14,14 @@ public interface Pipeline {
      */
     PipelineResult execute(StepContext context);
 
+    /**
+     * Starts processing all items, completing when all are finished, so no thread has to wait for
+     * {@link AsyncStep}s. The default implementation is {@link #execute(StepContext)}, in the current thread.
+     */
+    default CompletionStage<PipelineResult> executeAsync(final StepContext context) {
+        return CompletableFuture.completedFuture(execute(context));
+    }
+
     /**
      * Builder template for implementations.
      */
@@ -34,7 +34,14 @@ public interface StepData {
      * Provides default implementation.
      */
     static StepData create(final String id, final Optional<Integer> priority, final Map<String, String> attributes) {
-        final Map<String, String> immutableAttributes = Collections.unmodifiableMap(new HashMap<>(attributes));
+        return wrap(id, priority, Collections.unmodifiableMap(new HashMap<>(attributes)));
+    }
+
+    /**
+     * Provides default implementation without copying attributes, which must be immutable,
+     * like the ones of a {@link org.luizricardo.warppipe.matcher.HtmlTag}.
+     */
+    static StepData wrap(final String id, final Optional<Integer> priority, final Map<String, String> immutableAttributes) {
         return new StepData() {
             @Override
             public String id() {
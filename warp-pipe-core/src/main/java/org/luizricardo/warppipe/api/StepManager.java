@@ -4,6 +4,8 @@ package org.luizricardo.warppipe.api;
 import org.luizricardo.warppipe.pipeline.PipelineException;
 
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
 
 /**
  * Handles which step should be executed.
@@ -15,6 +17,22 @@ public interface StepManager {
      */
     void execute(StepData stepData, StepContext stepContext) throws PipelineException;
 
+    /**
+     * Starts executing a step, completing once its output was written to the writer of the {@link StepContext}.
+     * Failures complete the stage exceptionally, usually with a {@link PipelineException}.
+     * The default implementation executes the step in the current thread, which adapts blocking steps.
+     */
+    default CompletionStage<Void> executeAsync(final StepData stepData, final StepContext stepContext) {
+        final CompletableFuture<Void> future = new CompletableFuture<>();
+        try {
+            execute(stepData, stepContext);
+            future.complete(null);
+        } catch (PipelineException | RuntimeException e) {
+            future.completeExceptionally(e);
+        }
+        return future;
+    }
+
     /**
      * Return an optional default priority for one step, according to the current context, so it can be properly prioritized.
      */
@@ -0,0 +1,95 @@
+package org.luizricardo.warppipe.decoder;
+
+import org.luizricardo.warppipe.matcher.StreamMatcher;
+
+import java.util.Arrays;
+import java.util.Optional;
+
+/**
+ * Set of characters which may start a match for at least one of the bound {@link StreamMatcher}s.
+ * It's used by {@link StreamDecoder} to skip runs of text which cannot be matched, writing them straight to the output.
+ */
+final class CandidateCharacters {
+
+    /**
+     * Lookup table for ASCII characters, which are the common case.
+     */
+    private final boolean[] ascii;
+
+    /**
+     * Sorted non-ASCII characters.
+     */
+    private final char[] others;
+
+    private CandidateCharacters(final boolean[] ascii, final char[] others) {
+        this.ascii = ascii;
+        this.others = others;
+    }
+
+    /**
+     * Merges the first characters of all matchers. If one of them can start with any character, there are no
+     * characters to skip and the result is empty.
+     */
+    static Optional<CandidateCharacters> of(final StreamMatcher[] matchers) {
+        final boolean[] ascii = new boolean[128];
+        final StringBuilder others = new StringBuilder();
+        for (final StreamMatcher matcher : matchers) {
+            final Optional<char[]> firstCharacters = matcher.firstCharacters();
+            if (!firstCharacters.isPresent()) {
+                return Optional.empty();
+            }
+            for (final char c : firstCharacters.get()) {
+                if (c < 128) {
+                    ascii[c] = true;
+                } else {
+                    others.append(c);
+                }
+            }
+        }
+        final char[] sortedOthers = others.toString().toCharArray();
+        Arrays.sort(sortedOthers);
+        return Optional.of(new CandidateCharacters(ascii, sortedOthers));
+    }
+
+    /**
+     * Whether the char may start a match.
+     */
+    boolean contains(final char c) {
+        return c < 128 ? ascii[c] : others.length > 0 && Arrays.binarySearch(others, c) >= 0;
+    }
+
+    /**
+     * Whether all candidates are ASCII characters, so they can be found directly in bytes of ASCII-compatible encodings.
+     */
+    boolean asciiOnly() {
+        return others.length == 0;
+    }
+
+    /**
+     * Finds the position of the next byte which is an ASCII candidate character in the given range.
+     * @return Position of the candidate or {@code end} if there's none.
+     */
+    int next(final byte[] bytes, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            final byte b = bytes[i];
+            if (b >= 0 && ascii[b]) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+    /**
+     * Finds the position of the next candidate character in the given range.
+     * @return Position of the candidate or {@code end} if there's none.
+     */
+    int next(final char[] chars, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (contains(chars[i])) {
+                return i;
+            }
+        }
+        return end;
+    }
+
+}
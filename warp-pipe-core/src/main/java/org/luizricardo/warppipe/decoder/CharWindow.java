@@ -0,0 +1,138 @@
+package org.luizricardo.warppipe.decoder;
+
+import org.luizricardo.warppipe.listener.MatchingWriter;
+
+import java.io.IOException;
+
+/**
+ * Fixed-capacity circular buffer keeping the last characters of the stream which may still be part of a match.
+ *
+ * <p>
+ *     Characters are appended at the end and discarded from the beginning just by moving the start index,
+ *     so nothing is shifted. Since a match always ends at the last character of the stream, the content of each
+ *     {@link MatchingBuffer} is a suffix of this window and is identified only by its size.
+ * </p>
+ * <p>
+ *     The capacity grows only if more characters than expected are kept, which shouldn't happen while
+ *     {@link StreamDecoder} trims the window to its buffer limit. Instances are not thread-safe.
+ * </p>
+ */
+final class CharWindow implements CharSequence {
+
+    private char[] chars;
+
+    private final int initialCapacity;
+
+    /**
+     * {@code chars.length - 1}, used to wrap indexes around since the capacity is a power of two.
+     */
+    private int mask;
+
+    /**
+     * Index of the first character in {@link #chars}.
+     */
+    private int start;
+
+    private int length;
+
+    CharWindow(final int minCapacity) {
+        this.initialCapacity = capacityFor(minCapacity);
+        this.chars = new char[initialCapacity];
+        this.mask = chars.length - 1;
+    }
+
+    private static int capacityFor(final int minCapacity) {
+        return Math.max(16, Integer.highestOneBit(Math.max(1, minCapacity - 1)) << 1);
+    }
+
+    void append(final char c) {
+        if (length == chars.length) {
+            grow();
+        }
+        chars[(start + length++) & mask] = c;
+    }
+
+    private void grow() {
+        final char[] larger = new char[chars.length * 2];
+        copy(0, length, larger, 0);
+        chars = larger;
+        mask = chars.length - 1;
+        start = 0;
+    }
+
+    /**
+     * Discards characters from the beginning.
+     */
+    void discard(final int count) {
+        start = (start + count) & mask;
+        length -= count;
+    }
+
+    void clear() {
+        start = 0;
+        length = 0;
+    }
+
+    /**
+     * Clears the window and goes back to the initial capacity if it has grown.
+     */
+    void trim() {
+        clear();
+        if (chars.length > initialCapacity) {
+            chars = new char[initialCapacity];
+            mask = chars.length - 1;
+        }
+    }
+
+    /**
+     * Writes characters from the beginning of the window to the output, in at most two ranges.
+     */
+    void writeTo(final MatchingWriter matchingWriter, final int count) throws IOException {
+        final int first = Math.min(count, chars.length - start);
+        matchingWriter.write(chars, start, first);
+        if (first < count) {
+            matchingWriter.write(chars, 0, count - first);
+        }
+    }
+
+    /**
+     * Appends the last characters of the window to the builder.
+     */
+    void appendSuffix(final StringBuilder sb, final int count) {
+        final int begin = (start + length - count) & mask;
+        final int first = Math.min(count, chars.length - begin);
+        sb.append(chars, begin, first);
+        if (first < count) {
+            sb.append(chars, 0, count - first);
+        }
+    }
+
+    private void copy(final int from, final int to, final char[] dst, final int dstBegin) {
+        for (int i = from; i < to; i++) {
+            dst[dstBegin + i - from] = charAt(i);
+        }
+    }
+
+    @Override
+    public int length() {
+        return length;
+    }
+
+    @Override
+    public char charAt(final int index) {
+        return chars[(start + index) & mask];
+    }
+
+    @Override
+    public CharSequence subSequence(final int from, final int to) {
+        final char[] result = new char[to - from];
+        copy(from, to, result, 0);
+        return new String(result);
+    }
+
+    @Override
+    public String toString() {
+        return subSequence(0, length).toString();
+    }
+
+}
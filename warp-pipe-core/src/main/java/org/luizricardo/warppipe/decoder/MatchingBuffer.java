@@ -3,27 +3,30 @@ package org.luizricardo.warppipe.decoder;
 import org.luizricardo.warppipe.listener.MatchingContext;
 import org.luizricardo.warppipe.listener.MatchingWriter;
 import org.luizricardo.warppipe.listener.StreamListener;
+import org.luizricardo.warppipe.matcher.IncrementalStreamMatcher;
 import org.luizricardo.warppipe.matcher.MatchingStatus;
 import org.luizricardo.warppipe.matcher.StreamMatcher;
 
 import java.io.IOException;
 
 /**
- * Keeps individual buffer for a given pair of matcher and listener.
- * Characters will be buffered while it keeps matching new input.
+ * Keeps the matching state of a given pair of matcher and listener.
+ * Characters aren't copied here: since a match always ends at the last character of the stream, the buffered
+ * content is the suffix of the {@link CharWindow} of the decoder with the {@link #size()} of this buffer.
  */
 public class MatchingBuffer {
 
-    private final StreamMatcher streamMatcher;
+    private final IncrementalStreamMatcher streamMatcher;
     private final StreamListener streamListener;
-    private final StringBuilder buffer;
     private final MatchingWriter matchingWriter;
+    private MatchingStatus status;
+    private int size;
 
     private MatchingBuffer(final StreamMatcher streamMatcher, final StreamListener streamListener, MatchingWriter matchingWriter) {
-        this.streamMatcher = streamMatcher;
+        this.streamMatcher = streamMatcher.incremental();
         this.streamListener = streamListener;
         this.matchingWriter = matchingWriter;
-        this.buffer = new StringBuilder();
+        this.status = MatchingStatus.NONE;
     }
 
     public static MatchingBuffer create(final StreamMatcher streamMatcher, final StreamListener streamListener, MatchingWriter matchingWriter) {
@@ -31,45 +34,54 @@ public class MatchingBuffer {
     }
 
     /**
-     * Execute the matcher with the current buffer content.
+     * Status of the matcher after the last char appended.
      */
     public MatchingStatus matches() {
-        return streamMatcher.matches(buffer);
+        return status;
     }
 
     /**
-     * Get current string value of this buffer.
+     * Execute the matcher with the next char.
+     * Chars which are not part of the match anymore are discarded from the beginning of the buffer.
      */
-    public String content() {
-        return buffer.toString();
+    public MatchingStatus append(final char c) {
+        status = streamMatcher.accept(c);
+        size = status == MatchingStatus.NONE ? size + 1 : Math.min(size + 1, streamMatcher.length());
+        return status;
     }
 
     /**
-     * Append a char to the buffer.
+     * Execute the matcher with a range of chars while it matches.
      */
-    public void append(final char c) {
-        buffer.append(c);
+    public MatchingStatus append(final CharSequence chars, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (append(chars.charAt(i)) == MatchingStatus.NONE) break;
+        }
+        return status;
     }
 
     /**
-     * Process listener using matched buffer.
+     * Process listener using matched content, which was copied to the given builder and may be changed by the listener.
+     * @param attachment Object attached to the decoder, if any.
      */
-    public void process() throws IOException {
-        streamListener.process(MatchingContext.create(buffer, matchingWriter));
+    public void process(final StringBuilder content, final Object attachment) throws IOException {
+        streamListener.process(MatchingContext.create(content, matchingWriter, streamMatcher::result, attachment));
     }
 
     /**
      * Size of this individual buffer.
      */
     public int size() {
-        return buffer.length();
+        return size;
     }
 
     /**
      * Reset this individual buffer.
      */
     public void reset() {
-        buffer.setLength(0);
+        size = 0;
+        streamMatcher.reset();
+        status = MatchingStatus.NONE;
     }
 
 }
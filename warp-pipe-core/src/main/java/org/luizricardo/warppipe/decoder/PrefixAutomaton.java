@@ -0,0 +1,207 @@
+package org.luizricardo.warppipe.decoder;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton which merges the literal prefixes of all matchers bound to a {@link StreamDecoder},
+ * so each character advances one single state no matter how many matchers there are.
+ *
+ * <p>
+ *     Characters are compared ignoring case. The automaton only finds candidates, it's up to the matchers
+ *     to confirm them considering their own rules, like case-sensitivity.
+ * </p>
+ * <p>
+ *     Instances are immutable. State {@code 0} is the initial state, where no prefix is being matched.
+ * </p>
+ */
+final class PrefixAutomaton {
+
+    /**
+     * Initial state.
+     */
+    static final int ROOT = 0;
+
+    private static final int ASCII = 128;
+    private static final int[] NO_MATCHES = new int[0];
+    private static final char[] NO_CHARS = new char[0];
+    private static final int[] NO_STATES = new int[0];
+
+    /**
+     * Complete transition table for ASCII characters, indexed by {@code state * 128 + char}.
+     */
+    private final int[] asciiTransitions;
+
+    /**
+     * Sorted non-ASCII characters which lead to a child of each state.
+     */
+    private final char[][] otherChars;
+
+    /**
+     * Children of each state for the characters in {@link #otherChars}.
+     */
+    private final int[][] otherTargets;
+
+    /**
+     * Failure link of each state, i.e., the state of the longest proper suffix which is also a prefix.
+     */
+    private final int[] failure;
+
+    /**
+     * Number of characters of each state.
+     */
+    private final int[] depth;
+
+    /**
+     * Indexes of prefixes ending at each state, including those found through failure links.
+     */
+    private final int[][] matches;
+
+    private PrefixAutomaton(final int[] asciiTransitions, final char[][] otherChars, final int[][] otherTargets,
+                            final int[] failure, final int[] depth, final int[][] matches) {
+        this.asciiTransitions = asciiTransitions;
+        this.otherChars = otherChars;
+        this.otherTargets = otherTargets;
+        this.failure = failure;
+        this.depth = depth;
+        this.matches = matches;
+    }
+
+    /**
+     * Compiles the automaton.
+     * @param prefixes Literal prefixes. The position of each one identifies it in {@link #matches(int)}.
+     *                 Null or empty prefixes are ignored.
+     */
+    static PrefixAutomaton compile(final String[] prefixes) {
+        //build trie
+        final List<Map<Character, Integer>> children = new ArrayList<>();
+        final List<List<Integer>> found = new ArrayList<>();
+        final List<Integer> depths = new ArrayList<>();
+        children.add(new TreeMap<>());
+        found.add(new ArrayList<>());
+        depths.add(0);
+        for (int i = 0; i < prefixes.length; i++) {
+            final String prefix = prefixes[i];
+            if (prefix == null || prefix.isEmpty()) continue;
+            int state = ROOT;
+            for (int j = 0; j < prefix.length(); j++) {
+                final char c = fold(prefix.charAt(j));
+                Integer child = children.get(state).get(c);
+                if (child == null) {
+                    child = children.size();
+                    children.add(new TreeMap<>());
+                    found.add(new ArrayList<>());
+                    depths.add(j + 1);
+                    children.get(state).put(c, child);
+                }
+                state = child;
+            }
+            found.get(state).add(i);
+        }
+
+        //compute sparse transitions, failure links and ascii table in breadth-first order
+        final int size = children.size();
+        final int[] asciiTransitions = new int[size * ASCII];
+        final char[][] otherChars = new char[size][];
+        final int[][] otherTargets = new int[size][];
+        final int[] failure = new int[size];
+        final int[] depth = new int[size];
+        final int[][] matches = new int[size][];
+        for (int state = 0; state < size; state++) {
+            depth[state] = depths.get(state);
+            int count = 0;
+            for (final Character c : children.get(state).keySet()) {
+                if (c >= ASCII) count++;
+            }
+            otherChars[state] = count == 0 ? NO_CHARS : new char[count];
+            otherTargets[state] = count == 0 ? NO_STATES : new int[count];
+            int j = 0;
+            for (final Map.Entry<Character, Integer> entry : children.get(state).entrySet()) {
+                if (entry.getKey() >= ASCII) {
+                    otherChars[state][j] = entry.getKey();
+                    otherTargets[state][j++] = entry.getValue();
+                }
+            }
+        }
+        final PrefixAutomaton automaton = new PrefixAutomaton(asciiTransitions, otherChars, otherTargets, failure, depth, matches);
+        final Deque<Integer> queue = new ArrayDeque<>();
+        queue.add(ROOT);
+        while (!queue.isEmpty()) {
+            final int state = queue.poll();
+            final Map<Character, Integer> stateChildren = children.get(state);
+            //ascii row falls back to the row of the failure state, which was already computed
+            final int row = state * ASCII;
+            final int failureRow = failure[state] * ASCII;
+            for (int c = 0; c < ASCII; c++) {
+                final Integer child = stateChildren.get((char) c);
+                asciiTransitions[row + c] = child != null ? child : (state == ROOT ? ROOT : asciiTransitions[failureRow + c]);
+            }
+            for (int c = 0; c < ASCII; c++) {
+                asciiTransitions[row + c] = asciiTransitions[row + fold((char) c)];
+            }
+            //matches include the ones of the failure state
+            final List<Integer> stateMatches = found.get(state);
+            if (state != ROOT) {
+                for (final int index : matches[failure[state]]) {
+                    stateMatches.add(index);
+                }
+            }
+            matches[state] = stateMatches.isEmpty() ? NO_MATCHES : stateMatches.stream().mapToInt(Integer::intValue).sorted().toArray();
+            //failure links of children
+            for (final Map.Entry<Character, Integer> entry : stateChildren.entrySet()) {
+                final int child = entry.getValue();
+                failure[child] = state == ROOT ? ROOT : automaton.next(failure[state], entry.getKey());
+                queue.add(child);
+            }
+        }
+        return automaton;
+    }
+
+    /**
+     * Normalizes the case of a character.
+     */
+    static char fold(final char c) {
+        return Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Advances from the given state with the next character of the stream.
+     */
+    int next(final int state, final char c) {
+        if (c < ASCII) {
+            return asciiTransitions[state * ASCII + c];
+        }
+        final char folded = fold(c);
+        if (folded < ASCII) {
+            return asciiTransitions[state * ASCII + folded];
+        }
+        int current = state;
+        while (true) {
+            final char[] chars = otherChars[current];
+            for (int i = 0; i < chars.length; i++) {
+                if (chars[i] == folded) return otherTargets[current][i];
+            }
+            if (current == ROOT) return ROOT;
+            current = failure[current];
+        }
+    }
+
+    /**
+     * Number of trailing characters of the stream which are part of the given state.
+     */
+    int depth(final int state) {
+        return depth[state];
+    }
+
+    /**
+     * Indexes of the prefixes found when reaching the given state, in ascending order.
+     */
+    int[] matches(final int state) {
+        return matches[state];
+    }
+
+}
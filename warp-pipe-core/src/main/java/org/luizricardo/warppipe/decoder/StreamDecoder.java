@@ -11,6 +11,8 @@ import java.io.OutputStream;
 import java.io.Writer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
+import java.util.Arrays;
+import java.util.Optional;
 
 /**
  * A decorated OutputStream capable of decoding characters from the stream of bytes written to it,
@@ -23,13 +25,23 @@ import java.nio.charset.CharsetDecoder;
  *     match, it'll be written to the delegated output. When a buffer completely matches a given matcher, the associated
  *     {@link StreamListener} will be executed, where the buffer can be transformed and any operation can be executed.
  * </p>
+ * <p>
+ *     Literal prefixes of the matchers (see {@link StreamMatcher#literalPrefix()}) are merged in a single
+ *     {@link PrefixAutomaton}, so those matchers only get characters after their prefix is found in the stream.
+ *     Matchers without a prefix are checked against every character.
+ * </p>
  */
 public class StreamDecoder {
 
     /**
      * Output which will delegate data to the actual output.
      */
-    private MatchingWriter matchingWriter;
+    private final MatchingWriter matchingWriter;
+
+    /**
+     * Precompiled matchers and listeners.
+     */
+    private final StreamDecoderTemplate template;
 
     /**
      * Buffer which store information about each matcher for the current stream.
@@ -37,9 +49,25 @@ public class StreamDecoder {
     private final MatchingBuffer[] buffers;
 
     /**
-     * Size of buffers array.
+     * Indexes of buffers currently being checked, in the same order matchers were bound.
+     * Matchers without prefixes are always there.
+     */
+    private final int[] active;
+
+    /**
+     * Number of used positions in {@link #active}.
+     */
+    private int activeLength;
+
+    /**
+     * Automaton which finds the literal prefixes of all matchers.
+     */
+    private final PrefixAutomaton automaton;
+
+    /**
+     * Current state of the automaton.
      */
-    private final int buffersLength;
+    private int state;
 
     /**
      * Max size of each individual buffer. If a buffer matches partially and reach this limit, it'll be discarded.
@@ -51,8 +79,45 @@ public class StreamDecoder {
      * - None matchers are matching;
      * - When one matcher fully matches the buffer;
      * - When one or more matchers are matching partially but the individual buffers and smaller than the global.
+     * Individual buffers are suffixes of this window.
+     */
+    private final CharWindow window;
+
+    /**
+     * Reusable builder where the content of a fully matching buffer is copied to be handled by its listener.
+     */
+    private final StringBuilder matchedContent;
+
+    /**
+     * Characters which can start a match. Empty when some matcher can start with any character, in which case every
+     * character must be checked.
+     */
+    private final Optional<CandidateCharacters> candidates;
+
+    /**
+     * Bindings which won't be checked anymore in the current stream, see {@link StreamDecoderBuilder#bindOnce}.
+     */
+    private final boolean[] retired;
+
+    /**
+     * Number of true values in {@link #retired}.
+     */
+    private int retiredCount;
+
+    /**
+     * Whether all bindings were retired, so characters are written to the output without any checking.
+     */
+    private boolean passingThrough;
+
+    /**
+     * Object handed to listeners through {@link org.luizricardo.warppipe.listener.MatchingContext#attachment()}.
+     */
+    private Object attachment;
+
+    /**
+     * Builder capacity kept by {@link #reset()}, so a huge content handled by a listener doesn't stay in memory.
      */
-    private final StringBuilder globalStringBuilder;
+    private static final int MAX_RETAINED_CAPACITY = 1024;
 
     /**
      * Start building an instance of {@link StreamDecoderOutputStream} with required parameters.
@@ -71,98 +136,280 @@ public class StreamDecoder {
         return new StreamDecoderBuilder.WriterBuilder(writer);
     }
 
+    /**
+     * Start building a {@link StreamDecoderTemplate}, from which many decoders can be created.
+     */
+    public static StreamDecoderBuilder<StreamDecoderTemplate> template() {
+        return new StreamDecoderBuilder.TemplateBuilder();
+    }
+
     protected StreamDecoder(
             final MatchingWriter matchingWriter,
             final StreamMatcher[] matchers,
             final StreamListener[] listeners,
             final int bufferLimit) {
+        this(matchingWriter, new StreamDecoderTemplate(matchers, listeners, bufferLimit));
+    }
+
+    protected StreamDecoder(final MatchingWriter matchingWriter, final StreamDecoderTemplate template) {
         this.matchingWriter = matchingWriter;
-        this.bufferLimit = bufferLimit;
-        this.globalStringBuilder = new StringBuilder();
+        this.template = template;
+        this.bufferLimit = template.bufferLimit();
+        this.automaton = template.automaton();
+        this.candidates = template.candidates();
+        //prefixes and buffers are limited to bufferLimit, plus the char being written
+        this.window = new CharWindow(bufferLimit + 1);
+        this.matchedContent = new StringBuilder();
         //create buffers for each matcher
-        this.buffers = new MatchingBuffer[matchers.length];
-        this.buffersLength = buffers.length;
-        for (int i = 0; i < buffersLength; i++) {
-            buffers[i] = MatchingBuffer.create(matchers[i], listeners[i], matchingWriter);
+        this.buffers = new MatchingBuffer[template.size()];
+        this.active = new int[template.size()];
+        this.retired = new boolean[template.size()];
+        for (int i = 0; i < buffers.length; i++) {
+            buffers[i] = MatchingBuffer.create(template.matcher(i), template.listener(i), matchingWriter);
         }
+        deactivateAll();
+        this.passingThrough = buffers.length == 0;
     }
 
     /**
      * Handled a new char, adding it to the buffers and checking all matchers.
      */
     public void write(final char c) throws IOException {
+        if (passingThrough) {
+            window.append(c);
+            writeAllBuffer();
+            return;
+        }
         //append char to buffers
-        globalStringBuilder.append(c);
-        //and too al matcher's buffers
-        for (int i = 0; i < buffersLength; i++) {
-            buffers[i].append(c);
+        window.append(c);
+        //and too all active matcher's buffers, executing the matchers
+        for (int i = 0; i < activeLength; i++) {
+            buffers[active[i]].append(c);
+        }
+        //advance the automaton and start checking matchers whose prefix were just found
+        state = automaton.next(state, c);
+        for (final int index : automaton.matches(state)) {
+            if (!retired[index]) {
+                activate(index);
+            }
         }
-        //store if there's at least one buffer partially matching
-        boolean partiallyMatching = false;
         //store the first buffer fully matching
         MatchingBuffer fullyMatching = null;
-        //store the larger buffer currently matching; if the largest buffer is less than the global buffer,
-        // it means some characters can be written
-        int maxBufferSize = 0;
-        //test each buffer for matching
-        for (int i = 0; i < buffersLength; i++) {
-            final MatchingBuffer buffer = buffers[i];
-            //execute matcher
+        int fullyMatchingIndex = -1;
+        //store the larger buffer currently matching, including the prefix the automaton is matching;
+        // if the largest buffer is less than the global buffer, it means some characters can be written
+        int maxBufferSize = automaton.depth(state);
+        //test each active buffer for matching
+        for (int i = 0; i < activeLength; ) {
+            final MatchingBuffer buffer = buffers[active[i]];
+            //check matcher status
             final MatchingStatus status = buffer.matches();
             if (status == MatchingStatus.FULLY) {
                 //if fully matching, saves it and quit for
                 fullyMatching = buffer;
+                fullyMatchingIndex = active[i];
                 break;
             } else if (status == MatchingStatus.NONE || buffer.size() >= bufferLimit) {
-                //if not matching or too much chars, reset buffer
+                //if not matching or too much chars, reset buffer and stop checking it unless it has no prefix
                 buffer.reset();
-            } else {
-                //if partially matching, saves it and store the largest buffer
-                partiallyMatching = true;
-                if (buffer.size() > maxBufferSize) {
-                    maxBufferSize = buffer.size();
+                if (template.prefixed(active[i])) {
+                    deactivate(i);
+                    continue;
                 }
+            } else if (buffer.size() > maxBufferSize) {
+                //if partially matching, store the largest buffer
+                maxBufferSize = buffer.size();
             }
+            i++;
         }
         //test results
         if (fullyMatching != null) {
             //if one buffer matches, check if there are previous characters to be written in the global buffer,
             //which may be buffered due to another matcher
-            if (fullyMatching.size() != globalStringBuilder.length()) {
+            if (fullyMatching.size() != window.length()) {
                 //write those previous characters
-                writeBufferPartially(globalStringBuilder.length() - fullyMatching.size(), false);
+                writeBufferPartially(window.length() - fullyMatching.size(), false);
             }
             //process using listener which could transform and flush new content
-            fullyMatching.process();
+            matchedContent.setLength(0);
+            window.appendSuffix(matchedContent, fullyMatching.size());
+            fullyMatching.process(matchedContent, attachment);
             //write remaining content if any
-            writeCustomBuffer(fullyMatching);
-            //reset all buffers
+            writeCustomBuffer();
+            //reset all buffers and stop checking the bindings retired by this match
+            retire(template.retires(fullyMatchingIndex));
             resetBuffers();
-        } else if (!partiallyMatching) {
+        } else if (maxBufferSize == 0) {
             //if none match at all, write current buffer
             writeAllBuffer();
-            //and reset everything
-            resetBuffers();
-        } else if (maxBufferSize < globalStringBuilder.length()) {
+        } else if (maxBufferSize < window.length()) {
             //if the biggest buffer is smaller than the global buffer, then we can write the part of the global buffer
             //that has no use for any buffer
-            writeBufferPartially(globalStringBuilder.length() - maxBufferSize, true);
+            writeBufferPartially(window.length() - maxBufferSize, true);
         }
     }
 
+    /**
+     * Starts checking a matcher whose prefix was found, filling its buffer and executing the matcher with the prefix.
+     * If it was already being checked, it restarts from the new prefix.
+     */
+    private void activate(final int index) {
+        final MatchingBuffer buffer = buffers[index];
+        buffer.reset();
+        buffer.append(window, window.length() - template.prefixLength(index), window.length());
+        //keep active indexes in binding order
+        int position = activeLength;
+        for (int i = 0; i < activeLength; i++) {
+            if (active[i] == index) return;
+            if (active[i] > index) {
+                position = i;
+                break;
+            }
+        }
+        System.arraycopy(active, position, active, position + 1, activeLength - position);
+        active[position] = index;
+        activeLength++;
+    }
+
+    /**
+     * Stops checking the matcher at the given position of the active indexes.
+     */
+    private void deactivate(final int position) {
+        System.arraycopy(active, position + 1, active, position, activeLength - position - 1);
+        activeLength--;
+    }
+
+    /**
+     * Stops checking the given bindings for the rest of the stream. If no bindings are left, the decoder starts
+     * passing characters through. It must be followed by {@link #resetBuffers()}, which updates the active bindings.
+     */
+    private void retire(final int[] indexes) {
+        for (final int index : indexes) {
+            if (!retired[index]) {
+                retired[index] = true;
+                retiredCount++;
+            }
+        }
+        passingThrough = retiredCount == buffers.length;
+    }
+
+    /**
+     * Whether all bindings were retired, so everything written is just passed to the output.
+     */
+    boolean passingThrough() {
+        return passingThrough;
+    }
+
+    /**
+     * Stops checking all matchers, except the ones without prefixes which were not retired.
+     */
+    private void deactivateAll() {
+        activeLength = 0;
+        for (int i = 0; i < buffers.length; i++) {
+            if (!template.prefixed(i) && !retired[i]) {
+                active[activeLength++] = i;
+            }
+        }
+    }
+
+    /**
+     * Handles a sequence of chars, producing the same result as if each one was written individually.
+     * While nothing is being matched, runs of characters that cannot start a match are written straight to the output.
+     */
+    public void write(final char[] chars, final int off, final int len) throws IOException {
+        final int end = off + len;
+        int position = off;
+        while (position < end) {
+            if (passingThrough) {
+                matchingWriter.write(chars, position, end - position);
+                return;
+            }
+            if (candidates.isPresent() && window.length() == 0) {
+                final int next = candidates.get().next(chars, position, end);
+                if (next > position) {
+                    matchingWriter.write(chars, position, next - position);
+                    position = next;
+                    continue;
+                }
+            }
+            write(chars[position++]);
+        }
+    }
+
+    /**
+     * Whether all characters which can start a match are ASCII, so for ASCII-compatible encodings
+     * they can be found without decoding bytes. See {@link #passThrough(byte[], int, int)}.
+     */
+    boolean matchesAsciiOnly() {
+        return candidates.isPresent() && candidates.get().asciiOnly();
+    }
+
+    /**
+     * Finds how many bytes of an ASCII-compatible encoding can go straight to the output without being decoded,
+     * which are the ones before the next candidate character while nothing is being matched.
+     * Only valid when {@link #matchesAsciiOnly()}.
+     * @return Position of the first byte which must be decoded.
+     */
+    int passThrough(final byte[] bytes, final int start, final int end) {
+        if (passingThrough) return end;
+        return window.length() == 0 ? candidates.get().next(bytes, start, end) : start;
+    }
+
+    /**
+     * Single byte version of {@link #passThrough(byte[], int, int)}.
+     */
+    boolean passThrough(final byte b) {
+        return passingThrough || window.length() == 0 && (b < 0 || !candidates.get().contains((char) b));
+    }
+
     /**
      * Writes all the global buffer to the output and cleans it.
      */
     public void writeAllBuffer() throws IOException {
-        matchingWriter.write(globalStringBuilder.toString());
-        globalStringBuilder.setLength(0);
+        if (window.length() > 0) {
+            window.writeTo(matchingWriter, window.length());
+            window.clear();
+        }
+    }
+
+    /**
+     * Writes all the global buffer and whatever the output keeps between writes, since no more content follows.
+     */
+    public void finish() throws IOException {
+        writeAllBuffer();
+        matchingWriter.finish();
+    }
+
+    /**
+     * Sets the object handed to listeners through {@link org.luizricardo.warppipe.listener.MatchingContext#attachment()}.
+     */
+    public void attach(final Object attachment) {
+        this.attachment = attachment;
+    }
+
+    /**
+     * Discards all state so this instance can be reused for another stream, as if it was just created.
+     * Buffered content is discarded, so it should be written before with {@link #writeAllBuffer()}.
+     */
+    public void reset() {
+        Arrays.fill(retired, false);
+        retiredCount = 0;
+        passingThrough = buffers.length == 0;
+        resetBuffers();
+        window.trim();
+        matchedContent.setLength(0);
+        if (matchedContent.capacity() > MAX_RETAINED_CAPACITY) {
+            matchedContent.trimToSize();
+        }
+        matchingWriter.reset();
+        attachment = null;
     }
 
     /**
      * Retrieves current buffer, for inspection
      */
-    public StringBuilder currentBuffer() {
-        return globalStringBuilder;
+    public CharSequence currentBuffer() {
+        return window;
     }
 
     /**
@@ -170,27 +417,29 @@ public class StreamDecoder {
      * It'll be called when the beginning of the buffer is not relevant for any individual buffer anymore.
      */
     protected void writeBufferPartially(final int length, boolean delete) throws IOException {
-        matchingWriter.write(globalStringBuilder.subSequence(0, length).toString());
-        if (delete) globalStringBuilder.delete(0, length);
+        window.writeTo(matchingWriter, length);
+        if (delete) window.discard(length);
     }
 
     /**
-     * Writes an individual buffer to the output.
+     * Writes the content of the fully matching buffer, as left by its listener, to the output.
      */
-    protected void writeCustomBuffer(final MatchingBuffer matchingBuffer) throws IOException {
-        if (matchingBuffer.size() > 0) {
-            matchingWriter.write(matchingBuffer.content());
+    protected void writeCustomBuffer() throws IOException {
+        if (matchedContent.length() > 0) {
+            matchingWriter.write(matchedContent, 0, matchedContent.length());
         }
     }
 
     /**
-     * Reset all buffers, inclusing the global buffer.
+     * Reset all buffers, inclusing the global buffer, and the automaton.
      */
     protected void resetBuffers() {
-        for (int i = 0; i < buffersLength; i++) {
+        for (int i = 0; i < buffers.length; i++) {
             buffers[i].reset();
         }
-        globalStringBuilder.setLength(0);
+        window.clear();
+        state = PrefixAutomaton.ROOT;
+        deactivateAll();
     }
 
 }
@@ -16,6 +16,8 @@ public abstract class StreamDecoderBuilder<T> {
 
     protected final List<StreamMatcher> matchers = new ArrayList<>();
     protected final List<StreamListener> listeners = new ArrayList<>();
+    protected final List<Boolean> once = new ArrayList<>();
+    protected final List<StreamMatcher> until = new ArrayList<>();
     protected int bufferLimit = 64;
 
     protected StreamDecoderBuilder() { }
@@ -24,8 +26,30 @@ public abstract class StreamDecoderBuilder<T> {
      * Binds a matcher and a listener, i.e., when some content matches the corresponding listener will be executed.
      */
     public StreamDecoderBuilder<T> bind(final StreamMatcher matcher, final StreamListener listener) {
+        return bind(matcher, listener, false, null);
+    }
+
+    /**
+     * Binds a matcher and a listener which is executed only for the first match, after which the matcher isn't checked
+     * anymore. When no matchers are left, the decoder just writes everything straight to the output.
+     */
+    public StreamDecoderBuilder<T> bindOnce(final StreamMatcher matcher, final StreamListener listener) {
+        return bind(matcher, listener, true, null);
+    }
+
+    /**
+     * Binds a matcher and a listener which are checked until the given matcher, which must also be bound, matches.
+     */
+    public StreamDecoderBuilder<T> bindUntil(final StreamMatcher matcher, final StreamListener listener, final StreamMatcher until) {
+        return bind(matcher, listener, false, until);
+    }
+
+    private StreamDecoderBuilder<T> bind(final StreamMatcher matcher, final StreamListener listener,
+                                         final boolean once, final StreamMatcher until) {
         this.matchers.add(matcher);
         this.listeners.add(listener);
+        this.once.add(once);
+        this.until.add(until);
         return this;
     }
 
@@ -42,6 +66,32 @@ public abstract class StreamDecoderBuilder<T> {
      */
     public abstract T build();
 
+    /**
+     * Build a {@link StreamDecoderTemplate} with the current matchers, listeners and buffer limit.
+     */
+    protected StreamDecoderTemplate template() {
+        final boolean[] onceArray = new boolean[once.size()];
+        for (int i = 0; i < onceArray.length; i++) {
+            onceArray[i] = once.get(i);
+        }
+        return new StreamDecoderTemplate(
+                matchers.toArray(new StreamMatcher[matchers.size()]),
+                listeners.toArray(new StreamListener[listeners.size()]),
+                bufferLimit,
+                onceArray,
+                until.toArray(new StreamMatcher[until.size()]));
+    }
+
+    /**
+     * Builder class for {@link StreamDecoderTemplate}.
+     */
+    protected static class TemplateBuilder extends StreamDecoderBuilder<StreamDecoderTemplate> {
+        @Override
+        public StreamDecoderTemplate build() {
+            return template();
+        }
+    }
+
     /**
      * Builder class for {@link StreamDecoderOutputStream}.
      */
@@ -56,10 +106,7 @@ public abstract class StreamDecoderBuilder<T> {
 
         @Override
         public StreamDecoderOutputStream build() {
-            return new StreamDecoderOutputStream(outputStream, charset,
-                    matchers.toArray(new StreamMatcher[matchers.size()]),
-                    listeners.toArray(new StreamListener[listeners.size()]),
-                    bufferLimit);
+            return template().newOutputStream(outputStream, charset);
         }
     }
 
@@ -74,10 +121,7 @@ public abstract class StreamDecoderBuilder<T> {
         }
 
         public StreamDecoderWriter build() {
-            return new StreamDecoderWriter(writer,
-                    matchers.toArray(new StreamMatcher[matchers.size()]),
-                    listeners.toArray(new StreamListener[listeners.size()]),
-                    bufferLimit);
+            return template().newWriter(writer);
         }
     }
 
@@ -12,6 +12,7 @@ import java.nio.CharBuffer;
 import java.nio.charset.Charset;
 import java.nio.charset.CharsetDecoder;
 import java.nio.charset.CoderResult;
+import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
 
 /**
@@ -25,6 +26,16 @@ import java.util.Arrays;
  *     match, it'll be written to the delegated output. When a buffer completely matches a given matcher, the associated
  *     {@link StreamListener} will be executed, where the buffer can be transformed and any operation can be executed.
  * </p>
+ * <p>
+ *     For ASCII-compatible encodings like UTF-8 and ISO-8859-1, when all matchers start with ASCII characters,
+ *     matching is done directly on bytes: runs of bytes which cannot start a match are written untouched to the
+ *     delegated output and ASCII bytes are handed as characters to the matchers, so only bytes of other characters
+ *     inside matching regions go through the {@link CharsetDecoder}.
+ * </p>
+ * <p>
+ *     When all bindings are retired (see {@link StreamDecoderBuilder#bindOnce}), bytes are written straight to the
+ *     delegated output for the rest of the stream.
+ * </p>
  */
 public class StreamDecoderOutputStream extends OutputStream {
 
@@ -34,9 +45,14 @@ public class StreamDecoderOutputStream extends OutputStream {
     private static final int MAX_CHAR_SIZE = 4;
 
     /**
-     * Delegated OutputStream, which will get the transformed output.
+     * Max number of characters decoded at once when writing chunks of bytes.
+     */
+    private static final int CHUNK_SIZE = 1024;
+
+    /**
+     * Delegated OutputStream, which will get the transformed output. It changes when the instance is reused.
      */
-    private final OutputStream outputStream;
+    private OutputStream outputStream;
 
     /**
      * Charset to decode characters from the byte stream.
@@ -66,7 +82,8 @@ public class StreamDecoderOutputStream extends OutputStream {
     private int byteArrayPosition;
 
     /**
-     * Stores decoded chars, when they're successfully decoded by the charsetDecoder from the byteArray.
+     * Stores decoded chars, when they're successfully decoded by the charsetDecoder from the byteArray or from a chunk
+     * of bytes.
      */
     private final char[] charArray;
 
@@ -81,23 +98,70 @@ public class StreamDecoderOutputStream extends OutputStream {
      */
     private final CharBuffer charBuffer;
 
+    /**
+     * Whether bytes are matched directly, without decoding. See class documentation.
+     */
+    private final boolean byteNative;
+
     protected StreamDecoderOutputStream(
             final OutputStream outputStream,
             final Charset charset,
             final StreamMatcher[] matchers,
             final StreamListener[] listeners,
             final int bufferLimit) {
+        this(outputStream, charset, new StreamDecoderTemplate(matchers, listeners, bufferLimit));
+    }
+
+    protected StreamDecoderOutputStream(
+            final OutputStream outputStream,
+            final Charset charset,
+            final StreamDecoderTemplate template) {
         this.outputStream = outputStream;
         this.charset = charset;
-        //decoder implementation that delegates to the output stream
-        this.decoder = new StreamDecoder(MatchingWriter.forOutputStream(outputStream, charset), matchers, listeners, bufferLimit);
+        //decoder implementation that delegates to the current output stream
+        this.decoder = new StreamDecoder(MatchingWriter.forOutputStream(new OutputStream() {
+            @Override
+            public void write(final int b) throws IOException {
+                StreamDecoderOutputStream.this.outputStream.write(b);
+            }
+
+            @Override
+            public void write(final byte[] b, final int off, final int len) throws IOException {
+                StreamDecoderOutputStream.this.outputStream.write(b, off, len);
+            }
+
+            @Override
+            public void flush() throws IOException {
+                StreamDecoderOutputStream.this.outputStream.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                StreamDecoderOutputStream.this.outputStream.close();
+            }
+        }, charset), template);
         //byte to character decoder
         this.charsetDecoder = charset.newDecoder();
         //buffers to hold decoded chars
         this.byteArray = new byte[MAX_CHAR_SIZE]; //supports max 4 bytes characters
         this.byteBuffer = ByteBuffer.wrap(this.byteArray);
-        this.charArray = new char[2];
+        this.charArray = new char[CHUNK_SIZE];
         this.charBuffer = CharBuffer.wrap(this.charArray);
+        this.byteNative = asciiCompatible(charset) && decoder.matchesAsciiOnly();
+    }
+
+    /**
+     * Whether ASCII characters are encoded as single bytes and no byte of other characters is in the ASCII range,
+     * which holds for UTF-8 and for single byte encodings which extend ASCII.
+     */
+    static boolean asciiCompatible(final Charset charset) {
+        if (charset.equals(StandardCharsets.UTF_8)) return true;
+        if (!charset.canEncode() || charset.newEncoder().maxBytesPerChar() != 1) return false;
+        final byte[] ascii = new byte[128];
+        for (int i = 0; i < ascii.length; i++) {
+            ascii[i] = (byte) i;
+        }
+        return Arrays.equals(ascii, new String(ascii, StandardCharsets.US_ASCII).getBytes(charset));
     }
 
     /**
@@ -107,6 +171,26 @@ public class StreamDecoderOutputStream extends OutputStream {
      */
     @Override
     public void write(final int b) throws IOException {
+        if (byteArrayPosition == 0 && decoder.passingThrough()) {
+            outputStream.write(b);
+            return;
+        }
+        if (byteNative && byteArrayPosition == 0) {
+            if (decoder.passThrough((byte) b)) {
+                outputStream.write(b);
+                return;
+            } else if ((byte) b >= 0) {
+                decoder.write((char) b);
+                return;
+            }
+        }
+        decode(b);
+    }
+
+    /**
+     * Decodes the byte using the {@link CharsetDecoder}.
+     */
+    private void decode(final int b) throws IOException {
         //add new byte to buffer
         byteArray[byteArrayPosition++] = (byte) b;
         //reset buffers positions and limits
@@ -120,9 +204,7 @@ public class StreamDecoderOutputStream extends OutputStream {
             //if char buffer is not empty, it means at least one char was decoded, so try matching it
             if (charBuffer.position() > 0) {
                 //writes decoded characters to the stream decoder
-                for (int i = 0; i < charBuffer.position(); i++) {
-                    decoder.write(charArray[i]);
-                }
+                decoder.write(charArray, 0, charBuffer.position());
                 byteArrayPosition = 0;
             } else {
                 //it no characters were decoded, increment position and wait for another byte
@@ -130,24 +212,129 @@ public class StreamDecoderOutputStream extends OutputStream {
                 if (byteArrayPosition >= MAX_CHAR_SIZE) throw new IOException("This error should never occur.");
             }
         } else {
-            //this exception can be thrown in some specific situations when an invalid result is returned from CharsetDecoder.
-            //for instance when a character code is not recognized or when the resulting chars cannot be stored
-            //the charArray because they exceed its size.
-            //for normal encodings like UTF-8 and ISO-8859-1 it should never happen.
-            throw new IOException(String.format("Error while decoding bytes %s encoded in %s. Current buffer is '%s', and CoderResult is %s.",
-                    Arrays.toString(Arrays.copyOf(byteArray, byteArrayPosition)), charset, decoder.currentBuffer(), coderResult));
+            throw decodingError(coderResult, Arrays.copyOf(byteArray, byteArrayPosition));
         }
     }
 
+    /**
+     * Decodes a whole chunk of bytes using as few calls to the {@link CharsetDecoder} as possible and writes the
+     * decoded characters to the stream decoder in bulk.
+     * An incomplete character at the end of the chunk is kept and completed by the bytes of the next call.
+     */
+    @Override
+    public void write(final byte[] b, final int off, final int len) throws IOException {
+        final int end = off + len;
+        int position = off;
+        //complete the character left incomplete by the previous call, if any
+        while (byteArrayPosition > 0 && position < end) {
+            decode(b[position++]);
+        }
+        if (position == end) return;
+        //nothing to check anymore
+        if (decoder.passingThrough()) {
+            outputStream.write(b, position, end - position);
+            return;
+        }
+        if (byteNative) {
+            writeBytes(b, position, end);
+            return;
+        }
+        final ByteBuffer chunk = ByteBuffer.wrap(b, position, end - position);
+        CoderResult coderResult;
+        do {
+            charBuffer.clear();
+            coderResult = charsetDecoder.decode(chunk, charBuffer, false);
+            if (charBuffer.position() > 0) {
+                decoder.write(charArray, 0, charBuffer.position());
+            }
+        } while (coderResult.isOverflow());
+        if (coderResult.isError()) {
+            throw decodingError(coderResult, Arrays.copyOfRange(b, chunk.position(), end));
+        }
+        //keep the bytes of an incomplete character awaiting for the next call
+        final int remaining = chunk.remaining();
+        if (remaining >= MAX_CHAR_SIZE) throw new IOException("This error should never occur.");
+        chunk.get(byteArray, 0, remaining);
+        byteArrayPosition = remaining;
+    }
+
+    /**
+     * Matches bytes directly, writing runs that cannot be matched straight to the output.
+     */
+    private void writeBytes(final byte[] b, final int off, final int end) throws IOException {
+        int position = off;
+        while (position < end) {
+            if (byteArrayPosition == 0) {
+                final int next = decoder.passThrough(b, position, end);
+                if (next > position) {
+                    outputStream.write(b, position, next - position);
+                    position = next;
+                    continue;
+                }
+                if (b[position] >= 0) {
+                    decoder.write((char) b[position++]);
+                    continue;
+                }
+            }
+            decode(b[position++]);
+        }
+    }
+
+    /**
+     * This exception can be thrown in some specific situations when an invalid result is returned from CharsetDecoder,
+     * for instance when a character code is not recognized.
+     * For normal encodings like UTF-8 and ISO-8859-1 it should never happen.
+     */
+    private IOException decodingError(final CoderResult coderResult, final byte[] bytes) {
+        return new IOException(String.format("Error while decoding bytes %s encoded in %s. Current buffer is '%s', and CoderResult is %s.",
+                Arrays.toString(bytes), charset, decoder.currentBuffer(), coderResult));
+    }
+
     /**
      * Writes all buffered content and closes delegated stream.
      */
     @Override
     public void close() throws IOException {
-        decoder.writeAllBuffer();
+        decoder.finish();
         outputStream.close();
     }
 
+    /**
+     * Writes all buffered content, without closing nor flushing the delegated stream.
+     * Bytes of an incomplete character are discarded.
+     */
+    public void finish() throws IOException {
+        decoder.finish();
+    }
+
+    /**
+     * Sets the object handed to listeners through {@link org.luizricardo.warppipe.listener.MatchingContext#attachment()}.
+     */
+    public void attach(final Object attachment) {
+        decoder.attach(attachment);
+    }
+
+    /**
+     * Discards all state and the delegated stream, so the instance can be reused by {@link #reuse(OutputStream)}.
+     */
+    void reset() {
+        decoder.reset();
+        charsetDecoder.reset();
+        byteArrayPosition = 0;
+        outputStream = null;
+    }
+
+    /**
+     * Starts writing to another stream after a {@link #reset()}.
+     */
+    void reuse(final OutputStream outputStream) {
+        this.outputStream = outputStream;
+    }
+
+    Charset charset() {
+        return charset;
+    }
+
     /**
      * Flushes delegated OutputStream, but does not write matched buffer.
      */
@@ -0,0 +1,89 @@
+package org.luizricardo.warppipe.decoder;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+
+/**
+ * Bounded pool of decoders created from a {@link StreamDecoderTemplate}, so a new stream reuses the buffers, matcher
+ * states and charset decoder of a previous one instead of allocating them again.
+ *
+ * <p>
+ *     Decoders are {@link #acquire(OutputStream, Charset, Object) acquired} for a stream and should be
+ *     {@link #release(StreamDecoderOutputStream) released} when the stream is finished, after which they must not be
+ *     used anymore. Released decoders are reset and dropped if the pool is full. Instances are thread-safe.
+ * </p>
+ */
+public final class StreamDecoderPool {
+
+    private final StreamDecoderTemplate template;
+    private final BlockingQueue<StreamDecoderOutputStream> outputStreams;
+    private final BlockingQueue<StreamDecoderWriter> writers;
+
+    /**
+     * @param template Template of the pooled decoders.
+     * @param maxSize Maximum number of idle decoders of each kind kept in the pool. Zero disables pooling.
+     */
+    public StreamDecoderPool(final StreamDecoderTemplate template, final int maxSize) {
+        this.template = template;
+        this.outputStreams = maxSize > 0 ? new ArrayBlockingQueue<>(maxSize) : null;
+        this.writers = maxSize > 0 ? new ArrayBlockingQueue<>(maxSize) : null;
+    }
+
+    public StreamDecoderTemplate template() {
+        return template;
+    }
+
+    /**
+     * Gets a decoder which writes to the given stream.
+     * @param attachment Object handed to listeners, see {@link StreamDecoderOutputStream#attach(Object)}. May be null.
+     */
+    public StreamDecoderOutputStream acquire(final OutputStream outputStream, final Charset charset, final Object attachment) {
+        StreamDecoderOutputStream decoder = outputStreams != null ? outputStreams.poll() : null;
+        if (decoder != null && decoder.charset().equals(charset)) {
+            decoder.reuse(outputStream);
+        } else {
+            decoder = template.newOutputStream(outputStream, charset);
+        }
+        decoder.attach(attachment);
+        return decoder;
+    }
+
+    /**
+     * Gets a decoder which writes to the given writer.
+     * @param attachment Object handed to listeners, see {@link StreamDecoderWriter#attach(Object)}. May be null.
+     */
+    public StreamDecoderWriter acquire(final Writer writer, final Object attachment) {
+        StreamDecoderWriter decoder = writers != null ? writers.poll() : null;
+        if (decoder != null) {
+            decoder.reuse(writer);
+        } else {
+            decoder = template.newWriter(writer);
+        }
+        decoder.attach(attachment);
+        return decoder;
+    }
+
+    /**
+     * Resets the decoder and keeps it for reuse. Buffered content is discarded, see {@link StreamDecoderOutputStream#finish()}.
+     */
+    public void release(final StreamDecoderOutputStream decoder) {
+        if (outputStreams != null) {
+            decoder.reset();
+            outputStreams.offer(decoder);
+        }
+    }
+
+    /**
+     * Resets the decoder and keeps it for reuse. Buffered content is discarded, see {@link StreamDecoderWriter#finish()}.
+     */
+    public void release(final StreamDecoderWriter decoder) {
+        if (writers != null) {
+            decoder.reset();
+            writers.offer(decoder);
+        }
+    }
+
+}
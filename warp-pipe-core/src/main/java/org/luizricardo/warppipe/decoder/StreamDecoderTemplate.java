@@ -0,0 +1,159 @@
+package org.luizricardo.warppipe.decoder;
+
+import org.luizricardo.warppipe.listener.StreamListener;
+import org.luizricardo.warppipe.matcher.StreamMatcher;
+
+import java.io.OutputStream;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Immutable and precompiled set of matchers and listeners, from which any number of decoders can be created.
+ *
+ * <p>
+ *     Everything which doesn't depend on the stream, like the {@link PrefixAutomaton} and the
+ *     {@link CandidateCharacters}, is computed once here and shared by all decoders. Since listeners are also
+ *     shared, they should keep no state and get whatever they need for each stream from the
+ *     {@link org.luizricardo.warppipe.listener.MatchingContext}, like the attachment given to {@link StreamDecoderPool}.
+ *     Instances are thread-safe.
+ * </p>
+ */
+public final class StreamDecoderTemplate {
+
+    private final StreamMatcher[] matchers;
+    private final StreamListener[] listeners;
+    private final int bufferLimit;
+
+    /**
+     * Whether each matcher has a literal prefix, i.e., is only checked after its prefix is found by the automaton.
+     */
+    private final boolean[] prefixed;
+
+    /**
+     * Length of the literal prefix of each matcher, limited to the buffer size.
+     */
+    private final int[] prefixLengths;
+
+    /**
+     * Automaton which finds the literal prefixes of all matchers.
+     */
+    private final PrefixAutomaton automaton;
+
+    /**
+     * Characters which can start a match. Empty when some matcher can start with any character.
+     */
+    private final Optional<CandidateCharacters> candidates;
+
+    /**
+     * Indexes of the bindings retired when each binding matches.
+     */
+    private final int[][] retires;
+
+    StreamDecoderTemplate(final StreamMatcher[] matchers, final StreamListener[] listeners, final int bufferLimit) {
+        this(matchers, listeners, bufferLimit, new boolean[matchers.length], new StreamMatcher[matchers.length]);
+    }
+
+    /**
+     * @param once Whether each binding is retired after its first match.
+     * @param until Matcher of another binding which retires each binding when it matches, or null.
+     */
+    StreamDecoderTemplate(final StreamMatcher[] matchers, final StreamListener[] listeners, final int bufferLimit,
+                          final boolean[] once, final StreamMatcher[] until) {
+        this.matchers = matchers.clone();
+        this.listeners = listeners.clone();
+        this.bufferLimit = bufferLimit;
+        this.prefixed = new boolean[matchers.length];
+        this.prefixLengths = new int[matchers.length];
+        final String[] prefixes = new String[matchers.length];
+        for (int i = 0; i < matchers.length; i++) {
+            //prefixes longer than the buffer would never match, so they're cut
+            prefixes[i] = matchers[i].literalPrefix()
+                    .filter(prefix -> !prefix.isEmpty())
+                    .map(prefix -> prefix.length() > bufferLimit ? prefix.substring(0, bufferLimit) : prefix)
+                    .orElse(null);
+            prefixed[i] = prefixes[i] != null;
+            prefixLengths[i] = prefixed[i] ? prefixes[i].length() : 0;
+        }
+        this.automaton = PrefixAutomaton.compile(prefixes);
+        this.candidates = CandidateCharacters.of(matchers);
+        this.retires = retires(matchers, once, until);
+    }
+
+    private static int[][] retires(final StreamMatcher[] matchers, final boolean[] once, final StreamMatcher[] until) {
+        final List<List<Integer>> retires = new ArrayList<>();
+        for (int i = 0; i < matchers.length; i++) {
+            retires.add(new ArrayList<>());
+        }
+        for (int i = 0; i < matchers.length; i++) {
+            if (once[i]) {
+                retires.get(i).add(i);
+            }
+            if (until[i] != null) {
+                final int trigger = Arrays.asList(matchers).indexOf(until[i]);
+                if (trigger < 0) {
+                    throw new IllegalArgumentException("Matcher " + until[i] + " is not bound");
+                }
+                retires.get(trigger).add(i);
+            }
+        }
+        return retires.stream().map(list -> list.stream().mapToInt(Integer::intValue).toArray()).toArray(int[][]::new);
+    }
+
+    /**
+     * Creates a new decoder which writes to the given {@link OutputStream}.
+     */
+    public StreamDecoderOutputStream newOutputStream(final OutputStream outputStream, final Charset charset) {
+        return new StreamDecoderOutputStream(outputStream, charset, this);
+    }
+
+    /**
+     * Creates a new decoder which writes to the given {@link Writer}.
+     */
+    public StreamDecoderWriter newWriter(final Writer writer) {
+        return new StreamDecoderWriter(writer, this);
+    }
+
+    int size() {
+        return matchers.length;
+    }
+
+    StreamMatcher matcher(final int index) {
+        return matchers[index];
+    }
+
+    StreamListener listener(final int index) {
+        return listeners[index];
+    }
+
+    int bufferLimit() {
+        return bufferLimit;
+    }
+
+    boolean prefixed(final int index) {
+        return prefixed[index];
+    }
+
+    int prefixLength(final int index) {
+        return prefixLengths[index];
+    }
+
+    PrefixAutomaton automaton() {
+        return automaton;
+    }
+
+    Optional<CandidateCharacters> candidates() {
+        return candidates;
+    }
+
+    /**
+     * Indexes of the bindings which must not be checked anymore after the given one matches.
+     */
+    int[] retires(final int index) {
+        return retires[index];
+    }
+
+}
@@ -22,9 +22,9 @@ import java.io.Writer;
 public class StreamDecoderWriter extends Writer {
 
     /**
-     * Delegated OutputStream, which will get the transformed output.
+     * Delegated Writer, which will get the transformed output. It changes when the instance is reused.
      */
-    private final Writer writer;
+    private Writer writer;
 
     /**
      * Generic Decoder to delegate actual decoding.
@@ -36,8 +36,39 @@ public class StreamDecoderWriter extends Writer {
             final StreamMatcher[] matchers,
             final StreamListener[] listeners,
             final int bufferLimit) {
+        this(writer, new StreamDecoderTemplate(matchers, listeners, bufferLimit));
+    }
+
+    protected StreamDecoderWriter(final Writer writer, final StreamDecoderTemplate template) {
         this.writer = writer;
-        this.decoder = new StreamDecoder(MatchingWriter.forWriter(writer), matchers, listeners, bufferLimit);
+        //decoder implementation that delegates to the current writer
+        this.decoder = new StreamDecoder(MatchingWriter.forWriter(new Writer() {
+            @Override
+            public void write(final char[] cbuf, final int off, final int len) throws IOException {
+                StreamDecoderWriter.this.writer.write(cbuf, off, len);
+            }
+
+            @Override
+            public void write(final String str, final int off, final int len) throws IOException {
+                StreamDecoderWriter.this.writer.write(str, off, len);
+            }
+
+            @Override
+            public Writer append(final CharSequence csq, final int start, final int end) throws IOException {
+                StreamDecoderWriter.this.writer.append(csq, start, end);
+                return this;
+            }
+
+            @Override
+            public void flush() throws IOException {
+                StreamDecoderWriter.this.writer.flush();
+            }
+
+            @Override
+            public void close() throws IOException {
+                StreamDecoderWriter.this.writer.close();
+            }
+        }), template);
     }
 
     @Override
@@ -47,9 +78,7 @@ public class StreamDecoderWriter extends Writer {
 
     @Override
     public void write(final char[] cbuf, final int off, final int len) throws IOException {
-        for (int i = 0; i < len; i++) {
-            write(cbuf[off + i]);
-        }
+        decoder.write(cbuf, off, len);
     }
 
     /**
@@ -57,10 +86,39 @@ public class StreamDecoderWriter extends Writer {
      */
     @Override
     public void close() throws IOException {
-        decoder.writeAllBuffer();
+        decoder.finish();
         writer.close();
     }
 
+    /**
+     * Writes all buffered content, without closing nor flushing the delegated writer.
+     */
+    public void finish() throws IOException {
+        decoder.finish();
+    }
+
+    /**
+     * Sets the object handed to listeners through {@link org.luizricardo.warppipe.listener.MatchingContext#attachment()}.
+     */
+    public void attach(final Object attachment) {
+        decoder.attach(attachment);
+    }
+
+    /**
+     * Discards all state and the delegated writer, so the instance can be reused by {@link #reuse(Writer)}.
+     */
+    void reset() {
+        decoder.reset();
+        writer = null;
+    }
+
+    /**
+     * Starts writing to another writer after a {@link #reset()}.
+     */
+    void reuse(final Writer writer) {
+        this.writer = writer;
+    }
+
     /**
      * Flushes delegated Writer, but does not write matched buffer.
      */
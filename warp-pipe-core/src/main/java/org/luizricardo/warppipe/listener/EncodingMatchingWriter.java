@@ -0,0 +1,138 @@
+package org.luizricardo.warppipe.listener;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetEncoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * {@link MatchingWriter} which encodes characters to an {@link OutputStream}.
+ *
+ * <p>
+ *     Characters are copied in chunks to a reusable buffer and encoded by a single {@link CharsetEncoder} into
+ *     another reusable buffer, so writing creates no objects. A high surrogate at the end of a write is kept until
+ *     the next one, so supplementary characters can be split across writes. On flush or finish it can't be completed
+ *     anymore, so it's written as a replacement, like by {@link String#getBytes(Charset)}.
+ *     Instances are not thread-safe.
+ * </p>
+ */
+final class EncodingMatchingWriter implements MatchingWriter {
+
+    private static final int CHUNK_SIZE = 1024;
+
+    private final OutputStream outputStream;
+    private final CharsetEncoder encoder;
+    private final char[] chars = new char[CHUNK_SIZE];
+    private final CharBuffer charBuffer = CharBuffer.wrap(chars);
+    private final ByteBuffer byteBuffer;
+
+    /**
+     * Number of characters at the beginning of {@link #chars} which were not encoded yet.
+     */
+    private int pending;
+
+    EncodingMatchingWriter(final OutputStream outputStream, final Charset charset) {
+        this.outputStream = outputStream;
+        //same behavior as String.getBytes()
+        this.encoder = charset.newEncoder()
+                .onMalformedInput(CodingErrorAction.REPLACE)
+                .onUnmappableCharacter(CodingErrorAction.REPLACE);
+        this.byteBuffer = ByteBuffer.allocate((int) Math.ceil(CHUNK_SIZE * encoder.maxBytesPerChar()));
+    }
+
+    @Override
+    public MatchingWriter write(final String buffer) throws IOException {
+        return write(buffer, 0, buffer.length());
+    }
+
+    @Override
+    public MatchingWriter write(final CharSequence text, final int start, final int end) throws IOException {
+        int position = start;
+        while (position < end) {
+            final int length = Math.min(end - position, CHUNK_SIZE - pending);
+            getChars(text, position, position + length, chars, pending);
+            position += length;
+            encode(pending + length, false);
+        }
+        return this;
+    }
+
+    @Override
+    public MatchingWriter write(final char[] text, final int off, final int len) throws IOException {
+        int position = off;
+        final int end = off + len;
+        while (position < end) {
+            final int length = Math.min(end - position, CHUNK_SIZE - pending);
+            System.arraycopy(text, position, chars, pending, length);
+            position += length;
+            encode(pending + length, false);
+        }
+        return this;
+    }
+
+    /**
+     * Encodes the given number of characters from the chunk and writes the bytes to the output.
+     * @param endOfInput Whether no more characters follow, so an incomplete surrogate pair is replaced.
+     */
+    private void encode(final int length, final boolean endOfInput) throws IOException {
+        charBuffer.position(0).limit(length);
+        CoderResult coderResult;
+        do {
+            byteBuffer.clear();
+            coderResult = encoder.encode(charBuffer, byteBuffer, endOfInput);
+            outputStream.write(byteBuffer.array(), 0, byteBuffer.position());
+        } while (coderResult.isOverflow());
+        if (endOfInput) {
+            byteBuffer.clear();
+            encoder.flush(byteBuffer);
+            outputStream.write(byteBuffer.array(), 0, byteBuffer.position());
+            //the encoder must be reset before encoding the next characters
+            encoder.reset();
+        }
+        //keep an incomplete surrogate pair for the next write
+        pending = charBuffer.remaining();
+        System.arraycopy(chars, charBuffer.position(), chars, 0, pending);
+    }
+
+    @Override
+    public MatchingWriter flush() throws IOException {
+        finish();
+        outputStream.flush();
+        return this;
+    }
+
+    @Override
+    public MatchingWriter finish() throws IOException {
+        if (pending > 0) {
+            encode(pending, true);
+        }
+        return this;
+    }
+
+    @Override
+    public MatchingWriter reset() {
+        pending = 0;
+        encoder.reset();
+        return this;
+    }
+
+    /**
+     * Copies characters without creating intermediate strings for the common {@link CharSequence} implementations.
+     */
+    static void getChars(final CharSequence text, final int start, final int end, final char[] dst, final int dstBegin) {
+        if (text instanceof String) {
+            ((String) text).getChars(start, end, dst, dstBegin);
+        } else if (text instanceof StringBuilder) {
+            ((StringBuilder) text).getChars(start, end, dst, dstBegin);
+        } else {
+            for (int i = start; i < end; i++) {
+                dst[dstBegin + i - start] = text.charAt(i);
+            }
+        }
+    }
+
+}
@@ -1,5 +1,8 @@
 package org.luizricardo.warppipe.listener;
 
+import java.util.Optional;
+import java.util.function.Supplier;
+
 /**
  * Interface to {@link StreamListener}s interact with the matched content.
  * Implementations should use method chaining pattern.
@@ -21,7 +24,51 @@ public interface MatchingContext {
      */
     MatchingWriter output();
 
+    /**
+     * Structured result attached by the matcher, like the {@link org.luizricardo.warppipe.matcher.HtmlTag} found by
+     * HTML matchers, so listeners don't need to parse the content again.
+     * It's only available while the listener is being processed.
+     */
+    default Optional<Object> result() {
+        return Optional.empty();
+    }
+
+    /**
+     * Typed access to {@link #result()}, which is empty when the result is not of the given type.
+     */
+    default <T> Optional<T> result(final Class<T> type) {
+        return result().filter(type::isInstance).map(type::cast);
+    }
+
+    /**
+     * Object attached to the decoder for the current stream, usually holding state of the current request, so the same
+     * listeners can be shared by all streams. See {@link org.luizricardo.warppipe.decoder.StreamDecoderPool}.
+     */
+    default Optional<Object> attachment() {
+        return Optional.empty();
+    }
+
+    /**
+     * Typed access to {@link #attachment()}, which is empty when the attachment is not of the given type.
+     */
+    default <T> Optional<T> attachment(final Class<T> type) {
+        return attachment().filter(type::isInstance).map(type::cast);
+    }
+
     static MatchingContext create(final StringBuilder content, final MatchingWriter matchingWriter) {
+        return create(content, matchingWriter, Optional::empty);
+    }
+
+    static MatchingContext create(final StringBuilder content, final MatchingWriter matchingWriter,
+                                  final Supplier<Optional<Object>> result) {
+        return create(content, matchingWriter, result, null);
+    }
+
+    /**
+     * @param attachment Object returned by {@link #attachment()}, may be null.
+     */
+    static MatchingContext create(final StringBuilder content, final MatchingWriter matchingWriter,
+                                  final Supplier<Optional<Object>> result, final Object attachment) {
         return new MatchingContext() {
             @Override
             public StringBuilder content() {
@@ -38,6 +85,16 @@ public interface MatchingContext {
             public MatchingWriter output() {
                 return matchingWriter;
             }
+
+            @Override
+            public Optional<Object> result() {
+                return result.get();
+            }
+
+            @Override
+            public Optional<Object> attachment() {
+                return Optional.ofNullable(attachment);
+            }
         };
     }
 
@@ -16,38 +16,78 @@ public interface MatchingWriter {
      */
     MatchingWriter write(String buffer) throws IOException;
 
+    /**
+     * Writes a range of characters without requiring a new {@link String}.
+     * @param text Content to be written.
+     * @param start Index of the first character.
+     * @param end Index after the last character.
+     */
+    default MatchingWriter write(final CharSequence text, final int start, final int end) throws IOException {
+        return write(text.subSequence(start, end).toString());
+    }
+
+    /**
+     * Writes a range of characters without requiring a new {@link String}.
+     * @param text Content to be written.
+     * @param off Index of the first character.
+     * @param len Number of characters.
+     */
+    default MatchingWriter write(final char[] text, final int off, final int len) throws IOException {
+        return write(new String(text, off, len));
+    }
+
     /**
      * Force the flushing of buffered content in the underlying object.
      */
     MatchingWriter flush() throws IOException;
 
     /**
-     * Builds an instance which delegated to an {@link OutputStream}
+     * Writes any state kept between writes, like an incomplete surrogate pair, since no more content follows.
+     * The underlying object is not flushed.
+     */
+    default MatchingWriter finish() throws IOException {
+        return this;
+    }
+
+    /**
+     * Discards any state kept between writes, like an incomplete surrogate pair, so the instance can be reused.
+     */
+    default MatchingWriter reset() {
+        return this;
+    }
+
+    /**
+     * Builds an instance which delegated to an {@link OutputStream}, encoding characters with the given charset.
+     * The instance is not thread-safe.
      */
     static MatchingWriter forOutputStream(final OutputStream outputStream, final Charset charset) {
+        return new EncodingMatchingWriter(outputStream, charset);
+    }
+
+    /**
+     * Builds an instance which delegated to an {@link Writer}
+     */
+    static MatchingWriter forWriter(final Writer writer) {
         return new MatchingWriter() {
             @Override
             public MatchingWriter write(final String buffer) throws IOException {
-                outputStream.write(buffer.getBytes(charset));
+                writer.write(buffer);
                 return this;
             }
 
             @Override
-            public MatchingWriter flush() throws IOException {
-                outputStream.flush();
+            public MatchingWriter write(final CharSequence text, final int start, final int end) throws IOException {
+                if (text instanceof String) {
+                    writer.write((String) text, start, end - start);
+                } else {
+                    writer.append(text, start, end);
+                }
                 return this;
             }
-        };
-    }
 
-    /**
-     * Builds an instance which delegated to an {@link Writer}
-     */
-    static MatchingWriter forWriter(final Writer writer) {
-        return new MatchingWriter() {
             @Override
-            public MatchingWriter write(final String buffer) throws IOException {
-                writer.write(buffer);
+            public MatchingWriter write(final char[] text, final int off, final int len) throws IOException {
+                writer.write(text, off, len);
                 return this;
             }
 
@@ -1,18 +1,22 @@
 package org.luizricardo.warppipe.matcher;
 
+import java.util.Optional;
 
 /**
  * Base class for HTML matching.
- * It does not process contents, but finishes when finds a '{@code >}' character.
+ * It does not process contents, but finishes when finds a '{@code >}' character which closes the tag.
+ * Tags are recognized by a {@link HtmlTagLexer}, which the incremental matcher feeds as characters arrive.
  */
 public abstract class BaseHtmlTagStreamMatcher implements StreamMatcher {
 
     private final String tagName;
+    private final String initialText;
     private final int initialTextLength;
     private final TextStreamMatcher initialMatcher;
 
     public BaseHtmlTagStreamMatcher(final String tagName, final String initialText) {
         this.tagName = tagName;
+        this.initialText = initialText;
         this.initialTextLength = initialText.length();
         this.initialMatcher = TextStreamMatcher.forText(initialText, false);
     }
@@ -36,14 +40,104 @@ public abstract class BaseHtmlTagStreamMatcher implements StreamMatcher {
         return MatchingStatus.NONE;
     }
 
+    @Override
+    public IncrementalStreamMatcher incremental() {
+        return new Incremental();
+    }
+
+    @Override
+    public Optional<char[]> firstCharacters() {
+        return Optional.of(new char[] { '<' });
+    }
+
+    @Override
+    public Optional<String> literalPrefix() {
+        return Optional.of(initialText);
+    }
+
     public String tagName() {
         return tagName;
     }
 
     /**
      * Implements matching for this tag when it should have a complete tag like {@code <...>}.
+     * A '{@code >}' inside a quoted attribute value does not close the tag, so it keeps partially matching.
      * @param stringBuilder tagContent
      */
-    public abstract MatchingStatus matchesTag(final StringBuilder stringBuilder);
+    public MatchingStatus matchesTag(final StringBuilder stringBuilder) {
+        final HtmlTagLexer lexer = lex(stringBuilder);
+        if (lexer.invalid()) {
+            return MatchingStatus.NONE;
+        } else if (!lexer.complete()) {
+            return MatchingStatus.PARTIALLY;
+        }
+        return matchesTag(lexer) ? MatchingStatus.FULLY : MatchingStatus.NONE;
+    }
+
+    /**
+     * Implements matching for this tag when the lexer has a complete tag like {@code <...>}.
+     */
+    protected abstract boolean matchesTag(final HtmlTagLexer lexer);
+
+    /**
+     * Lexes the content, stopping at the first invalid character.
+     */
+    protected HtmlTagLexer lex(final CharSequence content) {
+        final HtmlTagLexer lexer = new HtmlTagLexer();
+        for (int i = 0, length = content.length(); i < length; i++) {
+            if (!lexer.accept(content.charAt(i))) break;
+        }
+        return lexer;
+    }
+
+    /**
+     * Checks the initial text char by char and lexes the rest of the tag as it arrives.
+     */
+    private class Incremental implements IncrementalStreamMatcher {
+
+        private final HtmlTagLexer lexer = new HtmlTagLexer();
+        private final IncrementalStreamMatcher initialMatcherState = initialMatcher.incremental();
+        private int length;
+        private HtmlTag tag;
+
+        @Override
+        public MatchingStatus accept(final char c) {
+            length++;
+            if (!lexer.accept(c)) {
+                return MatchingStatus.NONE;
+            } else if (length <= initialTextLength) {
+                final MatchingStatus status = initialMatcherState.accept(c);
+                return status == MatchingStatus.NONE ? MatchingStatus.NONE : length == 1 ? MatchingStatus.FIRST : MatchingStatus.PARTIALLY;
+            } else if (lexer.complete()) {
+                return matchesTag(lexer) ? MatchingStatus.FULLY : MatchingStatus.NONE;
+            } else {
+                return MatchingStatus.PARTIALLY;
+            }
+        }
+
+        @Override
+        public int length() {
+            return length;
+        }
+
+        /**
+         * Builds the matched tag once, when first requested.
+         */
+        @Override
+        public Optional<Object> result() {
+            if (tag == null && lexer.complete()) {
+                tag = lexer.toTag();
+            }
+            return Optional.ofNullable(tag);
+        }
+
+        @Override
+        public void reset() {
+            length = 0;
+            tag = null;
+            lexer.reset();
+            initialMatcherState.reset();
+        }
+    }
 
 }
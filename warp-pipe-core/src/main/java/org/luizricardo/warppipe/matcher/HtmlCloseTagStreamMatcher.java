@@ -1,12 +1,6 @@
 package org.luizricardo.warppipe.matcher;
 
 
-import net.htmlparser.jericho.EndTagType;
-import net.htmlparser.jericho.Source;
-import net.htmlparser.jericho.Tag;
-
-import java.util.List;
-
 /**
  * Matches closing tags like {@code </body>}.
  */
@@ -24,14 +18,8 @@ public class HtmlCloseTagStreamMatcher extends BaseHtmlTagStreamMatcher {
     }
 
     @Override
-    public MatchingStatus matchesTag(final StringBuilder stringBuilder) {
-        final Source source = new Source(stringBuilder);
-        final List<Tag> all = source.getAllTags();
-        if (!all.isEmpty() && all.get(0).getName().equals(tagName()) && all.get(0).getTagType() instanceof EndTagType) {
-            return MatchingStatus.FULLY;
-        } else {
-            return MatchingStatus.NONE;
-        }
+    protected boolean matchesTag(final HtmlTagLexer lexer) {
+        return lexer.endTag() && lexer.nameEquals(tagName());
     }
 
 }
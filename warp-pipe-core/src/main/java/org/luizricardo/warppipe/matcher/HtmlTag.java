@@ -0,0 +1,58 @@
+package org.luizricardo.warppipe.matcher;
+
+import java.util.Map;
+import java.util.Optional;
+
+/**
+ * Immutable result of lexing a single HTML tag with {@link HtmlTagLexer}.
+ */
+public class HtmlTag {
+
+    private final String name;
+    private final boolean endTag;
+    private final boolean selfClosing;
+    private final TagAttributes attributes;
+
+    public HtmlTag(final String name, final boolean endTag, final boolean selfClosing, final Map<String, String> attributes) {
+        this.name = name;
+        this.endTag = endTag;
+        this.selfClosing = selfClosing;
+        this.attributes = TagAttributes.copyOf(attributes);
+    }
+
+    /**
+     * Tag name in lower case.
+     */
+    public String name() {
+        return name;
+    }
+
+    /**
+     * Whether it's a closing tag like {@code </body>}.
+     */
+    public boolean endTag() {
+        return endTag;
+    }
+
+    /**
+     * Whether it's a self-closing tag like {@code <br/>}.
+     */
+    public boolean selfClosing() {
+        return selfClosing;
+    }
+
+    /**
+     * Immutable attributes with lower case names and decoded values. Attributes without value have an empty value.
+     */
+    public TagAttributes attributes() {
+        return attributes;
+    }
+
+    /**
+     * Value of an attribute, given its lower case name.
+     */
+    public Optional<String> attribute(final String name) {
+        return Optional.ofNullable(attributes.get(name));
+    }
+
+}
@@ -0,0 +1,347 @@
+package org.luizricardo.warppipe.matcher;
+
+import java.util.Arrays;
+
+/**
+ * Small incremental lexer for a single HTML tag like {@code <a href="#">}, {@code <br/>} or {@code </body>}.
+ * It gets one character at a time, starting from {@code <}, and recognizes the tag name, attributes with or without
+ * quoted values and the self-closing syntax as characters arrive.
+ * <p>
+ *     Characters are kept in a reusable buffer and names and values are stored as positions in that buffer,
+ *     so lexing allocates nothing after the buffers grow enough. Strings are only created on demand.
+ *     Instances are not thread-safe and should be {@link #reset()} before lexing another tag.
+ * </p>
+ */
+public class HtmlTagLexer {
+
+    private enum State {
+        START, TAG_OPEN, END_TAG_OPEN, TAG_NAME, BEFORE_ATTRIBUTE_NAME, ATTRIBUTE_NAME, AFTER_ATTRIBUTE_NAME,
+        BEFORE_ATTRIBUTE_VALUE, DOUBLE_QUOTED_VALUE, SINGLE_QUOTED_VALUE, UNQUOTED_VALUE, AFTER_QUOTED_VALUE,
+        SELF_CLOSING, COMPLETE, INVALID
+    }
+
+    private final StringBuilder buffer = new StringBuilder();
+    private State state;
+    private boolean endTag;
+    private boolean selfClosing;
+    private int nameEnd;
+
+    /**
+     * Positions of each attribute: name start, name end, value start and value end. Value start is -1 when absent.
+     */
+    private int[] attributes = new int[16];
+    private int attributeCount;
+
+    public HtmlTagLexer() {
+        reset();
+    }
+
+    /**
+     * Handles the next character.
+     * @return False if the characters received so far cannot be a tag.
+     */
+    public boolean accept(final char c) {
+        final int position = buffer.length();
+        buffer.append(c);
+        switch (state) {
+            case START:
+                state = c == '<' ? State.TAG_OPEN : State.INVALID;
+                break;
+            case TAG_OPEN:
+                if (c == '/') {
+                    endTag = true;
+                    state = State.END_TAG_OPEN;
+                } else {
+                    state = Character.isLetter(c) ? State.TAG_NAME : State.INVALID;
+                }
+                break;
+            case END_TAG_OPEN:
+                state = Character.isLetter(c) ? State.TAG_NAME : State.INVALID;
+                break;
+            case TAG_NAME:
+                if (Character.isWhitespace(c) || c == '/' || c == '>') {
+                    nameEnd = position;
+                    afterName(c);
+                } else if (c == '<') {
+                    state = State.INVALID;
+                }
+                break;
+            case BEFORE_ATTRIBUTE_NAME:
+            case AFTER_ATTRIBUTE_NAME:
+                if (c == '=' && state == State.AFTER_ATTRIBUTE_NAME) {
+                    state = State.BEFORE_ATTRIBUTE_VALUE;
+                } else if (!Character.isWhitespace(c)) {
+                    beforeName(c, position);
+                }
+                break;
+            case ATTRIBUTE_NAME:
+                if (Character.isWhitespace(c)) {
+                    attributes[attributeCount * 4 - 3] = position;
+                    state = State.AFTER_ATTRIBUTE_NAME;
+                } else if (c == '=') {
+                    attributes[attributeCount * 4 - 3] = position;
+                    state = State.BEFORE_ATTRIBUTE_VALUE;
+                } else if (c == '/' || c == '>') {
+                    attributes[attributeCount * 4 - 3] = position;
+                    afterName(c);
+                } else if (c == '"' || c == '\'' || c == '<') {
+                    state = State.INVALID;
+                }
+                break;
+            case BEFORE_ATTRIBUTE_VALUE:
+                if (c == '"') {
+                    startValue(position + 1, State.DOUBLE_QUOTED_VALUE);
+                } else if (c == '\'') {
+                    startValue(position + 1, State.SINGLE_QUOTED_VALUE);
+                } else if (c == '>') {
+                    startValue(position, State.COMPLETE);
+                    endValue(position);
+                } else if (c == '<' || c == '=' || c == '`') {
+                    state = State.INVALID;
+                } else if (!Character.isWhitespace(c)) {
+                    startValue(position, State.UNQUOTED_VALUE);
+                }
+                break;
+            case DOUBLE_QUOTED_VALUE:
+            case SINGLE_QUOTED_VALUE:
+                if (c == (state == State.DOUBLE_QUOTED_VALUE ? '"' : '\'')) {
+                    endValue(position);
+                    state = State.AFTER_QUOTED_VALUE;
+                }
+                break;
+            case UNQUOTED_VALUE:
+                if (Character.isWhitespace(c)) {
+                    endValue(position);
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                } else if (c == '>') {
+                    endValue(position);
+                    state = State.COMPLETE;
+                } else if (c == '"' || c == '\'' || c == '<' || c == '=' || c == '`') {
+                    state = State.INVALID;
+                }
+                break;
+            case AFTER_QUOTED_VALUE:
+                if (Character.isWhitespace(c)) {
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                } else {
+                    beforeName(c, position);
+                }
+                break;
+            case SELF_CLOSING:
+                if (c == '>') {
+                    selfClosing = true;
+                    state = State.COMPLETE;
+                } else if (!Character.isWhitespace(c)) {
+                    beforeName(c, position);
+                } else {
+                    state = State.BEFORE_ATTRIBUTE_NAME;
+                }
+                break;
+            default:
+                state = State.INVALID;
+        }
+        return state != State.INVALID;
+    }
+
+    /**
+     * Handles the character which ends a tag or attribute name.
+     */
+    private void afterName(final char c) {
+        state = c == '/' ? State.SELF_CLOSING : c == '>' ? State.COMPLETE : State.BEFORE_ATTRIBUTE_NAME;
+    }
+
+    /**
+     * Handles a character where an attribute name may start.
+     */
+    private void beforeName(final char c, final int position) {
+        if (c == '/') {
+            state = State.SELF_CLOSING;
+        } else if (c == '>') {
+            state = State.COMPLETE;
+        } else if (c == '"' || c == '\'' || c == '<' || c == '=') {
+            state = State.INVALID;
+        } else {
+            if (attributes.length < (attributeCount + 1) * 4) {
+                attributes = Arrays.copyOf(attributes, attributes.length * 2);
+            }
+            final int offset = attributeCount++ * 4;
+            attributes[offset] = position;
+            attributes[offset + 1] = position + 1;
+            attributes[offset + 2] = -1;
+            attributes[offset + 3] = -1;
+            state = State.ATTRIBUTE_NAME;
+        }
+    }
+
+    private void startValue(final int position, final State next) {
+        attributes[attributeCount * 4 - 2] = position;
+        state = next;
+    }
+
+    private void endValue(final int position) {
+        attributes[attributeCount * 4 - 1] = position;
+    }
+
+    /**
+     * Whether the tag was closed with {@code >}.
+     */
+    public boolean complete() {
+        return state == State.COMPLETE;
+    }
+
+    /**
+     * Whether the characters received so far cannot be a tag.
+     */
+    public boolean invalid() {
+        return state == State.INVALID;
+    }
+
+    /**
+     * Whether it's a closing tag like {@code </body>}.
+     */
+    public boolean endTag() {
+        return endTag;
+    }
+
+    /**
+     * Whether it's a self-closing tag like {@code <br/>}.
+     */
+    public boolean selfClosing() {
+        return selfClosing;
+    }
+
+    /**
+     * Compares the tag name ignoring case, without creating strings. Only valid after the name is complete.
+     */
+    public boolean nameEquals(final String name) {
+        final int nameStart = endTag ? 2 : 1;
+        return nameEnd - nameStart == name.length() && regionEqualsIgnoreCase(nameStart, name);
+    }
+
+    private boolean regionEqualsIgnoreCase(final int start, final String text) {
+        for (int i = 0; i < text.length(); i++) {
+            final char c1 = buffer.charAt(start + i);
+            final char c2 = text.charAt(i);
+            if (c1 != c2 && Character.toUpperCase(c1) != Character.toUpperCase(c2)
+                    && Character.toLowerCase(c1) != Character.toLowerCase(c2)) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * Tag name in lower case.
+     */
+    public String name() {
+        return buffer.substring(endTag ? 2 : 1, nameEnd).toLowerCase();
+    }
+
+    /**
+     * Number of attributes found so far.
+     */
+    public int attributeCount() {
+        return attributeCount;
+    }
+
+    /**
+     * Name of the attribute at the given index, in lower case.
+     */
+    public String attributeName(final int index) {
+        return buffer.substring(attributes[index * 4], attributes[index * 4 + 1]).toLowerCase();
+    }
+
+    /**
+     * Value of the attribute at the given index with character references decoded,
+     * or an empty string if the attribute has no value.
+     */
+    public String attributeValue(final int index) {
+        final int start = attributes[index * 4 + 2];
+        return start < 0 ? "" : decode(buffer, start, attributes[index * 4 + 3]);
+    }
+
+    /**
+     * Attributes by name, in the order they appear. When an attribute is repeated, the first one is kept.
+     */
+    public TagAttributes attributes() {
+        final String[] entries = new String[attributeCount * 2];
+        for (int i = 0; i < attributeCount; i++) {
+            entries[i * 2] = attributeName(i);
+            entries[i * 2 + 1] = attributeValue(i);
+        }
+        return TagAttributes.of(entries, attributeCount);
+    }
+
+    /**
+     * Builds an immutable tag from the current state. Only valid when {@link #complete()}.
+     */
+    public HtmlTag toTag() {
+        return new HtmlTag(name(), endTag, selfClosing, attributes());
+    }
+
+    /**
+     * Clears the state so the next character starts a new tag.
+     */
+    public void reset() {
+        buffer.setLength(0);
+        state = State.START;
+        endTag = false;
+        selfClosing = false;
+        nameEnd = 0;
+        attributeCount = 0;
+    }
+
+    /**
+     * Decodes the most common character references: {@code &amp; &lt; &gt; &quot; &apos;} and numeric ones.
+     * Other references are kept as they are.
+     */
+    static String decode(final CharSequence text, final int start, final int end) {
+        final StringBuilder result = new StringBuilder(end - start);
+        int i = start;
+        while (i < end) {
+            final char c = text.charAt(i);
+            final int semicolon = c == '&' ? indexOf(text, ';', i + 1, Math.min(end, i + 12)) : -1;
+            if (semicolon > 0) {
+                final String reference = text.subSequence(i + 1, semicolon).toString();
+                final int decoded = decodeReference(reference);
+                if (decoded >= 0) {
+                    result.appendCodePoint(decoded);
+                    i = semicolon + 1;
+                    continue;
+                }
+            }
+            result.append(c);
+            i++;
+        }
+        return result.toString();
+    }
+
+    private static int indexOf(final CharSequence text, final char c, final int start, final int end) {
+        for (int i = start; i < end; i++) {
+            if (text.charAt(i) == c) return i;
+        }
+        return -1;
+    }
+
+    private static int decodeReference(final String reference) {
+        switch (reference) {
+            case "amp": return '&';
+            case "lt": return '<';
+            case "gt": return '>';
+            case "quot": return '"';
+            case "apos": return '\'';
+            default:
+                if (reference.length() > 1 && reference.charAt(0) == '#') {
+                    try {
+                        final boolean hex = reference.charAt(1) == 'x' || reference.charAt(1) == 'X';
+                        final int codePoint = Integer.parseInt(reference.substring(hex ? 2 : 1), hex ? 16 : 10);
+                        return Character.isValidCodePoint(codePoint) ? codePoint : -1;
+                    } catch (NumberFormatException e) {
+                        return -1;
+                    }
+                }
+                return -1;
+        }
+    }
+
+}
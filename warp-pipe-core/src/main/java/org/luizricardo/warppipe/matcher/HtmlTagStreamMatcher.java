@@ -1,11 +1,6 @@
 package org.luizricardo.warppipe.matcher;
 
 
-import net.htmlparser.jericho.Source;
-import net.htmlparser.jericho.StartTag;
-
-import java.util.List;
-
 /**
  * Matches a opening HTML tag like {@code <a>} or an enclosing tag like {@code <br/>}.
  * It does not process inner tags, but finishes when finds a '{@code >}' character.
@@ -24,17 +19,17 @@ public class HtmlTagStreamMatcher extends BaseHtmlTagStreamMatcher {
     }
 
     @Override
-    public MatchingStatus matchesTag(final StringBuilder stringBuilder){
-        return findStartTag(stringBuilder) != null ? MatchingStatus.FULLY : MatchingStatus.NONE;
+    protected boolean matchesTag(final HtmlTagLexer lexer) {
+        return !lexer.endTag() && lexer.nameEquals(tagName());
     }
 
-    public StartTag findStartTag(final StringBuilder stringBuilder) {
-        final Source source = new Source(stringBuilder);
-        final List<StartTag> all = source.getAllStartTags();
-        if (!all.isEmpty() && all.get(0).getName().equals(tagName())) {
-            return all.get(0);
-        }
-        return null;
+    /**
+     * Lexes the content looking for this tag.
+     * @return The tag with its attributes or null if the content is not this tag.
+     */
+    public HtmlTag findStartTag(final CharSequence content) {
+        final HtmlTagLexer lexer = lex(content);
+        return lexer.complete() && matchesTag(lexer) ? lexer.toTag() : null;
     }
 
 }
@@ -0,0 +1,41 @@
+package org.luizricardo.warppipe.matcher;
+
+import java.util.Optional;
+
+/**
+ * Stateful counterpart of a {@link StreamMatcher}, which gets one character at a time instead of the whole buffer,
+ * keeping whatever state it needs to tell how the characters received so far match.
+ * <p>
+ *     Instances are created for each stream through {@link StreamMatcher#incremental()} and are not thread-safe.
+ *     Statuses follow the same rules of {@link StreamMatcher#matches(StringBuilder)}, as if the buffer contained all
+ *     characters accepted since the last {@link #reset()}. After returning {@link MatchingStatus#NONE} or
+ *     {@link MatchingStatus#FULLY} the matcher will be reset before getting new characters.
+ * </p>
+ */
+public interface IncrementalStreamMatcher {
+
+    /**
+     * Handles the next character.
+     */
+    MatchingStatus accept(char c);
+
+    /**
+     * Number of trailing characters which are part of the current match.
+     * It's never greater than the number of characters accepted since the last reset.
+     */
+    int length();
+
+    /**
+     * Clears the state so the next character is the first one.
+     */
+    void reset();
+
+    /**
+     * Structured result of a {@link MatchingStatus#FULLY} match, like the {@link HtmlTag} found by HTML matchers,
+     * which will be handed to the listener. It's only available until the matcher is reset.
+     */
+    default Optional<Object> result() {
+        return Optional.empty();
+    }
+
+}
@@ -2,6 +2,8 @@ package org.luizricardo.warppipe.matcher;
 
 import org.luizricardo.warppipe.decoder.StreamDecoderOutputStream;
 
+import java.util.Optional;
+
 /**
  * A StreamMatcher is an interface designed to identify text from a stream os characters, to be used by
  * {@link StreamDecoderOutputStream}.
@@ -21,6 +23,11 @@ import org.luizricardo.warppipe.decoder.StreamDecoderOutputStream;
  *     At any point, if the buffer does not correspond to that this matcher is aiming, it should return {@link MatchingStatus#NONE}.
  *     After that, the buffer will reset and start again.
  * </p>
+ * <p>
+ *     Decoders don't call {@link #matches(StringBuilder)} directly, but use the stateful {@link IncrementalStreamMatcher}
+ *     returned by {@link #incremental()}. Implementations should override it, so they don't need to check the whole
+ *     buffer on each character.
+ * </p>
  */
 public interface StreamMatcher {
 
@@ -29,4 +36,31 @@ public interface StreamMatcher {
      */
     MatchingStatus matches(StringBuilder stringBuilder);
 
+    /**
+     * Characters which may start a match, i.e., a buffer with one single character not listed here never matches.
+     * Decoders use it to skip runs of text that cannot be matched at all.
+     * Implementations may return {@link Optional#empty()} when any character can start a match, which is the default.
+     */
+    default Optional<char[]> firstCharacters() {
+        return Optional.empty();
+    }
+
+    /**
+     * Literal text every match starts with. Decoders merge the prefixes of all matchers into a single automaton, so a
+     * matcher with a prefix is only checked after its prefix was found in the stream, comparing characters ignoring case.
+     * Then it'll get a buffer already containing the prefix, or part of it when the prefix is longer than the buffer limit.
+     * Implementations may return {@link Optional#empty()}, the default, to be checked against every character.
+     */
+    default Optional<String> literalPrefix() {
+        return Optional.empty();
+    }
+
+    /**
+     * Creates a new stateful matcher to check a stream. It must match exactly as {@link #matches(StringBuilder)} would.
+     * The default implementation buffers characters and delegates to {@link #matches(StringBuilder)}.
+     */
+    default IncrementalStreamMatcher incremental() {
+        return new StreamMatcherAdapter(this);
+    }
+
 }
@@ -0,0 +1,33 @@
+package org.luizricardo.warppipe.matcher;
+
+/**
+ * Adapts a {@link StreamMatcher} which only implements {@link StreamMatcher#matches(StringBuilder)} to the
+ * {@link IncrementalStreamMatcher} contract, buffering characters and checking the whole buffer on each character.
+ */
+public class StreamMatcherAdapter implements IncrementalStreamMatcher {
+
+    private final StreamMatcher streamMatcher;
+    private final StringBuilder buffer;
+
+    public StreamMatcherAdapter(final StreamMatcher streamMatcher) {
+        this.streamMatcher = streamMatcher;
+        this.buffer = new StringBuilder();
+    }
+
+    @Override
+    public MatchingStatus accept(final char c) {
+        buffer.append(c);
+        return streamMatcher.matches(buffer);
+    }
+
+    @Override
+    public int length() {
+        return buffer.length();
+    }
+
+    @Override
+    public void reset() {
+        buffer.setLength(0);
+    }
+
+}
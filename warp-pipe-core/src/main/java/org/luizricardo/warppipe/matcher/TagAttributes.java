@@ -0,0 +1,114 @@
+package org.luizricardo.warppipe.matcher;
+
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * Compact immutable map of tag attributes, keeping names and values side by side in a single array and preserving
+ * the order they appear in the tag. Tags have few attributes, so lookups just scan the array.
+ */
+public final class TagAttributes extends AbstractMap<String, String> {
+
+    private static final TagAttributes EMPTY = new TagAttributes(new String[0], 0);
+
+    /**
+     * Names at even positions and values at odd positions.
+     */
+    private final String[] entries;
+    private final int size;
+
+    private TagAttributes(final String[] entries, final int size) {
+        this.entries = entries;
+        this.size = size;
+    }
+
+    /**
+     * Builds an instance from alternating names and values. When a name is repeated, the first one is kept.
+     * The array is owned by the new instance and must not be changed afterwards.
+     */
+    static TagAttributes of(final String[] entries, final int size) {
+        if (size == 0) return EMPTY;
+        int distinct = 0;
+        for (int i = 0; i < size; i++) {
+            if (indexOf(entries, distinct, entries[i * 2]) < 0) {
+                entries[distinct * 2] = entries[i * 2];
+                entries[distinct * 2 + 1] = entries[i * 2 + 1];
+                distinct++;
+            }
+        }
+        return new TagAttributes(entries, distinct);
+    }
+
+    /**
+     * Returns the same instance if it's already a {@link TagAttributes} or a compact copy otherwise.
+     */
+    public static TagAttributes copyOf(final Map<String, String> attributes) {
+        if (attributes instanceof TagAttributes) {
+            return (TagAttributes) attributes;
+        }
+        final String[] entries = new String[attributes.size() * 2];
+        int i = 0;
+        for (final Map.Entry<String, String> entry : attributes.entrySet()) {
+            entries[i++] = entry.getKey();
+            entries[i++] = entry.getValue();
+        }
+        return of(entries, attributes.size());
+    }
+
+    private static int indexOf(final String[] entries, final int size, final Object name) {
+        for (int i = 0; i < size; i++) {
+            if (entries[i * 2].equals(name)) return i;
+        }
+        return -1;
+    }
+
+    @Override
+    public String get(final Object key) {
+        final int index = indexOf(entries, size, key);
+        return index < 0 ? null : entries[index * 2 + 1];
+    }
+
+    @Override
+    public boolean containsKey(final Object key) {
+        return indexOf(entries, size, key) >= 0;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Set<Entry<String, String>> entrySet() {
+        return new AbstractSet<Entry<String, String>>() {
+            @Override
+            public Iterator<Entry<String, String>> iterator() {
+                return new Iterator<Entry<String, String>>() {
+                    private int next;
+
+                    @Override
+                    public boolean hasNext() {
+                        return next < size;
+                    }
+
+                    @Override
+                    public Entry<String, String> next() {
+                        if (next >= size) throw new NoSuchElementException();
+                        final int index = next++ * 2;
+                        return new SimpleImmutableEntry<>(entries[index], entries[index + 1]);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return size;
+            }
+        };
+    }
+
+}
@@ -1,6 +1,9 @@
 package org.luizricardo.warppipe.matcher;
 
 
+import java.util.Arrays;
+import java.util.Optional;
+
 import static org.luizricardo.warppipe.matcher.MatchingStatus.FIRST;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.FULLY;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.NONE;
@@ -8,6 +11,14 @@ import static org.luizricardo.warppipe.matcher.MatchingStatus.PARTIALLY;
 
 /**
  * Matches a static text.
+ * <p>
+ *     The incremental matcher uses the Knuth-Morris-Pratt algorithm: when a character diverges, it falls back to the
+ *     longest prefix of the text which is still matching, instead of starting over, so input is never checked twice.
+ * </p>
+ * <p>
+ *     Decoders find the whole text through {@link #literalPrefix()} before the incremental matcher runs, so there it
+ *     never diverges. The failure table is only a fallback for other callers, built on the first divergence.
+ * </p>
  */
 public class TextStreamMatcher implements StreamMatcher {
 
@@ -15,10 +26,25 @@ public class TextStreamMatcher implements StreamMatcher {
     private final boolean caseSensitive;
     private final int textLength;
 
+    /**
+     * Characters of the text, with normalized case when not case-sensitive.
+     */
+    private final char[] pattern;
+
+    /**
+     * Failure function, i.e., the length of the longest proper prefix which is also a suffix of {@code pattern[0..i]}.
+     * It's null until needed.
+     */
+    private volatile int[] failure;
+
     private TextStreamMatcher(final String text, boolean caseSensitive) {
         this.text = text;
         this.caseSensitive = caseSensitive;
         this.textLength = text.length();
+        this.pattern = new char[textLength];
+        for (int i = 0; i < textLength; i++) {
+            pattern[i] = normalize(text.charAt(i));
+        }
     }
 
     /**
@@ -33,21 +59,136 @@ public class TextStreamMatcher implements StreamMatcher {
     @Override
     public MatchingStatus matches(final StringBuilder stringBuilder) {
         final int sbLength = stringBuilder.length();
-        final String str = stringBuilder.toString();
-        if (sbLength == textLength && compare(str, text)) {
-            return FULLY;
-        } else if (sbLength < textLength && compare(str, text.substring(0, sbLength))) {
-            return sbLength == 1 ? FIRST : PARTIALLY;
-        } else {
+        if (sbLength > textLength) {
             return NONE;
         }
+        for (int i = 0; i < sbLength; i++) {
+            if (!compare(stringBuilder.charAt(i), text.charAt(i))) {
+                return NONE;
+            }
+        }
+        return status(sbLength);
+    }
+
+    @Override
+    public IncrementalStreamMatcher incremental() {
+        return new Incremental();
+    }
+
+    @Override
+    public Optional<char[]> firstCharacters() {
+        if (textLength == 0) {
+            return Optional.of(new char[0]);
+        }
+        final char first = text.charAt(0);
+        if (caseSensitive) {
+            return Optional.of(new char[] { first });
+        }
+        //distinct case variants only
+        final char upper = Character.toUpperCase(first);
+        final char lower = Character.toLowerCase(first);
+        final char[] variants = { first, upper, lower };
+        int count = 1;
+        if (upper != first) {
+            variants[count++] = upper;
+        }
+        if (lower != first && lower != upper) {
+            variants[count++] = lower;
+        }
+        return Optional.of(Arrays.copyOf(variants, count));
+    }
+
+    @Override
+    public Optional<String> literalPrefix() {
+        return textLength == 0 ? Optional.empty() : Optional.of(text);
     }
 
     /**
-     * Compare considering case-sensitivity options
+     * Next state, i.e., number of characters matched, after the given character.
      */
-    private boolean compare(final String s1, final String s2) {
-        return caseSensitive ? s1.equals(s2) : s1.equalsIgnoreCase(s2);
+    private int next(int state, final char c) {
+        final char normalized = normalize(c);
+        if (state < textLength && pattern[state] == normalized) {
+            return state + 1;
+        }
+        final int[] failure = failure();
+        if (state == textLength) {
+            state = failure[state - 1];
+        }
+        while (state > 0 && pattern[state] != normalized) {
+            state = failure[state - 1];
+        }
+        return pattern[state] == normalized ? state + 1 : 0;
+    }
+
+    /**
+     * Failure table, computed on first use. Concurrent callers may compute it twice, with the same result.
+     */
+    private int[] failure() {
+        int[] table = failure;
+        if (table == null) {
+            table = new int[textLength];
+            for (int i = 1, border = 0; i < textLength; i++) {
+                while (border > 0 && pattern[i] != pattern[border]) {
+                    border = table[border - 1];
+                }
+                if (pattern[i] == pattern[border]) {
+                    border++;
+                }
+                table[i] = border;
+            }
+            failure = table;
+        }
+        return table;
+    }
+
+    /**
+     * Normalizes the case of a character when not case-sensitive.
+     */
+    private char normalize(final char c) {
+        return caseSensitive ? c : Character.toLowerCase(Character.toUpperCase(c));
+    }
+
+    /**
+     * Status after matching the given number of characters.
+     */
+    private MatchingStatus status(final int matched) {
+        return matched == textLength ? FULLY : matched == 1 ? FIRST : PARTIALLY;
+    }
+
+    /**
+     * Compare considering case-sensitivity options, the same way {@link String#equalsIgnoreCase(String)} does.
+     */
+    private boolean compare(final char c1, final char c2) {
+        return c1 == c2 || !caseSensitive && (Character.toUpperCase(c1) == Character.toUpperCase(c2)
+                || Character.toLowerCase(c1) == Character.toLowerCase(c2));
+    }
+
+    /**
+     * Keeps the number of characters matched so far, which may decrease while the text overlaps itself.
+     */
+    private class Incremental implements IncrementalStreamMatcher {
+
+        private int position;
+
+        @Override
+        public MatchingStatus accept(final char c) {
+            if (textLength == 0) {
+                return NONE;
+            }
+            position = next(position, c);
+            return position == 0 ? NONE : status(position);
+        }
+
+        @Override
+        public int length() {
+            return position;
+        }
+
+        @Override
+        public void reset() {
+            position = 0;
+        }
     }
 
 }
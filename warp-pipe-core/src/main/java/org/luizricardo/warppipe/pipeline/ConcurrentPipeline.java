@@ -6,28 +6,94 @@ import org.luizricardo.warppipe.api.StepContext;
 import org.luizricardo.warppipe.api.StepData;
 import org.luizricardo.warppipe.api.StepManager;
 
+import java.io.IOException;
+import java.io.Writer;
 import java.util.ArrayList;
 import java.util.List;
-import java.util.concurrent.Callable;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.stream.Collectors;
+import java.util.concurrent.RejectedExecutionException;
 
 /**
  * Process {@link org.luizricardo.warppipe.api.Step}s concurrently using a {@link ExecutorService}.
+ *
+ * <p>
+ *     The executor is shared by the pipelines of all requests (see {@link ExecutorBuilder}) and each pipeline uses
+ *     at most {@code parallelism} threads of it, so a page with many steps doesn't starve the others.
+ *     When the executor rejects a task, the thread executing the pipeline executes the steps itself.
+ * </p>
+ * <p>
+ *     Steps don't write to the output directly, since they would interleave. Each one renders into a private buffer
+ *     and, as soon as it completes, the whole fragment is written at once and flushed, like in BigPipe. So fragments
+ *     are sent in the order steps complete, not the order they were included, and fast ones don't wait for slow ones.
+ * </p>
  */
 public class ConcurrentPipeline implements Pipeline {
 
     private final List<StepData> data;
     private final StepManager stepManager;
     private final ExecutorService executorService;
+    private final int parallelism;
+    private final boolean ownExecutor;
 
+    /**
+     * @param executorService Shared executor, which is not shut down by the pipeline.
+     * @param parallelism Maximum number of steps executed at the same time.
+     */
+    public ConcurrentPipeline(final StepManager stepManager, final ExecutorService executorService, final int parallelism,
+                              final List<StepData> data) {
+        this(stepManager, executorService, parallelism, false, data);
+    }
+
+    /**
+     * Creates a thread pool for this pipeline only, which is shut down after {@link #execute(StepContext)}.
+     * @deprecated Creating threads for each request is expensive, use a shared executor.
+     */
+    @Deprecated
     public ConcurrentPipeline(final StepManager stepManager, final int threadPoolSize, final List<StepData> data) {
+        this(stepManager, Executors.newFixedThreadPool(threadPoolSize), threadPoolSize, true, data);
+    }
+
+    private ConcurrentPipeline(final StepManager stepManager, final ExecutorService executorService, final int parallelism,
+                               final boolean ownExecutor, final List<StepData> data) {
+        if (parallelism < 1) {
+            throw new IllegalArgumentException("Parallelism must be positive: " + parallelism);
+        }
         this.stepManager = stepManager;
-        this.executorService = Executors.newFixedThreadPool(threadPoolSize);
+        this.executorService = executorService;
+        this.parallelism = parallelism;
+        this.ownExecutor = ownExecutor;
         this.data = data;
     }
 
+    public static Builder<ConcurrentPipeline> create(final StepManager stepManager, final ExecutorService executorService,
+                                                     final int parallelism) {
+        return new Builder<ConcurrentPipeline>() {
+            private final List<StepData> data = new ArrayList<>();
+            @Override
+            public Builder<ConcurrentPipeline> include(StepData stepData) {
+                data.add(stepData);
+                return this;
+            }
+
+            @Override
+            public ConcurrentPipeline build() {
+                return new ConcurrentPipeline(stepManager, executorService, parallelism, data);
+            }
+        };
+    }
+
+    /**
+     * @deprecated Creating threads for each request is expensive, use {@link #create(StepManager, ExecutorService, int)}.
+     */
+    @Deprecated
     public static Builder<ConcurrentPipeline> create(final StepManager stepManager, final int threadPoolSize) {
         return new Builder<ConcurrentPipeline>() {
             private final List<StepData> data = new ArrayList<>();
@@ -44,30 +110,115 @@ public class ConcurrentPipeline implements Pipeline {
         };
     }
 
+    /**
+     * Private buffer where a step renders its fragment, reused by the next steps executed by the same worker.
+     */
+    static final class FragmentWriter extends Writer {
+        private final StringBuilder buffer = new StringBuilder();
+
+        @Override
+        public void write(final char[] cbuf, final int off, final int len) {
+            buffer.append(cbuf, off, len);
+        }
+
+        @Override
+        public void write(final String str, final int off, final int len) {
+            buffer.append(str, off, off + len);
+        }
+
+        @Override
+        public void flush() {
+            //fragments are only sent when complete
+        }
+
+        @Override
+        public void close() {
+            //nothing
+        }
+
+        /**
+         * Writes the fragment atomically, so it's not mixed with fragments of other steps, and clears the buffer.
+         */
+        void writeTo(final Writer writer) throws IOException {
+            if (buffer.length() > 0) {
+                synchronized (writer) {
+                    writer.append(buffer);
+                    writer.flush();
+                }
+                buffer.setLength(0);
+            }
+        }
+    }
+
     @Override
     public PipelineResult execute(final StepContext context) {
         try {
-            final PipelineResult.Builder result = PipelineResult.builder();
-            executorService.invokeAll(data.stream().map(pipelineData -> (Callable<Void>) () -> {
-                try {
-                    stepManager.execute(pipelineData, context);
+            return executeAsync(context).toCompletableFuture().get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("Interrupted waiting for steps", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected error executing steps", e.getCause());
+        }
+    }
+
+    /**
+     * Starts up to {@code parallelism} chains of steps, each one taking the next pending step when its current one
+     * completes, so asynchronous steps only use threads of the executor to start and to write their fragments.
+     */
+    @Override
+    public CompletionStage<PipelineResult> executeAsync(final StepContext context) {
+        final PipelineResult.Builder result = PipelineResult.builder();
+        final Queue<StepData> pending = new ConcurrentLinkedQueue<>(data);
+        //when the executor rejects a chain, the current thread starts it
+        final Executor executor = task -> {
+            try {
+                executorService.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
+        final List<CompletableFuture<Void>> chains = new ArrayList<>();
+        for (int i = 0; i < Math.min(parallelism, data.size()); i++) {
+            chains.add(next(pending, new FragmentWriter(), context, result, executor));
+        }
+        final CompletableFuture<PipelineResult> done = CompletableFuture.allOf(chains.toArray(new CompletableFuture<?>[0]))
+                .thenApply(v -> result.build());
+        if (ownExecutor) {
+            done.whenComplete((r, e) -> executorService.shutdown());
+        }
+        return done;
+    }
+
+    /**
+     * Executes the next pending step with the fragment of the chain, then the following ones.
+     */
+    private CompletableFuture<Void> next(final Queue<StepData> pending, final FragmentWriter fragment,
+                                         final StepContext context, final PipelineResult.Builder result,
+                                         final Executor executor) {
+        final StepData pipelineData = pending.poll();
+        if (pipelineData == null) {
+            return CompletableFuture.completedFuture(null);
+        }
+        final StepContext fragmentContext = StepContext.create(fragment, context.request());
+        return CompletableFuture.supplyAsync(() -> QueuedPipeline.start(stepManager, pipelineData, fragmentContext), executor)
+                .thenCompose(step -> step)
+                .handle((done, error) -> {
                     synchronized (result) {
-                        result.success(pipelineData);
+                        if (error == null) {
+                            result.success(pipelineData);
+                        } else {
+                            result.error(pipelineData, QueuedPipeline.cause(error));
+                        }
                     }
-                } catch (PipelineException e) {
-                    synchronized (result) {
-                        result.error(pipelineData, e);
+                    try {
+                        fragment.writeTo(context.writer());
+                    } catch (IOException e) {
+                        throw new CompletionException(e);
                     }
-                }
-                return null;
-            }).collect(Collectors.toList()));
-            return result.build();
-        } catch (InterruptedException e) {
-            //log
-            e.printStackTrace();
-            //TODO handle timeouts in a loop
-            throw new RuntimeException("InterruptedException", e);
-        }
+                    return null;
+                })
+                .thenCompose(done -> next(pending, fragment, context, result, executor));
     }
 
 }
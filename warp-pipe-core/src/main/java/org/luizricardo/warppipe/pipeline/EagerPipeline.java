@@ -0,0 +1,178 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.luizricardo.warppipe.api.Pipeline;
+import org.luizricardo.warppipe.api.PipelineResult;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
+import org.luizricardo.warppipe.api.StepManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.servlet.http.HttpServletRequest;
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CancellationException;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Future;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.function.Consumer;
+
+/**
+ * Starts each {@link org.luizricardo.warppipe.api.Step} as soon as it's included, while the page is still being
+ * rendered, using a shared {@link Executor} or {@link PriorityScheduler}.
+ *
+ * <p>
+ *     Each step renders into a private buffer, so {@link #execute(StepContext)} only waits for the steps still
+ *     pending and writes their fragments in priority order, like {@link QueuedPipeline}. When the executor rejects
+ *     a step, it's executed by the thread including it. Since steps start before the pipeline is executed, their
+ *     tasks can be tracked and cancelled when the pipeline is never executed, e.g., when a page has no body.
+ * </p>
+ */
+public class EagerPipeline implements Pipeline {
+
+    final static Logger logger = LoggerFactory.getLogger(EagerPipeline.class);
+
+    /**
+     * Sorts higher priorities first, keeping the order of inclusion for the same priority.
+     */
+    private static final Comparator<Execution> PRIORITY_ORDER = (e1, e2) -> e2.priority.compareTo(e1.priority);
+
+    /**
+     * Step started by {@link Builder#include(StepData)}, with its fragment.
+     */
+    private static final class Execution {
+        private final StepData stepData;
+        private final Integer priority;
+        private final StringWriter fragment;
+        private final FutureTask<Void> task;
+
+        private Execution(final StepData stepData, final Integer priority, final StringWriter fragment,
+                          final FutureTask<Void> task) {
+            this.stepData = stepData;
+            this.priority = priority;
+            this.fragment = fragment;
+            this.task = task;
+        }
+    }
+
+    private final List<Execution> executions;
+
+    private EagerPipeline(final List<Execution> executions) {
+        this.executions = executions;
+    }
+
+    /**
+     * Hands a step to the threads which execute it.
+     */
+    @FunctionalInterface
+    private interface Submission {
+        void submit(Runnable task, int priority);
+    }
+
+    /**
+     * @param executor Shared executor, where steps are submitted as soon as they are included.
+     * @param request Request given to steps, since they start before {@link #execute(StepContext)}.
+     */
+    public static Builder<EagerPipeline> create(final StepManager stepManager, final Executor executor,
+                                                final HttpServletRequest request) {
+        return create(stepManager, executor, request, task -> { });
+    }
+
+    /**
+     * Same as the other method, but tasks are given to {@code started} as soon as they are submitted.
+     * @param started Receives the task of each step, so it can be cancelled if the pipeline is never executed.
+     */
+    public static Builder<EagerPipeline> create(final StepManager stepManager, final Executor executor,
+                                                final HttpServletRequest request, final Consumer<? super Future<?>> started) {
+        return submitting(stepManager, (task, priority) -> executor.execute(task), request, started);
+    }
+
+    /**
+     * Same as the other methods, but steps are scheduled by priority against the steps of other requests.
+     * @param lane Lane of the request in the shared scheduler.
+     */
+    public static Builder<EagerPipeline> create(final StepManager stepManager, final PriorityScheduler.Lane lane,
+                                                final HttpServletRequest request) {
+        return create(stepManager, lane, request, task -> { });
+    }
+
+    /**
+     * Same as the other methods, but steps are scheduled by priority against the steps of other requests.
+     * @param lane Lane of the request in the shared scheduler.
+     * @param started Receives the task of each step, so it can be cancelled if the pipeline is never executed.
+     */
+    public static Builder<EagerPipeline> create(final StepManager stepManager, final PriorityScheduler.Lane lane,
+                                                final HttpServletRequest request, final Consumer<? super Future<?>> started) {
+        return submitting(stepManager, lane::execute, request, started);
+    }
+
+    private static Builder<EagerPipeline> submitting(final StepManager stepManager, final Submission submission,
+                                                     final HttpServletRequest request,
+                                                     final Consumer<? super Future<?>> started) {
+        return new Builder<EagerPipeline>() {
+            private final List<Execution> executions = new ArrayList<>();
+
+            @Override
+            public Builder<EagerPipeline> include(final StepData stepData) {
+                final StringWriter fragment = new StringWriter();
+                final StepContext context = StepContext.create(fragment, request);
+                final FutureTask<Void> task = new FutureTask<>(() -> {
+                    stepManager.execute(stepData, context);
+                    return null;
+                });
+                final Integer priority = Priority.resolve(stepData, context, stepManager);
+                executions.add(new Execution(stepData, priority, fragment, task));
+                started.accept(task);
+                try {
+                    submission.submit(task, priority);
+                } catch (RejectedExecutionException e) {
+                    logger.warn("Executor rejected step, executing it in the current thread.", e);
+                    task.run();
+                }
+                return this;
+            }
+
+            @Override
+            public EagerPipeline build() {
+                return new EagerPipeline(executions);
+            }
+        };
+    }
+
+    @Override
+    public PipelineResult execute(final StepContext context) {
+        final List<Execution> sorted = new ArrayList<>(executions);
+        sorted.sort(PRIORITY_ORDER);
+        final PipelineResult.Builder result = PipelineResult.builder();
+        for (final Execution execution : sorted) {
+            try {
+                execution.task.get();
+                result.success(execution.stepData);
+            } catch (ExecutionException e) {
+                logger.error("Failed to execute step.", e.getCause());
+                result.error(execution.stepData, e.getCause());
+            } catch (CancellationException e) {
+                result.error(execution.stepData, e);
+                continue;
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                result.error(execution.stepData, e);
+                continue;
+            }
+            //whatever the step wrote before failing is written, like in the other pipelines
+            try {
+                context.writer().write(execution.fragment.toString());
+                context.writer().flush();
+            } catch (IOException e) {
+                throw new RuntimeException("Error writing the fragment of a step", e);
+            }
+        }
+        return result.build();
+    }
+
+}
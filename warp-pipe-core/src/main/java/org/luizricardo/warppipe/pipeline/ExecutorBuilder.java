@@ -0,0 +1,149 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.RejectedExecutionHandler;
+import java.util.concurrent.SynchronousQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Builds thread pools shared by the pipelines of all requests, like the one given to {@link ConcurrentPipeline}.
+ * The owner of the pool, usually the filter, is responsible to {@link #shutdown(ExecutorService, long, TimeUnit)} it.
+ */
+public class ExecutorBuilder {
+
+    final static Logger logger = LoggerFactory.getLogger(ExecutorBuilder.class);
+
+    /**
+     * What happens to tasks submitted when all threads are busy and the queue is full.
+     * Tasks are never discarded silently, since pipelines wait for all of them.
+     */
+    public enum RejectionPolicy {
+        /**
+         * The task is rejected with {@link java.util.concurrent.RejectedExecutionException}.
+         */
+        ABORT(new ThreadPoolExecutor.AbortPolicy()),
+        /**
+         * The task is executed by the thread which submitted it, which slows down new submissions.
+         */
+        CALLER_RUNS(new ThreadPoolExecutor.CallerRunsPolicy());
+
+        private final RejectedExecutionHandler handler;
+
+        RejectionPolicy(final RejectedExecutionHandler handler) {
+            this.handler = handler;
+        }
+    }
+
+    private int coreSize = 16;
+    private int maxSize = 16;
+    private int queueSize = 1024;
+    private long keepAliveSeconds = 60;
+    private RejectionPolicy rejectionPolicy = RejectionPolicy.CALLER_RUNS;
+    private String threadName = "warp-pipe";
+
+    public static ExecutorBuilder create() {
+        return new ExecutorBuilder();
+    }
+
+    /**
+     * Number of threads kept even when idle.
+     */
+    public ExecutorBuilder coreSize(final int coreSize) {
+        if (coreSize < 1) {
+            throw new IllegalArgumentException("Core size must be positive: " + coreSize);
+        }
+        this.coreSize = coreSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of threads, which are only created when the queue is full.
+     */
+    public ExecutorBuilder maxSize(final int maxSize) {
+        if (maxSize < 1) {
+            throw new IllegalArgumentException("Max size must be positive: " + maxSize);
+        }
+        this.maxSize = maxSize;
+        return this;
+    }
+
+    /**
+     * Maximum number of tasks waiting for a thread. Zero hands tasks directly to threads and negative values
+     * mean an unbounded queue.
+     */
+    public ExecutorBuilder queueSize(final int queueSize) {
+        this.queueSize = queueSize;
+        return this;
+    }
+
+    /**
+     * Time threads above the core size are kept while idle.
+     */
+    public ExecutorBuilder keepAliveSeconds(final long keepAliveSeconds) {
+        if (keepAliveSeconds < 0) {
+            throw new IllegalArgumentException("Keep alive cannot be negative: " + keepAliveSeconds);
+        }
+        this.keepAliveSeconds = keepAliveSeconds;
+        return this;
+    }
+
+    public ExecutorBuilder rejectionPolicy(final RejectionPolicy rejectionPolicy) {
+        this.rejectionPolicy = rejectionPolicy;
+        return this;
+    }
+
+    /**
+     * Prefix of the names of threads, which are followed by a sequential number.
+     */
+    public ExecutorBuilder threadName(final String threadName) {
+        this.threadName = threadName;
+        return this;
+    }
+
+    /**
+     * Builds the pool. Threads are daemons, so a pool which is not shut down doesn't prevent the JVM from stopping.
+     */
+    public ExecutorService build() {
+        if (maxSize < coreSize) {
+            throw new IllegalArgumentException(String.format("Max size %d is less than core size %d", maxSize, coreSize));
+        }
+        final BlockingQueue<Runnable> queue = queueSize < 0 ? new LinkedBlockingQueue<>() :
+                queueSize == 0 ? new SynchronousQueue<>() : new ArrayBlockingQueue<>(queueSize);
+        final AtomicInteger count = new AtomicInteger();
+        final String prefix = threadName;
+        return new ThreadPoolExecutor(coreSize, maxSize, keepAliveSeconds, TimeUnit.SECONDS, queue,
+                runnable -> {
+                    final Thread thread = new Thread(runnable, prefix + "-" + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                },
+                rejectionPolicy.handler);
+    }
+
+    /**
+     * Stops accepting tasks and waits for the running ones to finish, interrupting them after the timeout.
+     * @return Whether all tasks finished in time.
+     */
+    public static boolean shutdown(final ExecutorService executorService, final long timeout, final TimeUnit unit) {
+        executorService.shutdown();
+        try {
+            if (executorService.awaitTermination(timeout, unit)) {
+                return true;
+            }
+            logger.warn("Tasks still running after {} {}, interrupting them.", timeout, unit);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        executorService.shutdownNow();
+        return false;
+    }
+
+}
@@ -0,0 +1,160 @@
+package org.luizricardo.warppipe.pipeline;
+
+import java.util.ArrayDeque;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
+
+/**
+ * Schedules the steps of all requests on a shared pool of workers, by priority and fairly between requests.
+ *
+ * <p>
+ *     Each request submits its steps through its own {@link Lane}, with their resolved priorities (see {@link Priority}).
+ *     Whenever a worker is free it takes a step with the highest priority pending in any request, so high priority
+ *     fragments get workers first site-wide. Requests with steps of the same priority take turns, with deficit round
+ *     robin: each one executes up to {@code quantum} steps before the next one, so a page with many placeholders
+ *     doesn't starve the others.
+ * </p>
+ * <p>
+ *     The pool only provides threads: for each step a task is given to it, which executes whatever step is the next
+ *     one when it runs. When the pool rejects it, the submitting thread executes the next step itself.
+ * </p>
+ */
+public class PriorityScheduler {
+
+    /**
+     * Steps of one request with the same priority, waiting for their turn.
+     */
+    private static final class Flow {
+        private final Lane lane;
+        private final int priority;
+        private final Deque<Runnable> tasks = new ArrayDeque<>();
+        /**
+         * Steps the request may still execute in its current turn.
+         */
+        private int deficit;
+
+        private Flow(final Lane lane, final int priority) {
+            this.lane = lane;
+            this.priority = priority;
+        }
+    }
+
+    private final Executor workers;
+    private final int quantum;
+    /**
+     * Flows with pending steps by priority, highest first, each one in the order of their turns.
+     */
+    private final TreeMap<Integer, Deque<Flow>> levels = new TreeMap<>(Comparator.reverseOrder());
+
+    public PriorityScheduler(final Executor workers) {
+        this(workers, 1);
+    }
+
+    /**
+     * @param workers Pool whose threads execute the steps, like one built by {@link ExecutorBuilder}.
+     * @param quantum Number of steps with the same priority a request executes before another request's turn.
+     */
+    public PriorityScheduler(final Executor workers, final int quantum) {
+        if (quantum < 1) {
+            throw new IllegalArgumentException("Quantum must be positive: " + quantum);
+        }
+        this.workers = workers;
+        this.quantum = quantum;
+    }
+
+    /**
+     * Creates the lane of a request.
+     */
+    public Lane lane() {
+        return new Lane();
+    }
+
+    /**
+     * Steps submitted by one request, which are scheduled fairly against the other lanes.
+     */
+    public final class Lane implements Executor {
+        private final Map<Integer, Flow> flows = new HashMap<>();
+
+        private Lane() {
+        }
+
+        /**
+         * Schedules the task with {@link Priority#DEFAULT_PRIORITY}.
+         */
+        @Override
+        public void execute(final Runnable task) {
+            execute(task, Priority.DEFAULT_PRIORITY);
+        }
+
+        public void execute(final Runnable task, final int priority) {
+            synchronized (PriorityScheduler.this) {
+                Flow flow = flows.get(priority);
+                if (flow == null) {
+                    flow = new Flow(this, priority);
+                    flows.put(priority, flow);
+                    levels.computeIfAbsent(priority, p -> new ArrayDeque<>()).addLast(flow);
+                }
+                flow.tasks.addLast(task);
+            }
+            try {
+                workers.execute(PriorityScheduler.this::runNext);
+            } catch (RejectedExecutionException e) {
+                runNext();
+            }
+        }
+    }
+
+    private void runNext() {
+        final Runnable task = next();
+        if (task != null) {
+            task.run();
+        }
+    }
+
+    /**
+     * Takes the next step of the flow whose turn it is in the highest priority.
+     */
+    private synchronized Runnable next() {
+        final Map.Entry<Integer, Deque<Flow>> level = levels.firstEntry();
+        if (level == null) {
+            return null;
+        }
+        final Deque<Flow> turns = level.getValue();
+        final Flow flow = turns.peekFirst();
+        if (flow.deficit == 0) {
+            flow.deficit = quantum;
+        }
+        final Runnable task = flow.tasks.pollFirst();
+        flow.deficit--;
+        if (flow.tasks.isEmpty()) {
+            //an idle flow loses its turn and its deficit
+            turns.pollFirst();
+            flow.lane.flows.remove(flow.priority);
+            if (turns.isEmpty()) {
+                levels.remove(level.getKey());
+            }
+        } else if (flow.deficit == 0) {
+            turns.addLast(turns.pollFirst());
+        }
+        return task;
+    }
+
+    /**
+     * Number of steps waiting for a worker.
+     */
+    public synchronized int pending() {
+        int pending = 0;
+        for (final Deque<Flow> turns : levels.values()) {
+            for (final Flow flow : turns) {
+                pending += flow.tasks.size();
+            }
+        }
+        return pending;
+    }
+
+}
@@ -12,6 +12,11 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
+import java.util.concurrent.Executor;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.stream.Collectors;
 
 /**
@@ -47,18 +52,37 @@ public class QueuedPipeline implements Pipeline {
     private final List<StepData> data;
     private final StepManager stepManager;
     private final Comparator<DataPriorityTuple> prioritizer;
+    private final Executor executor;
 
     public QueuedPipeline(final StepManager stepManager, final List<StepData> data) {
         this(stepManager, data, DEFAULT_COMPARATOR);
     }
 
     public QueuedPipeline(final StepManager stepManager, final List<StepData> data, final Comparator<DataPriorityTuple> prioritizer) {
+        this(stepManager, data, prioritizer, Runnable::run);
+    }
+
+    /**
+     * @param executor Starts each step after the previous one completes in {@link #executeAsync(StepContext)}.
+     *                 The other constructors start it in the thread which completed the previous one.
+     */
+    public QueuedPipeline(final StepManager stepManager, final List<StepData> data, final Comparator<DataPriorityTuple> prioritizer,
+                          final Executor executor) {
         this.stepManager = stepManager;
         this.data = data;
         this.prioritizer = prioritizer;
+        this.executor = executor;
     }
 
     public static Builder<QueuedPipeline> create(final StepManager stepManager) {
+        return create(stepManager, Runnable::run);
+    }
+
+    /**
+     * @param executor Starts each step after the previous one completes in {@link #executeAsync(StepContext)}.
+     *                 The other method starts it in the thread which completed the previous one.
+     */
+    public static Builder<QueuedPipeline> create(final StepManager stepManager, final Executor executor) {
         return new Builder<QueuedPipeline>() {
             private final List<StepData> data = new ArrayList<>();
             @Override
@@ -69,27 +93,88 @@ public class QueuedPipeline implements Pipeline {
 
             @Override
             public QueuedPipeline build() {
-                return new QueuedPipeline(stepManager, data);
+                return new QueuedPipeline(stepManager, data, DEFAULT_COMPARATOR, executor);
             }
         };
     }
 
+    /**
+     * Executes each step in the current thread, waiting for asynchronous ones.
+     */
     @Override
     public PipelineResult execute(final StepContext stepContext) {
-        final ArrayList<DataPriorityTuple> sorted = new ArrayList<>();
-        sorted.addAll(data.stream().map(stepData -> new DataPriorityTuple(stepData, stepContext)).collect(Collectors.toList()));
-        Collections.sort(sorted, prioritizer);
         final PipelineResult.Builder result = PipelineResult.builder();
-        sorted.forEach(tuple -> {
+        for (final DataPriorityTuple tuple : sorted(stepContext)) {
             try {
-                stepManager.execute(tuple.stepData, stepContext);
-                result.success(tuple.stepData);
-            } catch (PipelineException e) {
-                logger.error("Failed to execute step.", e);
-                result.error(tuple.stepData, e);
+                start(stepManager, tuple.stepData, stepContext).toCompletableFuture().join();
+                record(result, tuple, null);
+            } catch (RuntimeException e) {
+                record(result, tuple, e);
             }
-        });
+        }
         return result.build();
     }
 
+    /**
+     * Each step starts in the executor when the previous one completes, so asynchronous steps don't hold threads
+     * while waiting, and blocking steps never run in threads of asynchronous clients.
+     * When the executor rejects a step, it's started by the thread which completed the previous one.
+     */
+    @Override
+    public CompletionStage<PipelineResult> executeAsync(final StepContext stepContext) {
+        final Executor fallback = task -> {
+            try {
+                executor.execute(task);
+            } catch (RejectedExecutionException e) {
+                task.run();
+            }
+        };
+        final PipelineResult.Builder result = PipelineResult.builder();
+        CompletionStage<Void> chain = CompletableFuture.completedFuture(null);
+        for (final DataPriorityTuple tuple : sorted(stepContext)) {
+            chain = chain.thenComposeAsync(previous -> start(stepManager, tuple.stepData, stepContext)
+                    .handle((done, error) -> {
+                        record(result, tuple, error);
+                        return null;
+                    }), fallback);
+        }
+        return chain.thenApply(done -> result.build());
+    }
+
+    private List<DataPriorityTuple> sorted(final StepContext stepContext) {
+        final ArrayList<DataPriorityTuple> sorted = new ArrayList<>();
+        sorted.addAll(data.stream().map(stepData -> new DataPriorityTuple(stepData, stepContext)).collect(Collectors.toList()));
+        Collections.sort(sorted, prioritizer);
+        return sorted;
+    }
+
+    private static void record(final PipelineResult.Builder result, final DataPriorityTuple tuple, final Throwable error) {
+        if (error == null) {
+            result.success(tuple.stepData);
+        } else {
+            logger.error("Failed to execute step.", cause(error));
+            result.error(tuple.stepData, cause(error));
+        }
+    }
+
+    /**
+     * Starts a step, turning unexpected exceptions into a failed stage.
+     */
+    static CompletionStage<Void> start(final StepManager stepManager, final StepData stepData, final StepContext stepContext) {
+        try {
+            return stepManager.executeAsync(stepData, stepContext);
+        } catch (RuntimeException e) {
+            final CompletableFuture<Void> failure = new CompletableFuture<>();
+            failure.completeExceptionally(e);
+            return failure;
+        }
+    }
+
+    /**
+     * Actual failure of a step, without the wrapper added by stages depending on it.
+     */
+    static Throwable cause(final Throwable error) {
+        return error instanceof CompletionException && error.getCause() != null ? error.getCause() : error;
+    }
+
 }
@@ -0,0 +1,137 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.luizricardo.warppipe.api.Pipeline;
+import org.luizricardo.warppipe.api.PipelineResult;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
+import org.luizricardo.warppipe.api.StepManager;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.function.Supplier;
+
+/**
+ * Executes each {@link org.luizricardo.warppipe.api.Step} on its own virtual thread, available since Java 21, so
+ * steps blocked on backend calls don't hold threads of a sized pool.
+ *
+ * <p>
+ *     Each execution has its own executor, which works as a scope: {@link #execute(StepContext)} waits for all steps
+ *     and, when it returns or is interrupted, the executor is shut down, so no step outlives the request.
+ *     The executor is obtained by reflection, so the library still runs on Java 8, where {@link #available()} is false.
+ * </p>
+ * <p>
+ *     Like in {@link ConcurrentPipeline}, each step renders into a private buffer and the whole fragment is written
+ *     as soon as the step completes.
+ * </p>
+ */
+public class VirtualThreadPipeline implements Pipeline {
+
+    private static final Method NEW_VIRTUAL_THREAD_EXECUTOR = virtualThreadExecutorFactory();
+
+    private final StepManager stepManager;
+    private final List<StepData> data;
+    private final Supplier<ExecutorService> scopes;
+
+    /**
+     * @throws IllegalStateException If virtual threads are not {@link #available()}.
+     */
+    public VirtualThreadPipeline(final StepManager stepManager, final List<StepData> data) {
+        this(stepManager, data, VirtualThreadPipeline::newVirtualThreadExecutor);
+        if (!available()) {
+            throw new IllegalStateException("Virtual threads require Java 21 or later");
+        }
+    }
+
+    /**
+     * @param scopes Creates the executor of each execution, which is shut down by the pipeline.
+     */
+    VirtualThreadPipeline(final StepManager stepManager, final List<StepData> data, final Supplier<ExecutorService> scopes) {
+        this.stepManager = stepManager;
+        this.data = data;
+        this.scopes = scopes;
+    }
+
+    /**
+     * Whether the running JVM supports virtual threads.
+     */
+    public static boolean available() {
+        return NEW_VIRTUAL_THREAD_EXECUTOR != null;
+    }
+
+    private static Method virtualThreadExecutorFactory() {
+        try {
+            return Executors.class.getMethod("newVirtualThreadPerTaskExecutor");
+        } catch (NoSuchMethodException e) {
+            return null;
+        }
+    }
+
+    private static ExecutorService newVirtualThreadExecutor() {
+        try {
+            return (ExecutorService) NEW_VIRTUAL_THREAD_EXECUTOR.invoke(null);
+        } catch (ReflectiveOperationException e) {
+            throw new IllegalStateException("Cannot create virtual threads", e);
+        }
+    }
+
+    public static Builder<VirtualThreadPipeline> create(final StepManager stepManager) {
+        return new Builder<VirtualThreadPipeline>() {
+            private final List<StepData> data = new ArrayList<>();
+            @Override
+            public Builder<VirtualThreadPipeline> include(final StepData stepData) {
+                data.add(stepData);
+                return this;
+            }
+
+            @Override
+            public VirtualThreadPipeline build() {
+                return new VirtualThreadPipeline(stepManager, data);
+            }
+        };
+    }
+
+    @Override
+    public PipelineResult execute(final StepContext context) {
+        final PipelineResult.Builder result = PipelineResult.builder();
+        final ExecutorService scope = scopes.get();
+        try {
+            final List<Future<?>> futures = new ArrayList<>();
+            for (final StepData stepData : data) {
+                futures.add(scope.submit(() -> {
+                    final ConcurrentPipeline.FragmentWriter fragment = new ConcurrentPipeline.FragmentWriter();
+                    try {
+                        stepManager.execute(stepData, StepContext.create(fragment, context.request()));
+                        synchronized (result) {
+                            result.success(stepData);
+                        }
+                    } catch (PipelineException e) {
+                        synchronized (result) {
+                            result.error(stepData, e);
+                        }
+                    } finally {
+                        fragment.writeTo(context.writer());
+                    }
+                    return null;
+                }));
+            }
+            for (final Future<?> future : futures) {
+                future.get();
+            }
+            return result.build();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new RuntimeException("InterruptedException", e);
+        } catch (ExecutionException e) {
+            throw new RuntimeException("Unexpected error executing steps", e.getCause());
+        } finally {
+            //steps still running are interrupted, like when a structured scope is closed
+            scope.shutdownNow();
+        }
+    }
+
+}
@@ -1,6 +1,7 @@
 package org.luizricardo.warppipe.pipeline.step;
 
 
+import org.luizricardo.warppipe.api.AsyncStep;
 import org.luizricardo.warppipe.api.Step;
 import org.luizricardo.warppipe.api.StepContext;
 import org.luizricardo.warppipe.api.StepData;
@@ -9,10 +10,14 @@ import org.luizricardo.warppipe.pipeline.PipelineException;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.IOException;
 import java.util.Collections;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.CompletionStage;
 import java.util.concurrent.ConcurrentHashMap;
 
 /**
@@ -40,6 +45,46 @@ public class DefaultStepManager implements StepManager {
         executeStep(resolveStep(stepData), stepData, context);
     }
 
+    /**
+     * Composes {@link AsyncStep}s without blocking, writing their fragments when complete.
+     * Blocking steps are executed in the current thread.
+     */
+    @Override
+    public CompletionStage<Void> executeAsync(final StepData stepData, final StepContext context) {
+        final CompletableFuture<Void> failure = new CompletableFuture<>();
+        final Step step;
+        try {
+            step = resolveStep(stepData);
+        } catch (PipelineException e) {
+            failure.completeExceptionally(e);
+            return failure;
+        }
+        if (!(step instanceof AsyncStep)) {
+            return StepManager.super.executeAsync(stepData, context);
+        }
+        final CompletionStage<? extends CharSequence> fragment;
+        try {
+            fragment = ((AsyncStep) step).executeAsync(stepData, context);
+        } catch (Throwable e) {
+            failure.completeExceptionally(stepException(step, stepData, e));
+            return failure;
+        }
+        return fragment.handle((content, error) -> {
+            if (error != null) {
+                throw new CompletionException(stepException(step, stepData,
+                        error instanceof CompletionException && error.getCause() != null ? error.getCause() : error));
+            }
+            try {
+                if (content != null) {
+                    context.writer().append(content);
+                }
+            } catch (IOException e) {
+                throw new CompletionException(stepException(step, stepData, e));
+            }
+            return null;
+        });
+    }
+
     @Override
     public Optional<Integer> defaultPriority(final StepData stepData, final StepContext stepContext) throws PipelineException {
         try {
@@ -114,9 +159,16 @@ public class DefaultStepManager implements StepManager {
         try {
             step.execute(stepData, context);
         } catch (Throwable e) {
-            logger.error("Error executing step.", e);
-            throw new PipelineException(String.format("Exception when executing step '%s': %s", step.getClass().getName(), e.getLocalizedMessage()), e, stepData);
+            throw stepException(step, stepData, e);
         }
     }
 
+    /**
+     * Logs an error of a step and wraps it into the proper exception.
+     */
+    protected PipelineException stepException(final Step step, final StepData stepData, final Throwable e) {
+        logger.error("Error executing step.", e);
+        return new PipelineException(String.format("Exception when executing step '%s': %s", step.getClass().getName(), e.getLocalizedMessage()), e, stepData);
+    }
+
 }
@@ -0,0 +1,97 @@
+package org.luizricardo.warppipe;
+
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Optional;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class CompressingOutputStreamTest {
+
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    @Test
+    public void negotiate() {
+        assertThat(CompressingOutputStream.negotiate(null), is(Optional.empty()));
+        assertThat(CompressingOutputStream.negotiate("identity"), is(Optional.empty()));
+        assertThat(CompressingOutputStream.negotiate("gzip, deflate, br"), is(Optional.of("gzip")));
+        assertThat(CompressingOutputStream.negotiate("deflate, gzip"), is(Optional.of("gzip")));
+        assertThat(CompressingOutputStream.negotiate("deflate"), is(Optional.of("deflate")));
+        assertThat(CompressingOutputStream.negotiate("gzip;q=0.5, deflate"), is(Optional.of("deflate")));
+        assertThat(CompressingOutputStream.negotiate("gzip;q=0, deflate;q=0"), is(Optional.empty()));
+        assertThat(CompressingOutputStream.negotiate("*"), is(Optional.of("gzip")));
+        assertThat(CompressingOutputStream.negotiate("*, gzip;q=0"), is(Optional.of("deflate")));
+        assertThat(CompressingOutputStream.negotiate("X-GZIP"), is(Optional.of("gzip")));
+    }
+
+    @Test
+    public void gzip() throws IOException {
+        final CompressingOutputStream out = new CompressingOutputStream(output, CompressingOutputStream.GZIP);
+        out.write("<html><head></head>".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        //everything written so far can be inflated before the end of the stream
+        final byte[] flushed = output.toByteArray();
+        final Inflater inflater = new Inflater(true);
+        inflater.setInput(flushed, 10, flushed.length - 10);
+        assertThat(inflate(inflater), is("<html><head></head>"));
+        out.write("<body></body></html>".getBytes(StandardCharsets.UTF_8));
+        out.finish();
+        out.finish();
+        assertThat(read(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))),
+                is("<html><head></head><body></body></html>"));
+    }
+
+    @Test
+    public void deflate() throws IOException {
+        final CompressingOutputStream out = new CompressingOutputStream(output, CompressingOutputStream.DEFLATE);
+        out.write("<html><head></head>".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        final Inflater inflater = new Inflater();
+        inflater.setInput(output.toByteArray());
+        assertThat(inflate(inflater), is("<html><head></head>"));
+        out.write('!');
+        out.finish();
+        assertThat(read(new InflaterInputStream(new ByteArrayInputStream(output.toByteArray()))),
+                is("<html><head></head>!"));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterFinish() throws IOException {
+        final CompressingOutputStream out = new CompressingOutputStream(output, CompressingOutputStream.GZIP);
+        out.finish();
+        out.write('!');
+    }
+
+    static String inflate(final Inflater inflater) {
+        try {
+            final byte[] buffer = new byte[1024];
+            final int length = inflater.inflate(buffer);
+            return new String(Arrays.copyOf(buffer, length), StandardCharsets.UTF_8);
+        } catch (java.util.zip.DataFormatException e) {
+            throw new AssertionError(e);
+        } finally {
+            inflater.end();
+        }
+    }
+
+    static String read(final InputStream in) throws IOException {
+        final ByteArrayOutputStream result = new ByteArrayOutputStream();
+        final byte[] buffer = new byte[1024];
+        int length;
+        while ((length = in.read(buffer)) > 0) {
+            result.write(buffer, 0, length);
+        }
+        return new String(result.toByteArray(), StandardCharsets.UTF_8);
+    }
+
+}
@@ -3,13 +3,22 @@ package org.luizricardo.warppipe;
 
 import org.junit.Assert;
 import org.junit.Test;
+import org.luizricardo.warppipe.decoder.StreamDecoder;
 import org.luizricardo.warppipe.decoder.StreamDecoderBuilder;
+import org.luizricardo.warppipe.decoder.StreamDecoderPool;
+import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
 import org.luizricardo.warppipe.fakes.FakeHttpServletResponse;
+import org.luizricardo.warppipe.listener.StreamListener;
+import org.luizricardo.warppipe.matcher.HtmlCloseTagStreamMatcher;
 import org.luizricardo.warppipe.matcher.TextStreamMatcher;
 
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 public class DecodingHttpServletResponseTest {
 
@@ -32,6 +41,133 @@ public class DecodingHttpServletResponseTest {
         Assert.assertEquals("Hello universe!", new String(output.toByteArray(), StandardCharsets.UTF_8));
     }
 
+    @Test
+    public void streamPrint() throws IOException {
+        DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(response, StandardCharsets.UTF_8,
+                builder -> builder.bind(TextStreamMatcher.forText("mundo", false), c -> c.clear().output().write("universo")).build());
+        decodingResponse.getOutputStream().print("Olá mundo!");
+        Assert.assertEquals("Olá universo!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void streamCloseWritesPendingBuffer() throws IOException {
+        DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(response, StandardCharsets.UTF_8,
+                builder -> builder.bind(TextStreamMatcher.forText("world", false), c -> c.clear().output().write("universe")).build());
+        decodingResponse.getOutputStream().write("Hello wor".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("Hello ", new String(output.toByteArray(), StandardCharsets.UTF_8));
+        decodingResponse.getOutputStream().close();
+        Assert.assertEquals("Hello wor", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void finishWritesPendingBufferAndReleasesDecoder() throws IOException {
+        StreamDecoderPool pool = new StreamDecoderPool(StreamDecoder.template()
+                .bind(TextStreamMatcher.forText("world", false), c -> c.clear().output().write(c.attachment().get().toString()))
+                .build(), 1);
+        DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(null, response, StandardCharsets.UTF_8, pool, "universe");
+        decodingResponse.getOutputStream().write("Hello world! Hello wor".getBytes(StandardCharsets.UTF_8));
+        decodingResponse.finish();
+        Assert.assertEquals("Hello universe! Hello wor", new String(output.toByteArray(), StandardCharsets.UTF_8));
+
+        FakeHttpServletResponse response2 = new FakeHttpServletResponse();
+        DecodingHttpServletResponse decodingResponse2 = new DecodingHttpServletResponse(null, response2, StandardCharsets.UTF_8, pool, "people");
+        decodingResponse2.getOutputStream().write("ld, world!".getBytes(StandardCharsets.UTF_8));
+        decodingResponse2.finish();
+        Assert.assertEquals("ld, people!", new String(response2.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    DecodingHttpServletResponse gatedResponse(FakeHttpServletRequest request) {
+        return new DecodingHttpServletResponse(request, response, StandardCharsets.UTF_8,
+                new StreamDecoderPool(StreamDecoder.template()
+                        .bind(TextStreamMatcher.forText("world", false), c -> c.clear().output().write("universe"))
+                        .build(), 0),
+                null);
+    }
+
+    @Test
+    public void htmlIsDecoded() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.setContentType("text/html; charset=UTF-8");
+        Assert.assertNotSame(response.getOutputStream(), decodingResponse.getOutputStream());
+        decodingResponse.getOutputStream().write("Hello world!".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("Hello universe!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void otherContentTypesAreNotDecoded() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.setContentType("application/json");
+        Assert.assertSame(response.getOutputStream(), decodingResponse.getOutputStream());
+        Assert.assertSame(response.getWriter(), decodingResponse.getWriter());
+    }
+
+    @Test
+    public void errorStatusIsNotDecoded() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.setContentType("text/html");
+        decodingResponse.setStatus(404);
+        Assert.assertSame(response.getOutputStream(), decodingResponse.getOutputStream());
+    }
+
+    @Test
+    public void skipAttributeDisablesDecoding() throws IOException {
+        FakeHttpServletRequest request = new FakeHttpServletRequest();
+        request.setAttribute(DecodingHttpServletResponse.SKIP_DECODING_ATTRIBUTE, true);
+        Assert.assertSame(response.getOutputStream(), gatedResponse(request).getOutputStream());
+    }
+
+    @Test
+    public void statusSetAfterGettingWriterIsCheckedOnFirstWrite() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.setContentType("text/html");
+        decodingResponse.getWriter();
+        decodingResponse.setStatus(500);
+        decodingResponse.getWriter().write("Hello world!");
+        decodingResponse.getWriter().flush();
+        decodingResponse.finish();
+        Assert.assertEquals("Hello world!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void statusSetAfterGettingStreamIsCheckedOnFirstWrite() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.setContentType("text/html");
+        decodingResponse.getOutputStream();
+        decodingResponse.setStatus(404);
+        decodingResponse.getOutputStream().write("Hello world!".getBytes(StandardCharsets.UTF_8));
+        decodingResponse.finish();
+        Assert.assertEquals("Hello world!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void contentTypeSetAfterGettingStreamIsCheckedOnFirstWrite() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.getOutputStream();
+        decodingResponse.setContentType("text/plain");
+        decodingResponse.getOutputStream().write("Hello world!".getBytes(StandardCharsets.UTF_8));
+        decodingResponse.finish();
+        Assert.assertEquals("Hello world!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void contentTypeSetAfterGettingWriterIsCheckedOnFirstWrite() throws IOException {
+        DecodingHttpServletResponse decodingResponse = gatedResponse(new FakeHttpServletRequest());
+        decodingResponse.getWriter();
+        decodingResponse.setContentType("application/xhtml+xml");
+        decodingResponse.getWriter().write("Hello world!");
+        decodingResponse.getWriter().flush();
+        Assert.assertEquals("Hello universe!", new String(output.toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void htmlContentTypes() {
+        Assert.assertTrue(DecodingHttpServletResponse.isHtml("text/html"));
+        Assert.assertTrue(DecodingHttpServletResponse.isHtml("TEXT/HTML ;charset=ISO-8859-1"));
+        Assert.assertTrue(DecodingHttpServletResponse.isHtml("application/xhtml+xml"));
+        Assert.assertFalse(DecodingHttpServletResponse.isHtml("text/plain"));
+        Assert.assertFalse(DecodingHttpServletResponse.isHtml("image/png"));
+    }
+
     @Test
     public void writer() throws IOException {
         DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(response, StandardCharsets.UTF_8,
@@ -50,4 +186,48 @@ public class DecodingHttpServletResponseTest {
         Assert.assertEquals("Hello universe!", new String(output.toByteArray(), StandardCharsets.UTF_8));
     }
 
+    @Test
+    public void compressedStreamFlushesAfterHead() throws IOException {
+        FakeHttpServletRequest request = new FakeHttpServletRequest().header("Accept-Encoding", "gzip");
+        StreamDecoderPool pool = new StreamDecoderPool(StreamDecoder.template()
+                .bindOnce(HtmlCloseTagStreamMatcher.forTag("head"), StreamListener.flushListener())
+                .build(), 0);
+        DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(request, response,
+                StandardCharsets.UTF_8, pool, null, true);
+        decodingResponse.getOutputStream().write("<html><head></head>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertEquals("gzip", response.getHeader("Content-Encoding"));
+        //the head is sent before the body is written, without an explicit flush, up to the matched close tag
+        final byte[] flushed = output.toByteArray();
+        Assert.assertTrue(flushed.length > 10);
+        Inflater inflater = new Inflater(true);
+        inflater.setInput(flushed, 10, flushed.length - 10);
+        Assert.assertEquals("<html><head>", CompressingOutputStreamTest.inflate(inflater));
+        decodingResponse.getOutputStream().write("<body></body></html>".getBytes(StandardCharsets.UTF_8));
+        decodingResponse.finish();
+        Assert.assertEquals("<html><head></head><body></body></html>",
+                CompressingOutputStreamTest.read(new GZIPInputStream(new ByteArrayInputStream(output.toByteArray()))));
+    }
+
+    @Test
+    public void compressedWriterFlushesEarly() throws IOException {
+        FakeHttpServletRequest request = new FakeHttpServletRequest().header("Accept-Encoding", "deflate");
+        StreamDecoderPool pool = new StreamDecoderPool(StreamDecoder.template()
+                .bind(TextStreamMatcher.forText("world", false), c -> c.clear().output().write("universe"))
+                .build(), 0);
+        DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(request, response,
+                StandardCharsets.UTF_8, pool, null, true);
+        decodingResponse.setContentLength(100);
+        decodingResponse.getWriter().write("Hello world");
+        decodingResponse.getWriter().flush();
+        Assert.assertEquals("deflate", response.getHeader("Content-Encoding"));
+        Assert.assertFalse(response.containsHeader("Content-Length"));
+        Inflater inflater = new Inflater();
+        inflater.setInput(output.toByteArray());
+        Assert.assertEquals("Hello universe", CompressingOutputStreamTest.inflate(inflater));
+        decodingResponse.getWriter().write("!");
+        decodingResponse.finish();
+        Assert.assertEquals("Hello universe!",
+                CompressingOutputStreamTest.read(new InflaterInputStream(new ByteArrayInputStream(output.toByteArray()))));
+    }
+
 }
@@ -7,6 +7,7 @@ import org.luizricardo.warppipe.fakes.FakeFilterConfig;
 import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
 import org.luizricardo.warppipe.fakes.FakeHttpServletResponse;
 
+import javax.servlet.ServletException;
 import javax.servlet.ServletOutputStream;
 import java.io.IOException;
 import java.nio.charset.StandardCharsets;
@@ -37,6 +38,30 @@ public class DefaultWarpFilterTest {
         assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
     }
 
+    @Test
+    public void routes() throws Exception {
+        filter.init(new FakeFilterConfig()
+                .param("steps", "text=org.luizricardo.warppipe.pipeline.step.TextStep")
+                .param("routes", "static, heavy")
+                .param("route.static.patterns", "/static/* *.css")
+                .param("route.static.bypass", "true")
+                .param("route.heavy.patterns", "/heavy/*")
+                .param("route.heavy.buffer-limit", "256")
+                .param("route.heavy.pipeline", "concurrent"));
+        request.path("/static", "/page.html");
+        doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body>");
+        assertEquals("<body>bla <placeholder id=\"text\"/></body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        request.path("/heavy", "/page.html");
+        response = new FakeHttpServletResponse();
+        doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body>");
+        assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test(expected = ServletException.class)
+    public void routeWithoutPatterns() throws Exception {
+        filter.init(new FakeFilterConfig().param("routes", "static"));
+    }
+
     void doFilterWithOutputStream(final String content) throws Exception {
         filter.doFilter(request, response, FakeFilterChain.of((req, res) -> {
             try {
@@ -0,0 +1,155 @@
+package org.luizricardo.warppipe;
+
+import org.junit.Test;
+import org.luizricardo.warppipe.decoder.StreamDecoder;
+import org.luizricardo.warppipe.decoder.StreamDecoderPool;
+import org.luizricardo.warppipe.fakes.FakeHttpServletResponse;
+import org.luizricardo.warppipe.fakes.FakeServletOutputStream;
+import org.luizricardo.warppipe.matcher.TextStreamMatcher;
+
+import javax.servlet.ServletOutputStream;
+import javax.servlet.WriteListener;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class NonBlockingServletOutputStreamTest {
+
+    FakeServletOutputStream container = new FakeServletOutputStream();
+    NonBlockingServletOutputStream out = new NonBlockingServletOutputStream(container);
+    List<String> events = new ArrayList<>();
+
+    WriteListener listener = new WriteListener() {
+        @Override
+        public void onWritePossible() {
+            events.add("writePossible");
+        }
+
+        @Override
+        public void onError(Throwable t) {
+            events.add("error");
+        }
+    };
+
+    @Test
+    public void blockingUntilListenerIsSet() throws IOException {
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        assertThat(out.nonBlocking(), is(false));
+        assertThat(container.getOutput().toString("UTF-8"), is("abc"));
+        assertThat(container.getFlushes(), is(1));
+    }
+
+    @Test
+    public void writesWhileReady() throws IOException {
+        out.setWriteListener(listener);
+        container.ready(true);
+        assertThat(events, is(Arrays.asList("writePossible")));
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        assertThat(out.queuedBuffers(), is(0));
+        assertThat(container.getOutput().toString("UTF-8"), is("abc"));
+    }
+
+    @Test
+    public void queuesUntilContainerIsReady() throws IOException {
+        out.setWriteListener(listener);
+        container.ready(false);
+        out.write('a');
+        out.write("bc".getBytes(StandardCharsets.UTF_8));
+        out.flush();
+        assertThat(out.queuedBuffers(), is(1));
+        assertThat(out.isReady(), is(false));
+        assertThat(container.getOutput().size(), is(0));
+        assertThat(container.getFlushes(), is(0));
+        container.ready(true);
+        assertThat(out.queuedBuffers(), is(0));
+        assertThat(container.getOutput().toString("UTF-8"), is("abc"));
+        assertThat(container.getFlushes(), is(1));
+        //the listener is called back once the queue is drained
+        assertThat(events, is(Arrays.asList("writePossible")));
+    }
+
+    @Test
+    public void completeRightAfterReady() throws IOException {
+        out.setWriteListener(listener);
+        container.ready(false);
+        out.write("abc".getBytes(StandardCharsets.UTF_8));
+        assertThat(out.isReady(), is(false));
+        container.ready(true);
+        assertThat(out.isReady(), is(true));
+        //the application may complete the request now, so nothing can be left in the queue
+        assertThat(out.queuedBuffers(), is(0));
+        assertThat(container.getOutput().toString("UTF-8"), is("abc"));
+    }
+
+    @Test
+    public void backpressure() throws IOException {
+        out.setWriteListener(listener);
+        container.ready(false);
+        final byte[] bytes = new byte[NonBlockingServletOutputStream.BUFFER_SIZE + 1];
+        Arrays.fill(bytes, (byte) 'x');
+        out.write(bytes);
+        assertThat(out.queuedBuffers(), is(2));
+        assertThat(out.isReady(), is(false));
+        container.ready(true);
+        assertThat(container.getOutput().size(), is(bytes.length));
+        assertThat(events, is(Arrays.asList("writePossible")));
+        assertThat(out.isReady(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void boundedQueue() throws IOException {
+        final NonBlockingServletOutputStream out = new NonBlockingServletOutputStream(container, 2);
+        out.setWriteListener(listener);
+        container.ready(false);
+        out.write(new byte[NonBlockingServletOutputStream.BUFFER_SIZE * 2]);
+        assertThat(out.isReady(), is(false));
+        //the application ignores isReady() and the queue is full
+        out.write('x');
+    }
+
+    @Test
+    public void closeAfterDrained() throws IOException {
+        out.setWriteListener(listener);
+        container.ready(false);
+        out.write('a');
+        out.close();
+        assertThat(container.isClosed(), is(false));
+        assertThat(out.isReady(), is(false));
+        container.ready(true);
+        assertThat(container.getOutput().toString("UTF-8"), is("a"));
+        assertThat(container.isClosed(), is(true));
+    }
+
+    @Test(expected = IOException.class)
+    public void writeAfterClose() throws IOException {
+        out.setWriteListener(listener);
+        out.close();
+        out.write('a');
+    }
+
+    @Test
+    public void decodedResponse() throws IOException {
+        final FakeHttpServletResponse response = new FakeHttpServletResponse();
+        final FakeServletOutputStream container = (FakeServletOutputStream) response.getOutputStream();
+        final StreamDecoderPool pool = new StreamDecoderPool(StreamDecoder.template()
+                .bind(TextStreamMatcher.forText("world", false), c -> c.clear().output().write("universe"))
+                .build(), 0);
+        final DecodingHttpServletResponse decodingResponse = new DecodingHttpServletResponse(null, response,
+                StandardCharsets.UTF_8, pool, null);
+        final ServletOutputStream stream = decodingResponse.getOutputStream();
+        stream.setWriteListener(listener);
+        container.ready(false);
+        stream.write("Hello world!".getBytes(StandardCharsets.UTF_8));
+        assertThat(container.getOutput().size(), is(0));
+        assertThat(stream.isReady(), is(false));
+        container.ready(true);
+        assertThat(container.getOutput().toString("UTF-8"), is("Hello universe!"));
+    }
+
+}
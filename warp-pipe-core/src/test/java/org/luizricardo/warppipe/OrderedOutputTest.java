@@ -0,0 +1,122 @@
+package org.luizricardo.warppipe;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.StringWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class OrderedOutputTest {
+
+    @Test
+    public void withoutSlots() throws IOException {
+        final StringWriter original = new StringWriter();
+        final Writer writer = OrderedOutput.forWriter(original).writer();
+        writer.write("abc");
+        assertThat(original.toString(), is("abc"));
+    }
+
+    @Test
+    public void slotsAreWrittenInOrder() throws IOException {
+        final StringWriter original = new StringWriter();
+        final OrderedOutput output = OrderedOutput.forWriter(original);
+        final Writer writer = output.writer();
+        writer.write("a");
+        final OrderedOutput.Slot first = output.open();
+        writer.write("b");
+        final OrderedOutput.Slot second = output.open();
+        writer.write("c");
+        //the second slot is filled first, but it's held back until the first is closed
+        second.writer().write("2");
+        second.close();
+        assertThat(original.toString(), is("a"));
+        first.writer().write("1");
+        assertThat(original.toString(), is("a1"));
+        first.close();
+        assertThat(original.toString(), is("a1b2c"));
+        writer.write("d");
+        assertThat(original.toString(), is("a1b2cd"));
+    }
+
+    @Test
+    public void slotsWithStream() throws IOException {
+        final ByteArrayOutputStream original = new ByteArrayOutputStream();
+        final OrderedOutput output = OrderedOutput.forOutputStream(original, StandardCharsets.UTF_8);
+        final OutputStream stream = output.outputStream();
+        stream.write("a".getBytes(StandardCharsets.UTF_8));
+        final OrderedOutput.Slot slot = output.open();
+        stream.write("c".getBytes(StandardCharsets.UTF_8));
+        slot.writer().write("bç");
+        slot.close();
+        assertThat(new String(original.toByteArray(), StandardCharsets.UTF_8), is("abçc"));
+    }
+
+    @Test
+    public void closeIsHeldBack() throws IOException {
+        final AtomicBoolean closed = new AtomicBoolean();
+        final StringWriter original = new StringWriter() {
+            @Override
+            public void close() {
+                closed.set(true);
+            }
+        };
+        final OrderedOutput output = OrderedOutput.forWriter(original);
+        final OrderedOutput.Slot slot = output.open();
+        output.writer().write("b");
+        output.writer().close();
+        assertThat(closed.get(), is(false));
+        slot.writer().write("a");
+        slot.close();
+        assertThat(original.toString(), is("ab"));
+        assertThat(closed.get(), is(true));
+    }
+
+    @Test
+    public void heldContentIsLimited() throws Exception {
+        final StringWriter original = new StringWriter();
+        final OrderedOutput output = OrderedOutput.forWriter(original);
+        final OrderedOutput.Slot slot = output.open(2);
+        final Thread filler = new Thread(() -> {
+            try {
+                Thread.sleep(100);
+                slot.writer().write("1");
+                slot.close();
+            } catch (InterruptedException | IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        filler.start();
+        //holding more than the limit waits for the slot
+        output.writer().write("abc");
+        assertThat(original.toString(), is("1abc"));
+        filler.join();
+    }
+
+    @Test
+    public void awaitWaitsForLimitedSlots() throws Exception {
+        final StringWriter original = new StringWriter();
+        final OrderedOutput output = OrderedOutput.forWriter(original);
+        final OrderedOutput.Slot slot = output.open(100);
+        output.writer().write("b");
+        final Thread filler = new Thread(() -> {
+            try {
+                slot.writer().write("a");
+                slot.close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        });
+        filler.start();
+        output.await();
+        assertThat(original.toString(), is("ab"));
+        filler.join();
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.luizricardo.warppipe;
+
+import org.junit.Test;
+
+import java.util.Optional;
+
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.hamcrest.core.Is.is;
+
+public class PathPatternRouterTest {
+
+    PathPatternRouter<String> router = PathPatternRouter.<String>builder()
+            .add("/index.html", "exact")
+            .add("/static/*", "static")
+            .add("/admin/reports/*", "reports")
+            .add("/admin/*", "admin")
+            .add("*.json", "json")
+            .build();
+
+    @Test
+    public void exactPath() {
+        assertThat(router.route("/index.html"), is(Optional.of("exact")));
+        assertThat(router.route("/index.htm"), is(Optional.empty()));
+    }
+
+    @Test
+    public void prefix() {
+        assertThat(router.route("/static/css/app.css"), is(Optional.of("static")));
+        assertThat(router.route("/static"), is(Optional.of("static")));
+        assertThat(router.route("/statics/app.css"), is(Optional.empty()));
+        assertThat(router.route("/admin/users"), is(Optional.of("admin")));
+        assertThat(router.route("/admin/reports/daily"), is(Optional.of("reports")));
+    }
+
+    @Test
+    public void extension() {
+        assertThat(router.route("/api/users.json"), is(Optional.of("json")));
+        assertThat(router.route("/api.json/users"), is(Optional.empty()));
+    }
+
+    @Test
+    public void firstPatternAddedWins() {
+        assertThat(router.route("/static/data.json"), is(Optional.of("static")));
+        assertThat(router.route("/admin/reports/daily.json"), is(Optional.of("reports")));
+        final PathPatternRouter<String> other = PathPatternRouter.<String>builder()
+                .add("*.json", "json")
+                .add("/admin/*", "admin")
+                .add("/admin/*", "duplicate")
+                .build();
+        assertThat(other.route("/admin/data.json"), is(Optional.of("json")));
+        assertThat(other.route("/admin/data.html"), is(Optional.of("admin")));
+    }
+
+    @Test
+    public void defaultPattern() {
+        final PathPatternRouter<String> other = PathPatternRouter.<String>builder()
+                .add("/public/*", "public")
+                .add("/", "default")
+                .build();
+        assertThat(other.route("/public/page"), is(Optional.of("public")));
+        assertThat(other.route("/private/page"), is(Optional.of("default")));
+        assertThat(other.route(""), is(Optional.of("default")));
+    }
+
+    @Test
+    public void builtRoutersAreNotChangedByTheBuilder() {
+        final PathPatternRouter.Builder<String> builder = PathPatternRouter.<String>builder().add("/admin/*", "admin");
+        final PathPatternRouter<String> built = builder.build();
+        builder.add("/static/*", "static").add("/", "default");
+        assertThat(built.route("/static/app.css"), is(Optional.empty()));
+        assertThat(built.route("/other"), is(Optional.empty()));
+        assertThat(builder.build().route("/static/app.css"), is(Optional.of("static")));
+    }
+
+    @Test
+    public void map() {
+        assertThat(router.map(String::length).route("/static/a"), is(Optional.of(6)));
+        assertThat(PathPatternRouter.builder().build().isEmpty(), is(true));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidPattern() {
+        PathPatternRouter.builder().add("/admin/*.html", "invalid");
+    }
+
+}
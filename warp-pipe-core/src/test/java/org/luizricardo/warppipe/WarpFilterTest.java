@@ -3,19 +3,35 @@ package org.luizricardo.warppipe;
 import org.junit.Before;
 import org.junit.Test;
 import org.luizricardo.warppipe.api.Step;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
 import org.luizricardo.warppipe.fakes.FakeFilterChain;
 import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
 import org.luizricardo.warppipe.fakes.FakeHttpServletResponse;
+import org.luizricardo.warppipe.pipeline.ExecutorBuilder;
+import org.luizricardo.warppipe.pipeline.PriorityScheduler;
 import org.luizricardo.warppipe.pipeline.step.DefaultStepManager;
 import org.luizricardo.warppipe.pipeline.step.TextStep;
 
 import javax.servlet.ServletOutputStream;
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.Writer;
 import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
 
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
 
 public class WarpFilterTest {
 
@@ -44,6 +60,297 @@ public class WarpFilterTest {
         assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
     }
 
+    @Test
+    public void decodersAreReusedByNextRequests() throws Exception {
+        for (int i = 0; i < 3; i++) {
+            response = new FakeHttpServletResponse();
+            doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body> <b");
+            assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body> <b", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        }
+    }
+
+    @Test
+    public void skipDecodingAttribute() throws Exception {
+        request.setAttribute(DecodingHttpServletResponse.SKIP_DECODING_ATTRIBUTE, true);
+        doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body>");
+        assertEquals("<body>bla <placeholder id=\"text\"/></body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void nonHtmlResponse() throws Exception {
+        response.setContentType("text/plain");
+        doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body>");
+        assertEquals("<body>bla <placeholder id=\"text\"/></body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void routes() throws Exception {
+        final WarpFilterConfiguration config = WarpFilterConfiguration.builder(StandardCharsets.UTF_8).build();
+        final ExecutorService executor = ExecutorBuilder.create().build();
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8)
+                .route(config.route().bypass(true).build(), "/static/*", "*.json")
+                .route(config.route().autoDetectPlaceholders(false).build(), "/plain/*")
+                .route(config.route().bufferLimit(32).pipeline(WarpFilterConfiguration.PipelineType.CONCURRENT, 2).build(), "/heavy/*")
+                .build(), new DefaultStepManager(textStep()), null, executor);
+        final String content = "<body>bla <placeholder id=\"text\"/></body>";
+        for (String path : new String[] { "/static/page", "/api/data.json", "/plain/page" }) {
+            request = new FakeHttpServletRequest().path(path, null);
+            response = new FakeHttpServletResponse();
+            doFilterWithOutputStream(content);
+            assertEquals(path, content, new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        }
+        for (String path : new String[] { "/heavy/page", "/page" }) {
+            request = new FakeHttpServletRequest().path(path, null);
+            response = new FakeHttpServletResponse();
+            doFilterWithOutputStream(content);
+            assertEquals(path, "<body>bla <placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        }
+        executor.shutdown();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void concurrentRouteRequiresPipelineExecutor() {
+        final WarpFilterConfiguration config = WarpFilterConfiguration.builder(StandardCharsets.UTF_8).build();
+        new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8)
+                .route(config.route().pipeline(WarpFilterConfiguration.PipelineType.CONCURRENT, 2).build(), "/heavy/*")
+                .build(), new DefaultStepManager(textStep()));
+    }
+
+    @Test
+    public void compressedResponse() throws Exception {
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).compression(true).build(),
+                new DefaultStepManager(textStep()));
+        request.header("Accept-Encoding", "gzip, deflate");
+        doFilterWithOutputStream("<html><head></head><body>bla <placeholder id=\"text\"/></body></html>");
+        assertEquals("gzip", response.getHeader("Content-Encoding"));
+        assertEquals("Accept-Encoding", response.getHeader("Vary"));
+        assertEquals("<html><head></head><body>bla <placeholder id=\"text\"/>NONE</body></html>",
+                CompressingOutputStreamTest.read(new GZIPInputStream(new ByteArrayInputStream(response.getOutput().toByteArray()))));
+    }
+
+    @Test
+    public void compressionNotAccepted() throws Exception {
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).compression(true).build(),
+                new DefaultStepManager(textStep()));
+        doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body>");
+        assertEquals(null, response.getHeader("Content-Encoding"));
+        assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void asyncExecution() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).asyncExecution(true).build(),
+                new DefaultStepManager(textStep()), tasks::add);
+        request.asyncSupported(true);
+        doFilterWithOutputStream("<html><body>bla <placeholder id=\"text\"/></body></html>");
+        //the request thread only renders the page, the end of it waits for the steps
+        assertEquals(1, tasks.size());
+        assertEquals("<html><body>bla <placeholder id=\"text\"/>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        assertFalse(request.getAsyncContext().isCompleted());
+        //the timeout of the container doesn't apply by default
+        assertEquals(0, request.getAsyncContext().getTimeout());
+        //each step is also started by the executor
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+        assertEquals(2, tasks.size());
+        assertEquals("<html><body>bla <placeholder id=\"text\"/>NONE</body></html>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(request.getAsyncContext().isCompleted());
+    }
+
+    @Test
+    public void asyncTimeout() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).asyncExecution(true)
+                .asyncTimeout(1000).build(), new DefaultStepManager(textStep()), tasks::add);
+        request.asyncSupported(true);
+        doFilterWithOutputStream("<html><body>bla <placeholder id=\"text\"/></body></html>");
+        assertEquals(1000, request.getAsyncContext().getTimeout());
+        //the steps didn't complete in time, so the page ends without them
+        request.getAsyncContext().timeout();
+        assertEquals("<html><body>bla <placeholder id=\"text\"/></body></html>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(1, request.getAsyncContext().getCompletions());
+        //steps completing later don't write or complete the request again
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+        assertEquals("<html><body>bla <placeholder id=\"text\"/></body></html>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        assertEquals(1, request.getAsyncContext().getCompletions());
+    }
+
+    @Test
+    public void asyncExecutionWithWriter() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).asyncExecution(true).build(),
+                new DefaultStepManager(textStep()), tasks::add);
+        request.asyncSupported(true);
+        filter.filter(request, response, FakeFilterChain.of((req, res) -> {
+            try {
+                res.getWriter().write("<body>bla <placeholder id=\"text\"/></body> end");
+                res.getWriter().close();
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        for (int i = 0; i < tasks.size(); i++) {
+            tasks.get(i).run();
+        }
+        response.getWriter().flush();
+        assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body> end", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        assertTrue(request.getAsyncContext().isCompleted());
+    }
+
+    @Test
+    public void asyncStartedByApplication() throws Exception {
+        request.asyncSupported(true);
+        filter.filter(request, response, FakeFilterChain.of((req, res) -> {
+            try {
+                req.startAsync(req, res);
+                res.getOutputStream().write("<body>bla <placeholder id=\"text\"/></body> <pla".getBytes(StandardCharsets.UTF_8));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        //the end of the page may still be a placeholder, so it's buffered until the application completes
+        assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body> ", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+        request.getAsyncContext().complete();
+        assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body> <pla", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void asyncNotSupported() throws Exception {
+        final List<Runnable> tasks = new ArrayList<>();
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).asyncExecution(true).build(),
+                new DefaultStepManager(textStep()), tasks::add);
+        doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/></body>");
+        assertTrue(tasks.isEmpty());
+        assertEquals("<body>bla <placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void inPlace() throws Exception {
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).inPlace(true).build(),
+                new DefaultStepManager(textStep()));
+        doFilterWithOutputStream("<body>a <placeholder id=\"text\"/> b <placeholder id=\"text\"/> c</body>");
+        assertEquals("<body>a <placeholder id=\"text\"/>NONE b <placeholder id=\"text\"/>NONE c</body>",
+                new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void inPlaceStepsRunInParallel() throws Exception {
+        final CountDownLatch fastDone = new CountDownLatch(1);
+        final Map<String, Step> steps = new HashMap<>();
+        //the slow step only completes after the one further down the page, so they must run at the same time
+        steps.put("slow", step(writer -> {
+            try {
+                writer.write(fastDone.await(5, TimeUnit.SECONDS) ? "SLOW" : "TIMEOUT");
+            } catch (InterruptedException e) {
+                throw new IOException(e);
+            }
+        }));
+        steps.put("fast", step(writer -> {
+            writer.write("FAST");
+            writer.flush();
+            fastDone.countDown();
+        }));
+        final ExecutorService executor = ExecutorBuilder.create().build();
+        try {
+            filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8).inPlace(true).build(),
+                    new DefaultStepManager(steps), null, executor);
+            filter.filter(request, response, FakeFilterChain.of((req, res) -> {
+                try {
+                    res.getWriter().write("<body>a <placeholder id=\"slow\"/> b <placeholder id=\"fast\"/> c</body>");
+                    res.getWriter().flush();
+                } catch (IOException e) {
+                    throw new RuntimeException(e);
+                }
+            }));
+        } finally {
+            executor.shutdown();
+        }
+        response.getWriter().flush();
+        assertEquals("<body>a <placeholder id=\"slow\"/>SLOW b <placeholder id=\"fast\"/>FAST c</body>",
+                new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void eagerPipeline() throws Exception {
+        final ExecutorService executor = ExecutorBuilder.create().build();
+        try {
+            filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8)
+                    .pipeline(WarpFilterConfiguration.PipelineType.EAGER, 1).build(),
+                    new DefaultStepManager(textStep()), null, executor);
+            doFilterWithOutputStream("<body>bla <placeholder id=\"text\"/> <placeholder id=\"text\"/></body>");
+        } finally {
+            executor.shutdown();
+        }
+        assertEquals("<body>bla <placeholder id=\"text\"/> <placeholder id=\"text\"/>NONENONE</body>",
+                new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void prioritySchedulerWithEagerPipeline() throws Exception {
+        final List<Runnable> workers = new ArrayList<>();
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8)
+                .pipeline(WarpFilterConfiguration.PipelineType.EAGER, 1).build(),
+                new DefaultStepManager(textStep()), null, null, new PriorityScheduler(workers::add));
+        filter.filter(request, response, FakeFilterChain.of((req, res) -> {
+            try {
+                res.getWriter().write("<body><placeholder id=\"text\"/>");
+                res.getWriter().flush();
+                //steps wait for the workers of the scheduler
+                workers.forEach(Runnable::run);
+                res.getWriter().write("</body>");
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }));
+        response.getWriter().flush();
+        assertEquals(1, workers.size());
+        assertEquals("<body><placeholder id=\"text\"/>NONE</body>", new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8));
+    }
+
+    @Test
+    public void eagerStepsAreCancelledWithoutEndOfBody() throws Exception {
+        final List<Runnable> workers = new ArrayList<>();
+        final AtomicInteger executions = new AtomicInteger();
+        final Map<String, Step> steps = new HashMap<>();
+        steps.put("text", step(writer -> executions.incrementAndGet()));
+        filter = new WarpFilter(WarpFilterConfiguration.builder(StandardCharsets.UTF_8)
+                .pipeline(WarpFilterConfiguration.PipelineType.EAGER, 1).build(),
+                new DefaultStepManager(steps), null, null, new PriorityScheduler(workers::add));
+        doFilterWithOutputStream("<body><placeholder id=\"text\"/>");
+        //the pipeline is never executed, so the step doesn't run once a worker is available
+        workers.forEach(Runnable::run);
+        assertEquals(1, workers.size());
+        assertEquals(0, executions.get());
+    }
+
+    interface StepOutput {
+        void write(Writer writer) throws IOException;
+    }
+
+    Step step(final StepOutput output) {
+        return new Step() {
+            @Override
+            public void execute(final StepData data, final StepContext context) throws IOException {
+                output.write(context.writer());
+            }
+
+            @Override
+            public Optional<Integer> defaultPriority(final StepData data, final StepContext context) {
+                return Optional.empty();
+            }
+        };
+    }
+
+    Map<String, Step> textStep() {
+        Map<String, Step> stepMap = new HashMap<>();
+        stepMap.put("text", new TextStep());
+        return stepMap;
+    }
+
     void doFilterWithOutputStream(final String content) throws Exception {
         filter.filter(request, response, FakeFilterChain.of((req, res) -> {
             try {
@@ -3,6 +3,7 @@ package org.luizricardo.warppipe.decoder;
 import org.junit.Test;
 import org.luizricardo.warppipe.listener.StreamListener;
 import org.luizricardo.warppipe.matcher.HtmlCloseTagStreamMatcher;
+import org.luizricardo.warppipe.matcher.HtmlTag;
 import org.luizricardo.warppipe.matcher.HtmlTagStreamMatcher;
 import org.luizricardo.warppipe.matcher.TextStreamMatcher;
 
@@ -98,6 +99,29 @@ public abstract class BaseStreamDecoderTests {
                 "lablalol2bla", "la(bla)lol2(bla)");
     }
 
+    @Test
+    public void overlappingPrefix() throws Exception {
+        writeBytesAndCheckResult(builder.bind(matcher, addPar), "blbla bbla", "bl(bla) b(bla)");
+    }
+
+    @Test
+    public void caseSensitiveMatcherWithCaseInsensitivePrefix() throws Exception {
+        writeBytesAndCheckResult(builder.bind(matcher, addPar), "BLA Bla bla", "BLA Bla (bla)");
+    }
+
+    @Test
+    public void manyMatchers() throws Exception {
+        for (String tag : new String[] { "a", "p", "div", "span", "script", "link", "style" }) {
+            builder.bind(HtmlTagStreamMatcher.forTag(tag + "-x"), context -> context.clear());
+        }
+        for (String text : new String[] { "<!--x-->", "@@marker@@", "blu", "xbla" }) {
+            builder.bind(TextStreamMatcher.forText(text, true), context -> context.clear());
+        }
+        writeBytesAndCheckResult(builder.bind(matcher, addPar).bind(HtmlCloseTagStreamMatcher.forTag("body"), addBraq),
+                "<p>a<!--x--> <div-x id=\"1\">bla<span-x>@@marker@</body>",
+                "<p>a (bla)@@marker@[</body>]");
+    }
+
     @Test
     public void notEnoughBuffer() throws Exception {
         writeBytesAndCheckResult(builder.bufferLimit(2).bind(matcher, addPar),"blblala", "blblala");
@@ -121,6 +145,47 @@ public abstract class BaseStreamDecoderTests {
                 originalHtml, expectedHtml);
     }
 
+    @Test
+    public void parsedTagIsHandedToListener() throws Exception {
+        HtmlTagStreamMatcher placeholderMatcher = HtmlTagStreamMatcher.forTag("placeholder");
+        writeBytesAndCheckResult(builder.bind(placeholderMatcher, context -> {
+                    HtmlTag tag = context.result(HtmlTag.class).get();
+                    context.clear();
+                    context.output().write(tag.attribute("id").get());
+                }),
+                "a<placeholder class='x' id=\"p&amp;1\"/>b", "ap&1b");
+    }
+
+    @Test
+    public void textMatcherHasNoResult() throws Exception {
+        writeBytesAndCheckResult(builder.bind(matcher, context -> context.content().append(context.result().isPresent())),
+                "lablala", "lablafalsela");
+    }
+
+    @Test
+    public void bindOnce() throws Exception {
+        writeBytesAndCheckResult(builder.bindOnce(matcher, addPar), "bla bla bla", "(bla) bla bla");
+    }
+
+    @Test
+    public void bindUntil() throws Exception {
+        TextStreamMatcher stop = TextStreamMatcher.forText("stop", true);
+        writeBytesAndCheckResult(builder.bindUntil(matcher, addPar, stop).bind(stop, addBraq),
+                "bla bla stop bla stop", "(bla) (bla) [stop] bla [stop]");
+    }
+
+    @Test
+    public void passThroughAfterAllBindingsRetired() throws Exception {
+        TextStreamMatcher stop = TextStreamMatcher.forText("stop", true);
+        writeBytesAndCheckResult(builder.bindUntil(matcher, addPar, stop).bindOnce(stop, addBraq),
+                "bla stop bla stop ação blé", "(bla) [stop] bla stop ação blé");
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void bindUntilMatcherNotBound() throws Exception {
+        builder.bindUntil(matcher, addPar, TextStreamMatcher.forText("stop", true)).build();
+    }
+
     abstract void writeBytesAndCheckResult(StreamDecoderBuilder builder, String text, String expected) throws Exception;
     
 }
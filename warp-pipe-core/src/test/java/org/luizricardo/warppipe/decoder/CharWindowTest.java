@@ -0,0 +1,66 @@
+package org.luizricardo.warppipe.decoder;
+
+import org.junit.Test;
+import org.luizricardo.warppipe.listener.MatchingWriter;
+
+import java.io.StringWriter;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class CharWindowTest {
+
+    CharWindow window = new CharWindow(4);
+
+    void append(String text) {
+        for (char c : text.toCharArray()) {
+            window.append(c);
+        }
+    }
+
+    @Test
+    public void appendAndDiscard() {
+        append("abcdef");
+        window.discard(2);
+        assertThat(window.toString(), is("cdef"));
+        assertThat(window.length(), is(4));
+        assertThat(window.charAt(1), is('d'));
+    }
+
+    @Test
+    public void wrapAround() throws Exception {
+        //capacity is 16, so this wraps around several times without growing
+        append("abc");
+        //content ends up at the last two positions and the first one of the array
+        for (int i = 0; i < 11; i++) {
+            append("0123456789");
+            window.discard(10);
+        }
+        assertThat(window.toString(), is("789"));
+
+        StringWriter writer = new StringWriter();
+        window.writeTo(MatchingWriter.forWriter(writer), 3);
+        assertThat(writer.toString(), is("789"));
+
+        StringBuilder suffix = new StringBuilder("x");
+        window.appendSuffix(suffix, 3);
+        assertThat(suffix.toString(), is("x789"));
+    }
+
+    @Test
+    public void growWhenFull() {
+        append("abcdefghijklmno");
+        window.discard(10);
+        append("0123456789012345678901234");
+        assertThat(window.toString(), is("klmno0123456789012345678901234"));
+    }
+
+    @Test
+    public void clear() {
+        append("abc");
+        window.clear();
+        append("d");
+        assertThat(window.toString(), is("d"));
+    }
+
+}
@@ -0,0 +1,54 @@
+package org.luizricardo.warppipe.decoder;
+
+import org.junit.Test;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
+
+public class PrefixAutomatonTest {
+
+    PrefixAutomaton automaton = PrefixAutomaton.compile(new String[] { "<placeholder", "</body", null, "bla", "la", "</head", "Blá" });
+
+    int feed(String text) {
+        int state = PrefixAutomaton.ROOT;
+        for (char c : text.toCharArray()) {
+            state = automaton.next(state, c);
+        }
+        return state;
+    }
+
+    @Test
+    public void findPrefix() {
+        assertArrayEquals(new int[] { 0 }, automaton.matches(feed("<p><placeholder")));
+        assertArrayEquals(new int[] { 1 }, automaton.matches(feed("</b></body")));
+        assertArrayEquals(new int[] { 5 }, automaton.matches(feed("</HEAD")));
+    }
+
+    @Test
+    public void partialPrefix() {
+        int state = feed("abc</bo");
+        assertThat(automaton.depth(state), is(4));
+        assertArrayEquals(new int[0], automaton.matches(state));
+    }
+
+    @Test
+    public void noPrefix() {
+        int state = feed("</p>");
+        assertThat(state, is(PrefixAutomaton.ROOT));
+        assertThat(automaton.depth(state), is(0));
+    }
+
+    @Test
+    public void overlappingPrefixes() {
+        assertArrayEquals(new int[] { 3, 4 }, automaton.matches(feed("bbla")));
+        assertArrayEquals(new int[] { 4 }, automaton.matches(feed("<la")));
+    }
+
+    @Test
+    public void nonAsciiCharacters() {
+        assertArrayEquals(new int[] { 6 }, automaton.matches(feed("blblÁ")));
+        assertThat(automaton.depth(feed("éblé")), is(0));
+    }
+
+}
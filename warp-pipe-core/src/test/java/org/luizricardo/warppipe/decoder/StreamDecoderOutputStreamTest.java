@@ -2,8 +2,13 @@ package org.luizricardo.warppipe.decoder;
 
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Test;
+import org.luizricardo.warppipe.listener.StreamListener;
+import org.luizricardo.warppipe.matcher.HtmlCloseTagStreamMatcher;
+import org.luizricardo.warppipe.matcher.TextStreamMatcher;
 
 import java.io.ByteArrayOutputStream;
+import java.nio.charset.Charset;
 import java.nio.charset.StandardCharsets;
 
 import static org.hamcrest.CoreMatchers.is;
@@ -17,6 +22,141 @@ public class StreamDecoderOutputStreamTest extends BaseStreamDecoderTests {
         builder = StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8);
     }
 
+    @Test
+    public void flushListenerFlushesUnderlyingStream() throws Exception {
+        final int[] flushes = { 0 };
+        final ByteArrayOutputStream output = new ByteArrayOutputStream() {
+            @Override
+            public void flush() {
+                flushes[0]++;
+            }
+        };
+        StreamDecoderOutputStream os = StreamDecoder.forOutputStream(output, StandardCharsets.UTF_8)
+                .bindOnce(HtmlCloseTagStreamMatcher.forTag("head"), StreamListener.flushListener()).build();
+        os.write("<html><head></head>".getBytes(StandardCharsets.UTF_8));
+        Assert.assertThat(flushes[0], is(1));
+        Assert.assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is("<html><head></head>"));
+        os.write("<body></body></html>".getBytes(StandardCharsets.UTF_8));
+        os.close();
+        Assert.assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is("<html><head></head><body></body></html>"));
+    }
+
+    @Test
+    public void trailingHighSurrogateIsReplacedOnClose() throws Exception {
+        StreamDecoderOutputStream os = StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8)
+                .bind(matcher, c -> c.clear().output().write("\uD83D")).build();
+        os.write("a bla".getBytes(StandardCharsets.UTF_8));
+        os.close();
+        Assert.assertThat(baos.toByteArray(), is("a \uD83D".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void trailingHighSurrogateIsReplacedOnFinish() throws Exception {
+        StreamDecoderOutputStream os = StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8)
+                .bind(matcher, c -> c.clear().output().write("\uD83D")).build();
+        os.write("a bla".getBytes(StandardCharsets.UTF_8));
+        os.finish();
+        Assert.assertThat(baos.toByteArray(), is("a \uD83D".getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void writeChunks() throws Exception {
+        writeChunksAndCheckResult(StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8).bind(matcher, addPar),
+                "Olá, bla mundo! éÁñ blá bla €", "Olá, (bla) mundo! éÁñ blá (bla) €");
+    }
+
+    @Test
+    public void writeChunksSplittingMultiByteCharacters() throws Exception {
+        String text = "é€blaé€";
+        for (int chunkSize = 1; chunkSize <= text.getBytes(StandardCharsets.UTF_8).length; chunkSize++) {
+            baos.reset();
+            writeChunksAndCheckResult(StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8).bind(matcher, addBraq),
+                    chunkSize, text, "é€[bla]é€");
+        }
+    }
+
+    @Test
+    public void writeChunksLargerThanDecodingBuffer() throws Exception {
+        StringBuilder text = new StringBuilder();
+        StringBuilder expected = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("ação bla ");
+            expected.append("ação (bla) ");
+        }
+        writeChunksAndCheckResult(StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8).bind(matcher, addPar),
+                text.length() * 2, text.toString(), expected.toString());
+    }
+
+    @Test
+    public void mixSingleBytesAndChunks() throws Exception {
+        StreamDecoderOutputStream os = StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8).bind(matcher, addPar).build();
+        byte[] bytes = "ébla€".getBytes(StandardCharsets.UTF_8);
+        os.write(bytes[0]);
+        os.write(bytes, 1, 3);
+        os.write(bytes[4]);
+        os.write(bytes, 5, bytes.length - 5);
+        os.close();
+        Assert.assertThat(new String(baos.toByteArray(), StandardCharsets.UTF_8), is("é(bla)€"));
+    }
+
+    @Test
+    public void asciiCompatibleCharsets() {
+        Assert.assertThat(StreamDecoderOutputStream.asciiCompatible(StandardCharsets.UTF_8), is(true));
+        Assert.assertThat(StreamDecoderOutputStream.asciiCompatible(StandardCharsets.ISO_8859_1), is(true));
+        Assert.assertThat(StreamDecoderOutputStream.asciiCompatible(StandardCharsets.US_ASCII), is(true));
+        Assert.assertThat(StreamDecoderOutputStream.asciiCompatible(StandardCharsets.UTF_16), is(false));
+        Assert.assertThat(StreamDecoderOutputStream.asciiCompatible(Charset.forName("UTF-32")), is(false));
+    }
+
+    @Test
+    public void bytesOutsideMatchesAreNotDecoded() throws Exception {
+        StreamDecoderOutputStream os = StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8).bind(matcher, addPar).build();
+        byte[] bytes = { (byte) 0xFF, 'b', 'l', 'a', (byte) 0xC3, (byte) 0xFE };
+        os.write(bytes, 0, bytes.length);
+        os.write((byte) 0xFF);
+        os.close();
+        Assert.assertArrayEquals(new byte[] { (byte) 0xFF, '(', 'b', 'l', 'a', ')', (byte) 0xC3, (byte) 0xFE, (byte) 0xFF },
+                baos.toByteArray());
+    }
+
+    @Test
+    public void writeChunksInSingleByteCharset() throws Exception {
+        StreamDecoderOutputStream os = StreamDecoder.forOutputStream(baos, StandardCharsets.ISO_8859_1).bind(matcher, addPar).build();
+        byte[] bytes = "ação blá bla".getBytes(StandardCharsets.ISO_8859_1);
+        os.write(bytes, 0, bytes.length);
+        os.close();
+        Assert.assertThat(new String(baos.toByteArray(), StandardCharsets.ISO_8859_1), is("ação blá (bla)"));
+    }
+
+    @Test
+    public void writeChunksWithNonAsciiMatcher() throws Exception {
+        writeChunksAndCheckResult(StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8)
+                        .bind(TextStreamMatcher.forText("ção", true), addBraq).bind(matcher, addPar),
+                "ação bla", "a[ção] (bla)");
+    }
+
+    @Test
+    public void writeSupplementaryCharacters() throws Exception {
+        String clef = "\uD834\uDD1E";
+        String text = clef + "ção" + clef + "bla" + clef;
+        for (int chunkSize = 1; chunkSize <= text.getBytes(StandardCharsets.UTF_8).length; chunkSize++) {
+            baos.reset();
+            //a non-ASCII matcher makes every character go through the decoder and the encoder
+            writeChunksAndCheckResult(StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8)
+                            .bind(TextStreamMatcher.forText("ção", true), addBraq).bind(matcher, addPar),
+                    chunkSize, text, clef + "[ção]" + clef + "(bla)" + clef);
+        }
+    }
+
+    @Test
+    public void writeChunksAfterAllBindingsRetired() throws Exception {
+        for (int chunkSize = 1; chunkSize <= 20; chunkSize++) {
+            baos.reset();
+            writeChunksAndCheckResult(StreamDecoder.forOutputStream(baos, StandardCharsets.UTF_8)
+                            .bindOnce(TextStreamMatcher.forText("ção", true), addBraq),
+                    chunkSize, "ação ação €", "a[ção] ação €");
+        }
+    }
 
     void writeBytesAndCheckResult(StreamDecoderBuilder builder, String text, String expected) throws Exception {
         StreamDecoderOutputStream os = (StreamDecoderOutputStream) builder.build();
@@ -29,4 +169,19 @@ public class StreamDecoderOutputStreamTest extends BaseStreamDecoderTests {
         Assert.assertThat(result, is(expected));
     }
 
+    void writeChunksAndCheckResult(StreamDecoderBuilder builder, String text, String expected) throws Exception {
+        writeChunksAndCheckResult(builder, 5, text, expected);
+    }
+
+    void writeChunksAndCheckResult(StreamDecoderBuilder builder, int chunkSize, String text, String expected) throws Exception {
+        StreamDecoderOutputStream os = (StreamDecoderOutputStream) builder.build();
+        final byte[] bytes = text.getBytes(StandardCharsets.UTF_8);
+        for (int i = 0; i < bytes.length; i += chunkSize) {
+            os.write(bytes, i, Math.min(chunkSize, bytes.length - i));
+        }
+        os.close();
+        String result = new String(baos.toByteArray(), StandardCharsets.UTF_8);
+        Assert.assertThat(result, is(expected));
+    }
+
 }
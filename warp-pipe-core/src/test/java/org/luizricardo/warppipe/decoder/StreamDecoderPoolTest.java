@@ -0,0 +1,90 @@
+package org.luizricardo.warppipe.decoder;
+
+import org.junit.Test;
+import org.luizricardo.warppipe.matcher.TextStreamMatcher;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.not;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class StreamDecoderPoolTest {
+
+    StreamDecoderTemplate template = StreamDecoder.template()
+            .bind(TextStreamMatcher.forText("bla", true), context -> context.content().append(context.attachment().orElse("")))
+            .build();
+
+    @Test
+    public void reuseReleasedOutputStream() throws Exception {
+        StreamDecoderPool pool = new StreamDecoderPool(template, 1);
+        ByteArrayOutputStream first = new ByteArrayOutputStream();
+        StreamDecoderOutputStream decoder = pool.acquire(first, StandardCharsets.UTF_8, "1");
+        decoder.write("a bla b".getBytes(StandardCharsets.UTF_8));
+        //partial match and incomplete character are discarded on release
+        decoder.write(new byte[] { 'b', 'l', (byte) 0xC3 });
+        pool.release(decoder);
+
+        ByteArrayOutputStream second = new ByteArrayOutputStream();
+        StreamDecoderOutputStream reused = pool.acquire(second, StandardCharsets.UTF_8, "2");
+        assertThat(reused, sameInstance(decoder));
+        reused.write("a blé bla".getBytes(StandardCharsets.UTF_8));
+        reused.finish();
+
+        assertThat(new String(first.toByteArray(), StandardCharsets.UTF_8), is("a bla1 b"));
+        assertThat(new String(second.toByteArray(), StandardCharsets.UTF_8), is("a blé bla2"));
+    }
+
+    @Test
+    public void reuseReleasedWriter() throws Exception {
+        StreamDecoderPool pool = new StreamDecoderPool(template, 1);
+        StringWriter first = new StringWriter();
+        StreamDecoderWriter decoder = pool.acquire(first, "1");
+        decoder.write("a bla bl");
+        pool.release(decoder);
+
+        StringWriter second = new StringWriter();
+        StreamDecoderWriter reused = pool.acquire(second, null);
+        assertThat(reused, sameInstance(decoder));
+        reused.write("a bla");
+        reused.finish();
+
+        assertThat(first.toString(), is("a bla1 "));
+        assertThat(second.toString(), is("a bla"));
+    }
+
+    @Test
+    public void retiredBindingsAreRestoredOnRelease() throws Exception {
+        StreamDecoderPool pool = new StreamDecoderPool(StreamDecoder.template()
+                .bindOnce(TextStreamMatcher.forText("bla", true), context -> context.content().append("!"))
+                .build(), 1);
+        for (int i = 0; i < 2; i++) {
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+            StreamDecoderOutputStream decoder = pool.acquire(output, StandardCharsets.UTF_8, null);
+            decoder.write("bla bla".getBytes(StandardCharsets.UTF_8));
+            decoder.finish();
+            pool.release(decoder);
+            assertThat(new String(output.toByteArray(), StandardCharsets.UTF_8), is("bla! bla"));
+        }
+    }
+
+    @Test
+    public void differentCharsetIsNotReused() throws Exception {
+        StreamDecoderPool pool = new StreamDecoderPool(template, 1);
+        StreamDecoderOutputStream decoder = pool.acquire(new ByteArrayOutputStream(), StandardCharsets.UTF_8, null);
+        pool.release(decoder);
+        assertThat(pool.acquire(new ByteArrayOutputStream(), StandardCharsets.ISO_8859_1, null), not(sameInstance(decoder)));
+    }
+
+    @Test
+    public void noPooling() throws Exception {
+        StreamDecoderPool pool = new StreamDecoderPool(template, 0);
+        StreamDecoderWriter decoder = pool.acquire(new StringWriter(), null);
+        pool.release(decoder);
+        assertThat(pool.acquire(new StringWriter(), null), not(sameInstance(decoder)));
+    }
+
+}
@@ -2,6 +2,11 @@ package org.luizricardo.warppipe.decoder;
 
 import org.junit.Assert;
 import org.junit.Before;
+import org.junit.Test;
+import org.luizricardo.warppipe.matcher.HtmlCloseTagStreamMatcher;
+import org.luizricardo.warppipe.matcher.HtmlTagStreamMatcher;
+import org.luizricardo.warppipe.matcher.MatchingStatus;
+import org.luizricardo.warppipe.matcher.StreamMatcher;
 
 import java.io.StringWriter;
 
@@ -16,6 +21,31 @@ public class StreamDecoderWriterTest extends BaseStreamDecoderTests {
         builder = StreamDecoder.forWriter(writer);
     }
 
+    @Test
+    public void bulkWithoutMatchers() throws Exception {
+        writeBulkAndCheckResult(builder, "lablala éÁñ", "lablala éÁñ");
+    }
+
+    @Test
+    public void bulkSkippingText() throws Exception {
+        writeBulkAndCheckResult(builder.bind(matcher, addPar), "lablalabl bla", "la(bla)labl (bla)");
+    }
+
+    @Test
+    public void bulkWithHtml() throws Exception {
+        writeBulkAndCheckResult(builder
+                        .bind(HtmlTagStreamMatcher.forTag("placeholder"), addBraq)
+                        .bind(HtmlCloseTagStreamMatcher.forTag("body"), addPar),
+                "<html><body><p>Text</p><placeholder id=\"1\"/> <b>ok</b></body></html>",
+                "<html><body><p>Text</p>[<placeholder id=\"1\"/>] <b>ok</b>(</body>)</html>");
+    }
+
+    @Test
+    public void bulkWithMatcherStartingWithAnyCharacter() throws Exception {
+        StreamMatcher anyDigit = sb -> Character.isDigit(sb.charAt(0)) ? MatchingStatus.FULLY : MatchingStatus.NONE;
+        writeBulkAndCheckResult(builder.bind(matcher, addPar).bind(anyDigit, addBraq), "a1bla2", "a[1](bla)[2]");
+    }
+
     void writeBytesAndCheckResult(StreamDecoderBuilder builder, String text, String expected) throws Exception {
         StreamDecoderWriter target = (StreamDecoderWriter) builder.build();
         for (char c : text.toCharArray()) {
@@ -26,4 +56,11 @@ public class StreamDecoderWriterTest extends BaseStreamDecoderTests {
         Assert.assertThat(result, is(expected));
     }
 
+    void writeBulkAndCheckResult(StreamDecoderBuilder builder, String text, String expected) throws Exception {
+        StreamDecoderWriter target = (StreamDecoderWriter) builder.build();
+        target.write(text);
+        target.close();
+        Assert.assertThat(this.writer.toString(), is(expected));
+    }
+
 }
@@ -0,0 +1,114 @@
+package org.luizricardo.warppipe.fakes;
+
+import javax.servlet.AsyncContext;
+import javax.servlet.AsyncEvent;
+import javax.servlet.AsyncListener;
+import javax.servlet.ServletContext;
+import javax.servlet.ServletRequest;
+import javax.servlet.ServletResponse;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+public class FakeAsyncContext implements AsyncContext {
+
+    private final ServletRequest request;
+    private final ServletResponse response;
+    private final List<AsyncListener> listeners = new ArrayList<>();
+    private int completions;
+    private long timeout = 30000;
+
+    public FakeAsyncContext(ServletRequest request, ServletResponse response) {
+        this.request = request;
+        this.response = response;
+    }
+
+    @Override
+    public ServletRequest getRequest() {
+        return request;
+    }
+
+    @Override
+    public ServletResponse getResponse() {
+        return response;
+    }
+
+    @Override
+    public boolean hasOriginalRequestAndResponse() {
+        return false;
+    }
+
+    @Override
+    public void dispatch() {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public void dispatch(String path) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public void dispatch(ServletContext context, String path) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public void complete() {
+        completions++;
+        for (AsyncListener listener : listeners) {
+            try {
+                listener.onComplete(new AsyncEvent(this));
+            } catch (IOException e) {
+                throw new RuntimeException(e);
+            }
+        }
+    }
+
+    @Override
+    public void start(Runnable run) {
+        run.run();
+    }
+
+    @Override
+    public void addListener(AsyncListener listener) {
+        listeners.add(listener);
+    }
+
+    @Override
+    public void addListener(AsyncListener listener, ServletRequest servletRequest, ServletResponse servletResponse) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public <T extends AsyncListener> T createListener(Class<T> clazz) {
+        throw new UnsupportedOperationException("Not implemented");
+    }
+
+    @Override
+    public void setTimeout(long timeout) {
+        this.timeout = timeout;
+    }
+
+    @Override
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * Notifies listeners the timeout expired, like the container.
+     */
+    public void timeout() throws IOException {
+        for (AsyncListener listener : new ArrayList<>(listeners)) {
+            listener.onTimeout(new AsyncEvent(this));
+        }
+    }
+
+    public boolean isCompleted() {
+        return completions > 0;
+    }
+
+    public int getCompletions() {
+        return completions;
+    }
+}
@@ -20,10 +20,36 @@ import java.io.UnsupportedEncodingException;
 import java.security.Principal;
 import java.util.Collection;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Locale;
 import java.util.Map;
+import java.util.TreeMap;
 
 public class FakeHttpServletRequest implements HttpServletRequest {
+
+    private final Map<String, Object> attributes = new HashMap<>();
+    private final Map<String, String> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+    private String servletPath = "";
+    private boolean asyncSupported;
+    private FakeAsyncContext asyncContext;
+    private String pathInfo;
+
+    public FakeHttpServletRequest asyncSupported(final boolean asyncSupported) {
+        this.asyncSupported = asyncSupported;
+        return this;
+    }
+
+    public FakeHttpServletRequest header(final String name, final String value) {
+        headers.put(name, value);
+        return this;
+    }
+
+    public FakeHttpServletRequest path(final String servletPath, final String pathInfo) {
+        this.servletPath = servletPath;
+        this.pathInfo = pathInfo;
+        return this;
+    }
+
     @Override
     public String getAuthType() {
         throw new UnsupportedOperationException("Not implemented");
@@ -41,7 +67,7 @@ public class FakeHttpServletRequest implements HttpServletRequest {
 
     @Override
     public String getHeader(String name) {
-        throw new UnsupportedOperationException("Not implemented");
+        return headers.get(name);
     }
 
     @Override
@@ -66,7 +92,7 @@ public class FakeHttpServletRequest implements HttpServletRequest {
 
     @Override
     public String getPathInfo() {
-        throw new UnsupportedOperationException("Not implemented");
+        return pathInfo;
     }
 
     @Override
@@ -116,7 +142,7 @@ public class FakeHttpServletRequest implements HttpServletRequest {
 
     @Override
     public String getServletPath() {
-        throw new UnsupportedOperationException("Not implemented");
+        return servletPath;
     }
 
     @Override
@@ -186,7 +212,7 @@ public class FakeHttpServletRequest implements HttpServletRequest {
 
     @Override
     public Object getAttribute(String name) {
-        throw new UnsupportedOperationException("Not implemented");
+        return attributes.get(name);
     }
 
     @Override
@@ -281,7 +307,7 @@ public class FakeHttpServletRequest implements HttpServletRequest {
 
     @Override
     public void setAttribute(String name, Object o) {
-        throw new UnsupportedOperationException("Not implemented");
+        attributes.put(name, o);
     }
 
     @Override
@@ -346,22 +372,29 @@ public class FakeHttpServletRequest implements HttpServletRequest {
 
     @Override
     public AsyncContext startAsync(ServletRequest servletRequest, ServletResponse servletResponse) throws IllegalStateException {
-        throw new UnsupportedOperationException("Not implemented");
+        if (!asyncSupported) {
+            throw new IllegalStateException("Async not supported");
+        }
+        asyncContext = new FakeAsyncContext(servletRequest, servletResponse);
+        return asyncContext;
     }
 
     @Override
     public boolean isAsyncStarted() {
-        throw new UnsupportedOperationException("Not implemented");
+        return asyncContext != null;
     }
 
     @Override
     public boolean isAsyncSupported() {
-        throw new UnsupportedOperationException("Not implemented");
+        return asyncSupported;
     }
 
     @Override
-    public AsyncContext getAsyncContext() {
-        throw new UnsupportedOperationException("Not implemented");
+    public FakeAsyncContext getAsyncContext() {
+        if (asyncContext == null) {
+            throw new IllegalStateException("Async not started");
+        }
+        return asyncContext;
     }
 
     @Override
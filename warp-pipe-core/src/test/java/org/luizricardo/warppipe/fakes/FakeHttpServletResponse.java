@@ -6,13 +6,23 @@ import javax.servlet.http.HttpServletResponse;
 import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.io.PrintWriter;
+import java.util.ArrayList;
 import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
 import java.util.Locale;
+import java.util.Map;
+import java.util.TreeMap;
 
 
 public class FakeHttpServletResponse implements HttpServletResponse {
 
+    private int status = SC_OK;
+    private String contentType;
+    private final Map<String, List<String>> headers = new TreeMap<>(String.CASE_INSENSITIVE_ORDER);
+
     private FakeServletOutputStream outputStream = new FakeServletOutputStream();
+    private PrintWriter writer;
 
     @Override
     public void addCookie(Cookie cookie) {
@@ -21,7 +31,7 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public boolean containsHeader(String name) {
-        throw new UnsupportedOperationException("Not implemented");
+        return headers.containsKey(name);
     }
 
     @Override
@@ -46,12 +56,12 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void sendError(int sc, String msg) throws IOException {
-        throw new UnsupportedOperationException("Not implemented");
+        this.status = sc;
     }
 
     @Override
     public void sendError(int sc) throws IOException {
-        throw new UnsupportedOperationException("Not implemented");
+        this.status = sc;
     }
 
     @Override
@@ -71,12 +81,12 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void setHeader(String name, String value) {
-        throw new UnsupportedOperationException("Not implemented");
+        headers.put(name, new ArrayList<>(Collections.singletonList(value)));
     }
 
     @Override
     public void addHeader(String name, String value) {
-        throw new UnsupportedOperationException("Not implemented");
+        headers.computeIfAbsent(name, n -> new ArrayList<>()).add(value);
     }
 
     @Override
@@ -91,42 +101,42 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void setStatus(int sc) {
-        throw new UnsupportedOperationException("Not implemented");
+        this.status = sc;
     }
 
     @Override
     public void setStatus(int sc, String sm) {
-        throw new UnsupportedOperationException("Not implemented");
+        this.status = sc;
     }
 
     @Override
     public int getStatus() {
-        throw new UnsupportedOperationException("Not implemented");
+        return status;
     }
 
     @Override
     public String getHeader(String name) {
-        throw new UnsupportedOperationException("Not implemented");
+        return headers.containsKey(name) ? headers.get(name).get(0) : null;
     }
 
     @Override
     public Collection<String> getHeaders(String name) {
-        throw new UnsupportedOperationException("Not implemented");
+        return headers.getOrDefault(name, Collections.emptyList());
     }
 
     @Override
     public Collection<String> getHeaderNames() {
-        throw new UnsupportedOperationException("Not implemented");
+        return headers.keySet();
     }
 
     @Override
     public String getCharacterEncoding() {
-        throw new UnsupportedOperationException("Not implemented");
+        return "UTF-8";
     }
 
     @Override
     public String getContentType() {
-        throw new UnsupportedOperationException("Not implemented");
+        return contentType;
     }
 
     @Override
@@ -140,7 +150,10 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public PrintWriter getWriter() throws IOException {
-        return new PrintWriter(outputStream, false);
+        if (writer == null) {
+            writer = new PrintWriter(outputStream, false);
+        }
+        return writer;
     }
 
     @Override
@@ -150,17 +163,17 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void setContentLength(int len) {
-        throw new UnsupportedOperationException("Not implemented");
+        setHeader("Content-Length", String.valueOf(len));
     }
 
     @Override
     public void setContentLengthLong(long len) {
-        throw new UnsupportedOperationException("Not implemented");
+        setHeader("Content-Length", String.valueOf(len));
     }
 
     @Override
     public void setContentType(String type) {
-        throw new UnsupportedOperationException("Not implemented");
+        this.contentType = type;
     }
 
     @Override
@@ -175,7 +188,7 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public void flushBuffer() throws IOException {
-        throw new UnsupportedOperationException("Not implemented");
+        outputStream.flush();
     }
 
     @Override
@@ -185,7 +198,7 @@ public class FakeHttpServletResponse implements HttpServletResponse {
 
     @Override
     public boolean isCommitted() {
-        throw new UnsupportedOperationException("Not implemented");
+        return false;
     }
 
     @Override
@@ -8,15 +8,19 @@ import java.io.IOException;
 public class FakeServletOutputStream extends ServletOutputStream {
 
     private ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+    private WriteListener writeListener;
+    private boolean ready = true;
+    private int flushes;
+    private boolean closed;
 
     @Override
     public boolean isReady() {
-        return true;
+        return ready;
     }
 
     @Override
     public void setWriteListener(WriteListener writeListener) {
-        throw new UnsupportedOperationException("Not implemented");
+        this.writeListener = writeListener;
     }
 
     @Override
@@ -24,6 +28,34 @@ public class FakeServletOutputStream extends ServletOutputStream {
         outputStream.write(b);
     }
 
+    @Override
+    public void flush() throws IOException {
+        flushes++;
+    }
+
+    @Override
+    public void close() throws IOException {
+        closed = true;
+    }
+
+    /**
+     * Simulates the container: changes readiness and calls the listener back when it becomes ready.
+     */
+    public void ready(boolean ready) throws IOException {
+        this.ready = ready;
+        if (ready && writeListener != null) {
+            writeListener.onWritePossible();
+        }
+    }
+
+    public int getFlushes() {
+        return flushes;
+    }
+
+    public boolean isClosed() {
+        return closed;
+    }
+
     public ByteArrayOutputStream getOutput() {
         return outputStream;
     }
@@ -0,0 +1,78 @@
+package org.luizricardo.warppipe.listener;
+
+import org.junit.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class MatchingWriterTest {
+
+    static final String CLEF = "𝄞";
+
+    ByteArrayOutputStream baos = new ByteArrayOutputStream();
+
+    @Test
+    public void writeRanges() throws Exception {
+        MatchingWriter writer = MatchingWriter.forOutputStream(baos, StandardCharsets.UTF_8);
+        writer.write("xação")
+                .write(new StringBuilder("xbla€x"), 1, 5)
+                .write("xé".toCharArray(), 1, 1);
+        assertThat(new String(baos.toByteArray(), StandardCharsets.UTF_8), is("xaçãobla€é"));
+    }
+
+    @Test
+    public void surrogatePairSplitAcrossWrites() throws Exception {
+        MatchingWriter writer = MatchingWriter.forOutputStream(baos, StandardCharsets.UTF_8);
+        String text = "a" + CLEF + "b";
+        for (int i = 0; i < text.length(); i++) {
+            writer.write(text, i, i + 1);
+        }
+        assertThat(baos.toByteArray(), is(text.getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void loneHighSurrogateIsReplacedOnFlush() throws Exception {
+        MatchingWriter writer = MatchingWriter.forOutputStream(baos, StandardCharsets.UTF_8);
+        String text = "a" + CLEF.charAt(0);
+        writer.write(text);
+        writer.flush();
+        assertThat(baos.toByteArray(), is(text.getBytes(StandardCharsets.UTF_8)));
+        //the encoder can still be used after the end of input
+        writer.write("b" + CLEF);
+        writer.flush();
+        assertThat(baos.toByteArray(), is((text + "b" + CLEF).getBytes(StandardCharsets.UTF_8)));
+    }
+
+    @Test
+    public void writeLargerThanEncodingBuffer() throws Exception {
+        MatchingWriter writer = MatchingWriter.forOutputStream(baos, StandardCharsets.UTF_8);
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 1000; i++) {
+            text.append("ação").append(CLEF);
+        }
+        writer.write(text, 0, text.length());
+        writer.write(text.toString().toCharArray(), 0, text.length());
+        assertThat(new String(baos.toByteArray(), StandardCharsets.UTF_8), is(text.toString() + text));
+    }
+
+    @Test
+    public void unmappableCharactersAreReplaced() throws Exception {
+        MatchingWriter.forOutputStream(baos, StandardCharsets.ISO_8859_1).write("a€b");
+        assertThat(new String(baos.toByteArray(), StandardCharsets.ISO_8859_1), is("a?b"));
+    }
+
+    @Test
+    public void writeRangesToWriter() throws Exception {
+        StringWriter stringWriter = new StringWriter();
+        MatchingWriter.forWriter(stringWriter)
+                .write("abc", 1, 2)
+                .write(new StringBuilder("def"), 1, 3)
+                .write("ghi".toCharArray(), 0, 2);
+        assertThat(stringWriter.toString(), is("befgh"));
+    }
+
+}
@@ -18,6 +18,12 @@ public class HtmlCloseTagStreamMatcherTest {
         performAndAssertMatching("</table>", matcher, FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY);
     }
 
+    @Test
+    public void incrementalMatching() {
+        TextStreamMatcherTest.performAndAssertIncrementalMatching("</TABLE >", matcher,
+                FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY);
+    }
+
     @Test
     public void matchWithSpace() {
         performAndAssertMatching("</table >", matcher, FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY);
@@ -0,0 +1,94 @@
+package org.luizricardo.warppipe.matcher;
+
+import org.junit.Test;
+
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class HtmlTagLexerTest {
+
+    HtmlTagLexer lexer = new HtmlTagLexer();
+
+    HtmlTagLexer lex(String text) {
+        lexer.reset();
+        for (char c : text.toCharArray()) {
+            if (!lexer.accept(c)) break;
+        }
+        return lexer;
+    }
+
+    @Test
+    public void simpleTag() {
+        HtmlTag tag = lex("<Table>").toTag();
+        assertThat(lexer.complete(), is(true));
+        assertThat(tag.name(), is("table"));
+        assertThat(tag.endTag(), is(false));
+        assertThat(tag.selfClosing(), is(false));
+        assertThat(tag.attributes().isEmpty(), is(true));
+    }
+
+    @Test
+    public void endTag() {
+        lex("</BODY >");
+        assertThat(lexer.complete(), is(true));
+        assertThat(lexer.endTag(), is(true));
+        assertThat(lexer.nameEquals("body"), is(true));
+        assertThat(lexer.nameEquals("bod"), is(false));
+    }
+
+    @Test
+    public void selfClosingTag() {
+        lex("<br/>");
+        assertThat(lexer.complete(), is(true));
+        assertThat(lexer.selfClosing(), is(true));
+        assertThat(lexer.name(), is("br"));
+    }
+
+    @Test
+    public void attributes() {
+        Map<String, String> expected = new LinkedHashMap<>();
+        expected.put("id", "slow-area");
+        expected.put("pipeline-priority", "10");
+        expected.put("title", "a > b & 'c'");
+        expected.put("disabled", "");
+        expected.put("data-x", "é");
+        HtmlTag tag = lex("<placeholder id=\"slow-area\" PIPELINE-PRIORITY=10 title='a &gt; b &amp; &#39;c&#x27;' disabled data-x=é id=\"other\" />").toTag();
+        assertThat(lexer.complete(), is(true));
+        assertThat(tag.selfClosing(), is(true));
+        assertThat(tag.attributes(), is(expected));
+        assertThat(tag.attribute("id").get(), is("slow-area"));
+        assertThat(tag.attribute("none").isPresent(), is(false));
+    }
+
+    @Test
+    public void closingCharacterInsideQuotes() {
+        lex("<a title=\"x>y\"");
+        assertThat(lexer.complete(), is(false));
+        assertThat(lexer.invalid(), is(false));
+        lexer.accept('>');
+        assertThat(lexer.complete(), is(true));
+        assertThat(lexer.attributeValue(0), is("x>y"));
+    }
+
+    @Test
+    public void invalidTags() {
+        assertThat(lex("a").invalid(), is(true));
+        assertThat(lex("< a>").invalid(), is(true));
+        assertThat(lex("<!-- x -->").invalid(), is(true));
+        assertThat(lex("<table <a>").invalid(), is(true));
+        assertThat(lex("<a>b").invalid(), is(true));
+    }
+
+    @Test
+    public void reuseAfterReset() {
+        lex("<a href=\"#\" class=\"x\" id=\"y\" rel=\"z\" target=\"w\">");
+        assertThat(lexer.attributeCount(), is(5));
+        lex("<b>");
+        assertThat(lexer.attributeCount(), is(0));
+        assertThat(lexer.name(), is("b"));
+    }
+
+}
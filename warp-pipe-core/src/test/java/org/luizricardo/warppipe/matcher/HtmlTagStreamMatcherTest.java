@@ -3,6 +3,10 @@ package org.luizricardo.warppipe.matcher;
 
 import org.junit.Test;
 
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertThat;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.FIRST;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.FULLY;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.NONE;
@@ -13,6 +17,11 @@ public class HtmlTagStreamMatcherTest {
 
     HtmlTagStreamMatcher matcher = HtmlTagStreamMatcher.forTag("table");
 
+    @Test
+    public void firstCharacters() {
+        assertArrayEquals(new char[] { '<' }, matcher.firstCharacters().get());
+    }
+
     @Test
     public void matchSimple() {
         TextStreamMatcherTest.performAndAssertMatching("<table>", matcher, FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY);
@@ -78,6 +87,33 @@ public class HtmlTagStreamMatcherTest {
                 PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY);
     }
 
+    @Test
+    public void incrementalMatching() {
+        TextStreamMatcherTest.performAndAssertIncrementalMatching("<head><table id=\"10\"><tab>", matcher,
+                FIRST, NONE, NONE, NONE, NONE, NONE,
+                FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY,
+                PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY,
+                FIRST, PARTIALLY, PARTIALLY, PARTIALLY, NONE);
+        TextStreamMatcherTest.performAndAssertIncrementalMatching("<table2>", matcher,
+                FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, NONE);
+    }
+
+    @Test
+    public void closingCharacterInsideQuotes() {
+        TextStreamMatcherTest.performAndAssertIncrementalMatching("<table a='>'>", matcher,
+                FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY,
+                PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY);
+    }
+
+    @Test
+    public void findStartTag() {
+        HtmlTag tag = matcher.findStartTag(new StringBuilder("<table id=\"10\" border>"));
+        assertThat(tag.name(), is("table"));
+        assertThat(tag.attribute("id").get(), is("10"));
+        assertThat(tag.attribute("border").get(), is(""));
+        assertThat(matcher.findStartTag(new StringBuilder("<tables>")), nullValue());
+    }
+
     @Test
     public void matchInvalidHtml() {
         TextStreamMatcherTest.performAndAssertMatching("<table <a>", matcher, FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY,
@@ -0,0 +1,48 @@
+package org.luizricardo.warppipe.matcher;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.nullValue;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.junit.Assert.assertThat;
+
+public class TagAttributesTest {
+
+    @Test
+    public void firstRepeatedAttributeWins() {
+        TagAttributes attributes = TagAttributes.of(new String[] { "id", "1", "class", "a", "id", "2" }, 3);
+        assertThat(attributes.size(), is(2));
+        assertThat(attributes.get("id"), is("1"));
+        assertThat(attributes.get("class"), is("a"));
+        assertThat(attributes.get("other"), nullValue());
+        assertThat(Arrays.asList(attributes.keySet().toArray()), is(Arrays.<Object>asList("id", "class")));
+    }
+
+    @Test
+    public void equalsOtherMaps() {
+        Map<String, String> map = new LinkedHashMap<>();
+        map.put("id", "1");
+        map.put("border", "");
+        TagAttributes attributes = TagAttributes.copyOf(map);
+        assertThat(attributes, is(map));
+        assertThat(map, is((Map<String, String>) attributes));
+        assertThat(attributes.hashCode(), is(map.hashCode()));
+    }
+
+    @Test
+    public void copyOfKeepsSameInstance() {
+        TagAttributes attributes = new HtmlTagLexerTest().lex("<a href='#'>").attributes();
+        assertThat(TagAttributes.copyOf(attributes), sameInstance(attributes));
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void immutable() {
+        TagAttributes.copyOf(new LinkedHashMap<>()).put("id", "1");
+    }
+
+}
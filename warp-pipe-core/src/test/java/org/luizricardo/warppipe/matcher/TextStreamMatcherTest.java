@@ -3,6 +3,7 @@ package org.luizricardo.warppipe.matcher;
 
 import org.junit.Test;
 
+import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.FIRST;
 import static org.luizricardo.warppipe.matcher.MatchingStatus.FULLY;
@@ -73,6 +74,93 @@ public class TextStreamMatcherTest {
                 NONE, NONE, FULLY, NONE, FULLY, FULLY);
     }
 
+    @Test
+    public void firstCharacters() {
+        assertArrayEquals(new char[] { 'b' }, matcher.firstCharacters().get());
+        assertArrayEquals(new char[] { 'b', 'B' }, TextStreamMatcher.forText("bla", false).firstCharacters().get());
+        assertArrayEquals(new char[] { 'B', 'b' }, TextStreamMatcher.forText("Bla", false).firstCharacters().get());
+        assertArrayEquals(new char[] { '<' }, TextStreamMatcher.forText("</body>", false).firstCharacters().get());
+    }
+
+    @Test
+    public void incrementalMatching() {
+        performAndAssertIncrementalMatching("lablalabl", matcher, NONE, NONE, FIRST, PARTIALLY, FULLY, NONE, NONE, FIRST, PARTIALLY);
+        performAndAssertIncrementalMatching("bláéblá", TextStreamMatcher.forText("BlÁ", false),
+                FIRST, PARTIALLY, FULLY, NONE, FIRST, PARTIALLY, FULLY);
+        performAndAssertIncrementalMatching("uuxuxX", TextStreamMatcher.forText("X", false),
+                NONE, NONE, FULLY, NONE, FULLY, FULLY);
+    }
+
+    @Test
+    public void incrementalLength() {
+        IncrementalStreamMatcher incremental = matcher.incremental();
+        assertEquals(FIRST, incremental.accept('b'));
+        assertEquals(PARTIALLY, incremental.accept('l'));
+        assertEquals(2, incremental.length());
+        incremental.reset();
+        assertEquals(0, incremental.length());
+        assertEquals(NONE, incremental.accept('l'));
+    }
+
+    @Test
+    public void incrementalKeepsOverlappingPrefix() {
+        performAndAssertIncrementalMatching("bbla", matcher, FIRST, FIRST, PARTIALLY, FULLY);
+        performAndAssertIncrementalMatching("aaab", TextStreamMatcher.forText("aab", true), FIRST, PARTIALLY, PARTIALLY, FULLY);
+        performAndAssertIncrementalMatching("abcabcabdx", TextStreamMatcher.forText("abcabd", true),
+                FIRST, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, PARTIALLY, FULLY, NONE);
+    }
+
+    @Test
+    public void incrementalLengthAfterFallback() {
+        IncrementalStreamMatcher incremental = TextStreamMatcher.forText("abcabd", true).incremental();
+        for (char c : "abcabc".toCharArray()) {
+            incremental.accept(c);
+        }
+        assertEquals(3, incremental.length());
+        assertEquals(PARTIALLY, incremental.accept('a'));
+        assertEquals(4, incremental.length());
+    }
+
+    @Test
+    public void incrementalCaseInsensitiveOverlapping() {
+        performAndAssertIncrementalMatching("ÁÁáb", TextStreamMatcher.forText("áÁB", false), FIRST, PARTIALLY, PARTIALLY, FULLY);
+    }
+
+    @Test
+    public void incrementalLongText() {
+        StringBuilder text = new StringBuilder();
+        for (int i = 0; i < 300; i++) {
+            text.append('a');
+        }
+        StreamMatcher longMatcher = TextStreamMatcher.forText(text + "b", true);
+        IncrementalStreamMatcher incremental = longMatcher.incremental();
+        for (int i = 0; i < 310; i++) {
+            assertEquals(i == 0 ? FIRST : PARTIALLY, incremental.accept('a'));
+        }
+        assertEquals(300, incremental.length());
+        assertEquals(FULLY, incremental.accept('b'));
+    }
+
+    @Test
+    public void adapterForLegacyMatchers() {
+        StreamMatcher legacy = sb -> sb.charAt(0) != '#' ? NONE : sb.length() < 3 ? PARTIALLY : FULLY;
+        performAndAssertIncrementalMatching("a#bc#", legacy, NONE, PARTIALLY, PARTIALLY, FULLY, PARTIALLY);
+        assertEquals(StreamMatcherAdapter.class, legacy.incremental().getClass());
+    }
+
+    static void performAndAssertIncrementalMatching(String textToMatch, StreamMatcher matcher, MatchingStatus... matchingStatuses) {
+        IncrementalStreamMatcher incremental = matcher.incremental();
+        for (int i = 0, l = textToMatch.length(); i < l; i++) {
+            MatchingStatus result = incremental.accept(textToMatch.charAt(i));
+            assertEquals(
+                    String.format("Failed to match '%s' at char %c pos %d", textToMatch, textToMatch.charAt(i), i + 1),
+                    matchingStatuses[i], result);
+            if (result == NONE || result == FULLY) {
+                incremental.reset();
+            }
+        }
+    }
+
     static void performAndAssertMatching(String textToMatch, StreamMatcher matcher, MatchingStatus... matchingStatuses) {
         int lastMatching = 0;
         for (int i = 0, l = textToMatch.length(); i < l; i++) {
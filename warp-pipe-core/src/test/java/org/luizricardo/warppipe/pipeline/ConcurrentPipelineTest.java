@@ -0,0 +1,206 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.junit.After;
+import org.junit.Test;
+import org.luizricardo.warppipe.api.PipelineResult;
+import org.luizricardo.warppipe.api.Step;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
+import org.luizricardo.warppipe.api.StepManager;
+import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
+import org.luizricardo.warppipe.fakes.FakeHttpServletResponse;
+import org.luizricardo.warppipe.pipeline.step.AsyncTextStep;
+import org.luizricardo.warppipe.pipeline.step.DefaultStepManager;
+import org.luizricardo.warppipe.pipeline.step.TextStep;
+
+import java.io.StringWriter;
+import java.io.Writer;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+import static org.junit.Assert.assertTrue;
+
+public class ConcurrentPipelineTest {
+
+    ExecutorService executor = ExecutorBuilder.create().coreSize(4).maxSize(4).queueSize(16).threadName("test").build();
+    AtomicInteger running = new AtomicInteger();
+    AtomicInteger maxRunning = new AtomicInteger();
+    AtomicInteger executions = new AtomicInteger();
+
+    StepManager stepManager = new StepManager() {
+        @Override
+        public void execute(StepData stepData, StepContext stepContext) throws PipelineException {
+            maxRunning.accumulateAndGet(running.incrementAndGet(), Math::max);
+            try {
+                Thread.sleep(10);
+            } catch (InterruptedException e) {
+                throw new PipelineException("interrupted", e, stepData);
+            } finally {
+                running.decrementAndGet();
+            }
+            executions.incrementAndGet();
+            if (stepData.id().equals("throw")) {
+                throw new PipelineException(stepData.id(), stepData);
+            }
+        }
+
+        @Override
+        public Optional<Integer> defaultPriority(StepData stepData, StepContext stepContext) throws PipelineException {
+            return Optional.empty();
+        }
+    };
+
+    CountDownLatch blocker = new CountDownLatch(1);
+
+    void block() {
+        try {
+            blocker.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    @After
+    public void shutdown() {
+        ExecutorBuilder.shutdown(executor, 1, TimeUnit.SECONDS);
+    }
+
+    PipelineResult execute(ExecutorService executorService, int parallelism, String... ids) throws Exception {
+        final StepContext context = StepContext.create(new FakeHttpServletResponse().getWriter(), new FakeHttpServletRequest());
+        final ConcurrentPipeline.Builder<ConcurrentPipeline> builder = ConcurrentPipeline.create(stepManager, executorService, parallelism);
+        for (String id : ids) {
+            builder.include(StepData.create(id, Optional.empty(), new HashMap<>()));
+        }
+        return builder.build().execute(context);
+    }
+
+    @Test
+    public void allStepsExecuted() throws Exception {
+        final PipelineResult result = execute(executor, 4, "id1", "throw", "id3");
+        assertThat(executions.get(), is(3));
+        assertThat(result.results().size(), is(3));
+        assertThat(result.success(), is(false));
+        assertThat(executor.isShutdown(), is(false));
+    }
+
+    @Test
+    public void parallelismIsLimited() throws Exception {
+        execute(executor, 2, "a", "b", "c", "d", "e", "f");
+        assertThat(executions.get(), is(6));
+        assertTrue(maxRunning.get() <= 2);
+    }
+
+    @Test
+    public void stepsExecutedByCallerWhenRejected() throws Exception {
+        final ExecutorService rejecting = ExecutorBuilder.create().coreSize(1).maxSize(1).queueSize(0)
+                .rejectionPolicy(ExecutorBuilder.RejectionPolicy.ABORT).build();
+        try {
+            rejecting.submit(this::block);
+            final PipelineResult result = execute(rejecting, 2, "a", "b");
+            assertThat(result.results().size(), is(2));
+            assertThat(result.success(), is(true));
+        } finally {
+            blocker.countDown();
+            ExecutorBuilder.shutdown(rejecting, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test(expected = RejectedExecutionException.class)
+    public void abortPolicy() throws Exception {
+        final ExecutorService rejecting = ExecutorBuilder.create().coreSize(1).maxSize(1).queueSize(0)
+                .rejectionPolicy(ExecutorBuilder.RejectionPolicy.ABORT).build();
+        try {
+            rejecting.submit(this::block);
+            rejecting.submit(() -> { });
+        } finally {
+            blocker.countDown();
+            ExecutorBuilder.shutdown(rejecting, 1, TimeUnit.SECONDS);
+        }
+    }
+
+    @Test
+    public void fragmentsAreWrittenWholeAsStepsComplete() throws Exception {
+        final CountDownLatch fastWritten = new CountDownLatch(1);
+        final StringWriter output = new StringWriter();
+        final StepManager writingStepManager = new StepManager() {
+            @Override
+            public void execute(StepData stepData, StepContext stepContext) throws PipelineException {
+                try {
+                    if (stepData.id().equals("slow")) {
+                        //only completes after the fast one was written to the output
+                        stepContext.writer().write("<slow>");
+                        assertTrue(fastWritten.await(1, TimeUnit.SECONDS));
+                        stepContext.writer().write("</slow>");
+                    } else {
+                        stepContext.writer().write("<fast>");
+                        stepContext.writer().write("</fast>");
+                    }
+                } catch (Exception e) {
+                    throw new PipelineException("error", e, stepData);
+                }
+            }
+
+            @Override
+            public Optional<Integer> defaultPriority(StepData stepData, StepContext stepContext) throws PipelineException {
+                return Optional.empty();
+            }
+        };
+        final Writer writer = new Writer() {
+            @Override
+            public void write(char[] cbuf, int off, int len) {
+                output.write(cbuf, off, len);
+            }
+
+            @Override
+            public void flush() {
+                if (output.toString().contains("</fast>")) {
+                    fastWritten.countDown();
+                }
+            }
+
+            @Override
+            public void close() {
+            }
+        };
+        final PipelineResult result = ConcurrentPipeline.create(writingStepManager, executor, 2)
+                .include(StepData.create("slow", Optional.empty(), new HashMap<>()))
+                .include(StepData.create("fast", Optional.empty(), new HashMap<>()))
+                .build()
+                .execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(true));
+        assertThat(output.toString(), is("<fast></fast><slow></slow>"));
+    }
+
+    @Test
+    public void asyncStepsDoNotHoldWorkers() throws Exception {
+        final AsyncTextStep slow = new AsyncTextStep("<slow/>");
+        final Map<String, Step> steps = new HashMap<>();
+        steps.put("slow", slow);
+        steps.put("fast", new TextStep("<fast/>"));
+        final StringWriter writer = new StringWriter();
+        //a single chain: the fast step only runs after the slow one completes, but no thread waits meanwhile
+        final CompletableFuture<PipelineResult> execution = ConcurrentPipeline.create(new DefaultStepManager(steps), executor, 1)
+                .include(StepData.create("slow", Optional.empty(), new HashMap<>()))
+                .include(StepData.create("fast", Optional.empty(), new HashMap<>()))
+                .build()
+                .executeAsync(StepContext.create(writer, new FakeHttpServletRequest()))
+                .toCompletableFuture();
+        Thread.sleep(50);
+        assertThat(execution.isDone(), is(false));
+        assertThat(((ThreadPoolExecutor) executor).getActiveCount(), is(0));
+        slow.complete();
+        assertThat(execution.get(5, TimeUnit.SECONDS).success(), is(true));
+        assertThat(writer.toString(), is("<slow/><fast/>"));
+    }
+
+}
@@ -0,0 +1,123 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.junit.After;
+import org.junit.Test;
+import org.luizricardo.warppipe.api.Pipeline;
+import org.luizricardo.warppipe.api.PipelineResult;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
+import org.luizricardo.warppipe.api.StepManager;
+import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class EagerPipelineTest {
+
+    ExecutorService executor = ExecutorBuilder.create().coreSize(4).maxSize(4).queueSize(16).threadName("test").build();
+    CountDownLatch started = new CountDownLatch(2);
+
+    StepManager stepManager = new StepManager() {
+        @Override
+        public void execute(StepData stepData, StepContext stepContext) throws PipelineException {
+            started.countDown();
+            try {
+                stepContext.writer().write("[" + stepData.id() + "]");
+            } catch (IOException e) {
+                throw new PipelineException("write", e, stepData);
+            }
+            if (stepData.id().equals("throw")) {
+                throw new PipelineException(stepData.id(), stepData);
+            }
+        }
+
+        @Override
+        public Optional<Integer> defaultPriority(StepData stepData, StepContext stepContext) throws PipelineException {
+            return Optional.empty();
+        }
+    };
+
+    @After
+    public void shutdown() {
+        ExecutorBuilder.shutdown(executor, 1, TimeUnit.SECONDS);
+    }
+
+    StepData data(String id, Integer priority) {
+        return StepData.create(id, Optional.ofNullable(priority), new HashMap<>());
+    }
+
+    @Test
+    public void stepsStartWhenIncluded() throws Exception {
+        final Pipeline.Builder<EagerPipeline> builder = EagerPipeline.create(stepManager, executor, new FakeHttpServletRequest());
+        builder.include(data("a", null)).include(data("b", null));
+        //nothing waits for execute()
+        assertThat(started.await(5, TimeUnit.SECONDS), is(true));
+        final StringWriter writer = new StringWriter();
+        final PipelineResult result = builder.build().execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(true));
+        assertThat(writer.toString(), is("[a][b]"));
+    }
+
+    @Test
+    public void fragmentsAreWrittenByPriority() throws Exception {
+        final Pipeline.Builder<EagerPipeline> builder = EagerPipeline.create(stepManager, executor, new FakeHttpServletRequest());
+        builder.include(data("low", -1)).include(data("a", null)).include(data("high", 1)).include(data("b", null));
+        final StringWriter writer = new StringWriter();
+        builder.build().execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(writer.toString(), is("[high][a][b][low]"));
+    }
+
+    @Test
+    public void errorsAreReported() throws Exception {
+        final Pipeline.Builder<EagerPipeline> builder = EagerPipeline.create(stepManager, executor, new FakeHttpServletRequest());
+        builder.include(data("throw", null)).include(data("a", null));
+        final StringWriter writer = new StringWriter();
+        final PipelineResult result = builder.build().execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(false));
+        assertThat(result.results().get(0).success(), is(false));
+        assertThat(result.results().get(1).success(), is(true));
+        assertThat(writer.toString(), is("[throw][a]"));
+    }
+
+    @Test
+    public void cancelledStepsNeverRun() throws Exception {
+        final List<Runnable> queued = new ArrayList<>();
+        final List<Future<?>> tasks = new ArrayList<>();
+        final Pipeline.Builder<EagerPipeline> builder = EagerPipeline.create(stepManager, queued::add,
+                new FakeHttpServletRequest(), tasks::add);
+        builder.include(data("a", null));
+        assertThat(tasks.size(), is(1));
+        tasks.get(0).cancel(false);
+        queued.forEach(Runnable::run);
+        assertThat(started.getCount(), is(2L));
+        final StringWriter writer = new StringWriter();
+        final PipelineResult result = builder.build().execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(false));
+        assertThat(writer.toString(), is(""));
+    }
+
+    @Test
+    public void rejectedStepsRunInCurrentThread() throws Exception {
+        final Pipeline.Builder<EagerPipeline> builder = EagerPipeline.create(stepManager, runnable -> {
+            throw new RejectedExecutionException("full");
+        }, new FakeHttpServletRequest());
+        builder.include(data("a", null));
+        assertThat(started.getCount(), is(1L));
+        final StringWriter writer = new StringWriter();
+        builder.build().execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(writer.toString(), is("[a]"));
+    }
+
+}
@@ -0,0 +1,86 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.RejectedExecutionException;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class PrioritySchedulerTest {
+
+    List<Runnable> workers = new ArrayList<>();
+    List<String> executed = new ArrayList<>();
+
+    Runnable task(String name) {
+        return () -> executed.add(name);
+    }
+
+    void runWorkers() {
+        while (!workers.isEmpty()) {
+            workers.remove(0).run();
+        }
+    }
+
+    @Test
+    public void highPriorityFirstAcrossRequests() {
+        final PriorityScheduler scheduler = new PriorityScheduler(workers::add);
+        final PriorityScheduler.Lane first = scheduler.lane();
+        final PriorityScheduler.Lane second = scheduler.lane();
+        first.execute(task("a1"), Priority.LOWER_PRIORITY);
+        first.execute(task("a2"), Priority.LOWER_PRIORITY);
+        second.execute(task("b1"), Priority.HIGHER_PRIORITY);
+        second.execute(task("b2"), Priority.DEFAULT_PRIORITY);
+        assertThat(scheduler.pending(), is(4));
+        runWorkers();
+        assertThat(executed, is(Arrays.asList("b1", "b2", "a1", "a2")));
+        assertThat(scheduler.pending(), is(0));
+    }
+
+    @Test
+    public void requestsTakeTurns() {
+        final PriorityScheduler scheduler = new PriorityScheduler(workers::add);
+        final PriorityScheduler.Lane busy = scheduler.lane();
+        final PriorityScheduler.Lane other = scheduler.lane();
+        for (int i = 1; i <= 4; i++) {
+            busy.execute(task("a" + i));
+        }
+        other.execute(task("b1"));
+        other.execute(task("b2"));
+        runWorkers();
+        assertThat(executed, is(Arrays.asList("a1", "b1", "a2", "b2", "a3", "a4")));
+    }
+
+    @Test
+    public void quantum() {
+        final PriorityScheduler scheduler = new PriorityScheduler(workers::add, 2);
+        final PriorityScheduler.Lane busy = scheduler.lane();
+        final PriorityScheduler.Lane other = scheduler.lane();
+        for (int i = 1; i <= 4; i++) {
+            busy.execute(task("a" + i));
+        }
+        other.execute(task("b1"));
+        other.execute(task("b2"));
+        other.execute(task("b3"));
+        runWorkers();
+        assertThat(executed, is(Arrays.asList("a1", "a2", "b1", "b2", "a3", "a4", "b3")));
+    }
+
+    @Test
+    public void rejectedTasksRunInCurrentThread() {
+        final PriorityScheduler scheduler = new PriorityScheduler(runnable -> {
+            throw new RejectedExecutionException("full");
+        });
+        scheduler.lane().execute(task("a"));
+        assertThat(executed, is(Arrays.asList("a")));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void invalidQuantum() {
+        new PriorityScheduler(workers::add, 0);
+    }
+
+}
@@ -4,14 +4,26 @@ import org.junit.Before;
 import org.junit.Test;
 import org.luizricardo.warppipe.api.Pipeline;
 import org.luizricardo.warppipe.api.PipelineResult;
+import org.luizricardo.warppipe.api.Step;
 import org.luizricardo.warppipe.api.StepContext;
 import org.luizricardo.warppipe.api.StepData;
 import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
 import org.luizricardo.warppipe.fakes.FakeHttpServletResponse;
 import org.luizricardo.warppipe.fakes.FakeStepManager;
+import org.luizricardo.warppipe.pipeline.step.AsyncTextStep;
+import org.luizricardo.warppipe.pipeline.step.DefaultStepManager;
+import org.luizricardo.warppipe.pipeline.step.TextStep;
 
+import java.io.StringWriter;
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
 
 import static org.hamcrest.CoreMatchers.hasItems;
 import static org.hamcrest.CoreMatchers.is;
@@ -78,4 +90,84 @@ public class QueuedPipelineTest {
         assertThat(result.results().get(2).exception(), is(Optional.empty()));
     }
 
+    @Test
+    public void asyncStepsDoNotBlock() throws Exception {
+        final AsyncTextStep first = new AsyncTextStep("first");
+        final Map<String, Step> steps = new HashMap<>();
+        steps.put("first", first);
+        steps.put("second", new TextStep("second"));
+        final StringWriter writer = new StringWriter();
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<PipelineResult> execution = QueuedPipeline.create(new DefaultStepManager(steps), executor)
+                    .include(StepData.create("second", Optional.of(1), new HashMap<>()))
+                    .include(StepData.create("first", Optional.of(2), new HashMap<>()))
+                    .build()
+                    .executeAsync(StepContext.create(writer, new FakeHttpServletRequest()))
+                    .toCompletableFuture();
+            //the blocking step waits for the asynchronous one before it, without holding a thread
+            Thread.sleep(100);
+            assertThat(execution.isDone(), is(false));
+            assertThat(writer.toString(), is(""));
+            first.complete();
+            assertThat(execution.get(5, TimeUnit.SECONDS).success(), is(true));
+            assertThat(writer.toString(), is("firstsecond"));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void stepsAfterAsyncStepsRunInTheExecutor() throws Exception {
+        final AsyncTextStep first = new AsyncTextStep("first");
+        final List<Thread> threads = new ArrayList<>();
+        final Map<String, Step> steps = new HashMap<>();
+        steps.put("first", first);
+        steps.put("second", new Step() {
+            @Override
+            public void execute(StepData data, StepContext context) {
+                threads.add(Thread.currentThread());
+            }
+
+            @Override
+            public Optional<Integer> defaultPriority(StepData data, StepContext context) {
+                return Optional.empty();
+            }
+        });
+        final ExecutorService executor = Executors.newSingleThreadExecutor();
+        try {
+            final CompletableFuture<PipelineResult> execution = QueuedPipeline.create(new DefaultStepManager(steps), executor)
+                    .include(StepData.create("second", Optional.of(1), new HashMap<>()))
+                    .include(StepData.create("first", Optional.of(2), new HashMap<>()))
+                    .build()
+                    .executeAsync(StepContext.create(new StringWriter(), new FakeHttpServletRequest()))
+                    .toCompletableFuture();
+            //the thread of the asynchronous client completes the first step
+            first.complete();
+            assertThat(execution.get(5, TimeUnit.SECONDS).success(), is(true));
+            assertThat(threads.size(), is(1));
+            assertThat(threads.get(0) == Thread.currentThread(), is(false));
+        } finally {
+            executor.shutdown();
+        }
+    }
+
+    @Test
+    public void blockingExecutionWaitsForAsyncSteps() throws Exception {
+        final AsyncTextStep first = new AsyncTextStep("first");
+        //completed by another thread while the current one waits
+        new Thread(first::complete).start();
+        final Map<String, Step> steps = new HashMap<>();
+        steps.put("first", first);
+        steps.put("second", new TextStep("second"));
+        final StringWriter writer = new StringWriter();
+        final PipelineResult result = QueuedPipeline.create(new DefaultStepManager(steps))
+                .include(StepData.create("second", Optional.of(1), new HashMap<>()))
+                .include(StepData.create("first", Optional.of(2), new HashMap<>()))
+                .build()
+                .execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(true));
+        assertThat(writer.toString(), is("firstsecond"));
+    }
+
 }
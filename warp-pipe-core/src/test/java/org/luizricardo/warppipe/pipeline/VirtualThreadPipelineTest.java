@@ -0,0 +1,93 @@
+package org.luizricardo.warppipe.pipeline;
+
+import org.junit.Assume;
+import org.junit.Test;
+import org.luizricardo.warppipe.api.PipelineResult;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
+import org.luizricardo.warppipe.api.StepManager;
+import org.luizricardo.warppipe.fakes.FakeHttpServletRequest;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Optional;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.junit.Assert.assertThat;
+
+public class VirtualThreadPipelineTest {
+
+    CountDownLatch allStarted = new CountDownLatch(3);
+
+    StepManager stepManager = new StepManager() {
+        @Override
+        public void execute(StepData stepData, StepContext stepContext) throws PipelineException {
+            allStarted.countDown();
+            try {
+                //each step has its own thread, so all of them are running at the same time
+                if (!allStarted.await(5, TimeUnit.SECONDS)) {
+                    throw new PipelineException("timeout", stepData);
+                }
+                stepContext.writer().write("[" + stepData.id() + "]");
+            } catch (InterruptedException | IOException e) {
+                throw new PipelineException("error", e, stepData);
+            }
+            if (stepData.id().equals("throw")) {
+                throw new PipelineException(stepData.id(), stepData);
+            }
+        }
+
+        @Override
+        public Optional<Integer> defaultPriority(StepData stepData, StepContext stepContext) throws PipelineException {
+            return Optional.empty();
+        }
+    };
+
+    List<StepData> data(String... ids) {
+        return Arrays.stream(ids).map(id -> StepData.create(id, Optional.empty(), new HashMap<>())).collect(Collectors.toList());
+    }
+
+    @Test
+    public void eachStepHasItsOwnThread() {
+        final List<ExecutorService> scopes = new ArrayList<>();
+        final VirtualThreadPipeline pipeline = new VirtualThreadPipeline(stepManager, data("a", "throw", "c"), () -> {
+            final ExecutorService scope = Executors.newCachedThreadPool();
+            scopes.add(scope);
+            return scope;
+        });
+        final StringWriter writer = new StringWriter();
+        final PipelineResult result = pipeline.execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(false));
+        assertThat(result.results().size(), is(3));
+        assertThat(writer.toString().length(), is("[a][throw][c]".length()));
+        //the scope doesn't outlive the execution
+        assertThat(scopes.size(), is(1));
+        assertThat(scopes.get(0).isShutdown(), is(true));
+    }
+
+    @Test
+    public void virtualThreads() {
+        Assume.assumeTrue(VirtualThreadPipeline.available());
+        final StringWriter writer = new StringWriter();
+        final PipelineResult result = VirtualThreadPipeline.create(stepManager)
+                .include(data("a").get(0)).include(data("b").get(0)).include(data("c").get(0))
+                .build().execute(StepContext.create(writer, new FakeHttpServletRequest()));
+        assertThat(result.success(), is(true));
+    }
+
+    @Test(expected = IllegalStateException.class)
+    public void unavailable() {
+        Assume.assumeTrue(!VirtualThreadPipeline.available());
+        new VirtualThreadPipeline(stepManager, data("a"));
+    }
+
+}
@@ -0,0 +1,41 @@
+package org.luizricardo.warppipe.pipeline.step;
+
+
+import org.luizricardo.warppipe.api.AsyncStep;
+import org.luizricardo.warppipe.api.StepContext;
+import org.luizricardo.warppipe.api.StepData;
+
+import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionStage;
+
+/**
+ * Completes with its text only when {@link #complete()} is called, like a step waiting for a backend.
+ */
+public class AsyncTextStep implements AsyncStep {
+
+    private final String text;
+    private final CompletableFuture<String> fragment = new CompletableFuture<>();
+
+    public AsyncTextStep(final String text) {
+        this.text = text;
+    }
+
+    public void complete() {
+        fragment.complete(text);
+    }
+
+    public void fail() {
+        fragment.completeExceptionally(new IllegalStateException("backend failed"));
+    }
+
+    @Override
+    public CompletionStage<? extends CharSequence> executeAsync(final StepData data, final StepContext context) {
+        return fragment;
+    }
+
+    @Override
+    public Optional<Integer> defaultPriority(final StepData data, final StepContext context) {
+        return Optional.empty();
+    }
+}
@@ -13,6 +13,8 @@ import java.nio.charset.StandardCharsets;
 import java.util.HashMap;
 import java.util.Map;
 import java.util.Optional;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
 
 import static org.hamcrest.CoreMatchers.hasItem;
 import static org.hamcrest.CoreMatchers.hasItems;
@@ -26,6 +28,7 @@ public class DefaultStepManagerTest {
 
     StepContext stepContext;
     TextStep textStep = new TextStep("Hello");
+    AsyncTextStep asyncStep = new AsyncTextStep("Async");
     ErrorStep errorStep = new ErrorStep();
     FakeHttpServletResponse response = new FakeHttpServletResponse();
 
@@ -34,6 +37,7 @@ public class DefaultStepManagerTest {
         Map<String, Step> stepMap = new HashMap<>();
         stepMap.put("text", textStep);
         stepMap.put("error", errorStep);
+        stepMap.put("async", asyncStep);
         return new DefaultStepManager(stepMap);
     }
 
@@ -111,4 +115,46 @@ public class DefaultStepManagerTest {
         assertThat(create().defaultPriority(stepData, stepContext), is(Optional.empty()));
     }
 
+    @Test
+    public void asyncStepIsComposed() throws Exception {
+        StepData stepData = StepData.create("async", Optional.empty(), new HashMap<>());
+        CompletableFuture<Void> execution = create().executeAsync(stepData, stepContext).toCompletableFuture();
+        assertThat(execution.isDone(), is(false));
+        asyncStep.complete();
+        assertThat(execution.isDone(), is(true));
+        response.getWriter().flush();
+        assertThat(new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8), is("Async"));
+    }
+
+    @Test
+    public void blockingStepIsAdapted() throws Exception {
+        StepData stepData = StepData.create("text", Optional.empty(), new HashMap<>());
+        CompletableFuture<Void> execution = create().executeAsync(stepData, stepContext).toCompletableFuture();
+        assertThat(execution.isDone(), is(true));
+        response.getWriter().flush();
+        assertThat(new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8), is("Hello"));
+    }
+
+    @Test
+    public void asyncStepError() throws Exception {
+        StepData stepData = StepData.create("async", Optional.empty(), new HashMap<>());
+        CompletableFuture<Void> execution = create().executeAsync(stepData, stepContext).toCompletableFuture();
+        asyncStep.fail();
+        assertThat(execution.isCompletedExceptionally(), is(true));
+        try {
+            execution.join();
+        } catch (CompletionException e) {
+            assertThat(e.getCause() instanceof PipelineException, is(true));
+        }
+    }
+
+    @Test
+    public void asyncStepExecutedByBlockingPipelines() throws Exception {
+        StepData stepData = StepData.create("async", Optional.empty(), new HashMap<>());
+        asyncStep.complete();
+        create().execute(stepData, stepContext);
+        response.getWriter().flush();
+        assertThat(new String(response.getOutput().toByteArray(), StandardCharsets.UTF_8), is("Async"));
+    }
+
 }